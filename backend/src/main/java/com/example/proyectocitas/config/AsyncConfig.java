@@ -0,0 +1,40 @@
+package com.example.proyectocitas.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Ejecutores para trabajos en segundo plano
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Ejecutor acotado para la generación masiva de citas. Cada hilo usa una
+     * conexión del pool mientras procesa un médico, así que su tamaño no debe
+     * superar el número de conexiones disponibles. Con hilos virtuales se
+     * mantiene el mismo límite de concurrencia.
+     */
+    @Bean(name = "slotGenerationExecutor")
+    public ThreadPoolTaskExecutor slotGenerationExecutor(
+            @Value("${app.slots.generation.threads:0}") int threads,
+            @Value("${app.slots.generation.queue-capacity:10000}") int queueCapacity,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        int poolSize = threads > 0 ? threads : Math.min(Runtime.getRuntime().availableProcessors(), 8);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("slot-gen-");
+        if (virtualThreads) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("slot-gen-").getVirtualThreadFactory());
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -15,7 +15,7 @@ import com.example.proyectocitas.repositories.RoleRepository;
 import com.example.proyectocitas.repositories.UserRepository;
 
 @Component
-@Order(2) // Execute after DatabaseCleanupService
+@Order(2)
 public class DataInitializer implements CommandLineRunner {
     // Explicit logger declaration since Lombok @Slf4j might not be properly processed
     private static final Logger log = LoggerFactory.getLogger(DataInitializer.class);
@@ -40,8 +40,8 @@ public class DataInitializer implements CommandLineRunner {
         // Ensure admin user exists with correct credentials
         ensureAdminUser();
         
-        // Initialize other users if needed
-        if (userRepository.count() <= 1) { // Only admin exists or no users
+        // Initialize other users if needed (LIMIT 2 en lugar de contar toda la tabla)
+        if (userRepository.findTop2ByOrderByIdAsc().size() <= 1) { // Only admin exists or no users
             initUsers();
         }
     }
@@ -0,0 +1,66 @@
+package com.example.proyectocitas.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Ajustes del pool HikariCP que no se pueden expresar solo con propiedades:
+ * tamaño calculado a partir de los núcleos y del límite de conexiones de
+ * MySQL, y registro de métricas del pool.
+ */
+@Configuration
+public class DataSourcePoolConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourcePoolConfig.class);
+
+    private static final String MAX_POOL_SIZE_PROPERTY = "spring.datasource.hikari.maximum-pool-size";
+
+    @Bean
+    public HikariPoolMetrics hikariPoolMetrics() {
+        return new HikariPoolMetrics();
+    }
+
+    @Bean
+    public static BeanPostProcessor hikariPoolCustomizer(Environment environment,
+            ObjectProvider<HikariPoolMetrics> poolMetrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    configure(dataSource, environment, poolMetrics.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static void configure(HikariDataSource dataSource, Environment environment, HikariPoolMetrics poolMetrics) {
+        dataSource.setMetricsTrackerFactory(poolMetrics);
+
+        boolean autoSize = environment.getProperty("app.datasource.pool.auto-size", Boolean.class, false);
+        if (!autoSize || environment.containsProperty(MAX_POOL_SIZE_PROPERTY)) {
+            return;
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int mysqlMaxConnections = environment.getProperty("app.datasource.pool.mysql-max-connections", Integer.class, 151);
+        int reserved = environment.getProperty("app.datasource.pool.reserved-connections", Integer.class, 10);
+        int instances = Math.max(1, environment.getProperty("app.datasource.pool.instances", Integer.class, 1));
+
+        // (núcleos * 2) + 1, sin que la suma de todas las instancias supere max_connections
+        int bySize = cores * 2 + 1;
+        int byServerLimit = Math.max(2, (mysqlMaxConnections - reserved) / instances);
+        int poolSize = Math.min(bySize, byServerLimit);
+
+        dataSource.setMaximumPoolSize(poolSize);
+        log.info("Pool de conexiones dimensionado a {} (núcleos: {}, max_connections: {}, instancias: {})",
+                poolSize, cores, mysqlMaxConnections, instances);
+    }
+}
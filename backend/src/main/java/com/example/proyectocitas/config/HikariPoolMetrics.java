@@ -0,0 +1,100 @@
+package com.example.proyectocitas.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Métricas de los pools de conexiones: estado (activas, libres, en espera) y
+ * tiempos de obtención y uso de conexiones registrados por HikariCP.
+ *
+ * Cada pool se registra con su nombre; registrar dos pools con el mismo
+ * nombre es un error de configuración y falla al crear el segundo, en lugar
+ * de mezclar o sustituir sus métricas.
+ */
+public class HikariPoolMetrics implements MetricsTrackerFactory {
+
+    private final Map<String, PoolMetrics> pools = new ConcurrentSkipListMap<>();
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        PoolMetrics metrics = new PoolMetrics(poolStats);
+        if (pools.putIfAbsent(poolName, metrics) != null) {
+            throw new IllegalStateException("Ya hay métricas registradas para el pool de conexiones " + poolName
+                    + "; cada pool necesita un nombre distinto (spring.datasource.hikari.pool-name)");
+        }
+        return metrics;
+    }
+
+    /**
+     * Estado actual de cada pool y tiempos acumulados desde el arranque,
+     * por nombre de pool
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        pools.forEach((name, metrics) -> snapshot.put(name, metrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Tiempos y estado de un pool
+     */
+    private static final class PoolMetrics implements IMetricsTracker {
+
+        private final PoolStats poolStats;
+        private final AtomicLong acquireCount = new AtomicLong();
+        private final AtomicLong acquireTotalNanos = new AtomicLong();
+        private final LongAccumulator acquireMaxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLong usageCount = new AtomicLong();
+        private final AtomicLong usageTotalMillis = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        private PoolMetrics(PoolStats poolStats) {
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.incrementAndGet();
+            acquireTotalNanos.addAndGet(elapsedAcquiredNanos);
+            acquireMaxNanos.accumulate(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageCount.incrementAndGet();
+            usageTotalMillis.addAndGet(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.incrementAndGet();
+        }
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            if (poolStats != null) {
+                metrics.put("activas", poolStats.getActiveConnections());
+                metrics.put("libres", poolStats.getIdleConnections());
+                metrics.put("total", poolStats.getTotalConnections());
+                metrics.put("enEspera", poolStats.getPendingThreads());
+                metrics.put("maximo", poolStats.getMaxConnections());
+                metrics.put("minimo", poolStats.getMinConnections());
+            }
+            long acquired = acquireCount.get();
+            metrics.put("obtenciones", acquired);
+            metrics.put("obtencionMediaMs", acquired > 0 ? acquireTotalNanos.get() / acquired / 1_000_000.0 : 0.0);
+            metrics.put("obtencionMaximaMs", acquireMaxNanos.get() / 1_000_000.0);
+            long used = usageCount.get();
+            metrics.put("usoMedioMs", used > 0 ? (double) usageTotalMillis.get() / used : 0.0);
+            metrics.put("timeouts", timeouts.get());
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.proyectocitas.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Marker;
+import org.slf4j.MarkerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+
+/**
+ * Muestreo de las trazas por fila (las marcadas con {@link #ROW}).
+ *
+ * Deja pasar una de cada sampleRate trazas por logger y descarta el resto
+ * antes de formatear el mensaje. Se registra en logback-spring.xml; las
+ * trazas sin el marcador no se ven afectadas.
+ */
+public class RowSamplingTurboFilter extends TurboFilter {
+
+    /**
+     * Marcador para las trazas que se emiten una vez por fila dentro de un bucle
+     */
+    public static final Marker ROW = MarkerFactory.getMarker("ROW");
+
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private int sampleRate = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+            Throwable t) {
+        if (marker == null || !marker.contains(ROW) || sampleRate <= 1) {
+            return FilterReply.NEUTRAL;
+        }
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.DENY;
+        }
+        long seen = counters.computeIfAbsent(logger.getName(), k -> new AtomicLong()).getAndIncrement();
+        return seen % sampleRate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.proyectocitas.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Tareas periódicas (@Scheduled): revisión de la cola de generación de slots
+ * y mantenimiento nocturno del horizonte
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -2,6 +2,8 @@ package com.example.proyectocitas.config;
 
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
@@ -25,6 +27,8 @@ import com.example.proyectocitas.security.JwtAuthenticationFilter;
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final AuthenticationProvider authenticationProvider;
 
@@ -55,7 +59,7 @@ public class SecurityConfig {
             .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         // Para debugging
-        System.out.println("Configuración de seguridad API actualizada: rutas públicas explicitamente permitidas");
+        log.info("Configuración de seguridad API actualizada: rutas públicas explicitamente permitidas");
 
         return http.build();
     }    @Bean
@@ -81,7 +85,7 @@ public class SecurityConfig {
                 .permitAll()
             );
 
-        System.out.println("Configuración de seguridad WEB actualizada: formulario de login configurado con AuthenticationProvider");
+        log.info("Configuración de seguridad WEB actualizada: formulario de login configurado con AuthenticationProvider");
             
         return http.build();
     }
@@ -104,7 +108,7 @@ public class SecurityConfig {
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
         
-        System.out.println("Configuración CORS actualizada para: " + configuration.getAllowedOrigins());
+        log.info("Configuración CORS para: {}", configuration.getAllowedOrigins());
         return source;
     }
 
@@ -4,7 +4,11 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -15,12 +19,25 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.proyectocitas.config.HikariPoolMetrics;
 import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.dto.AppointmentPageDTO;
 import com.example.proyectocitas.dto.DoctorDTO;
 import com.example.proyectocitas.dto.ScheduleRequest;
+import com.example.proyectocitas.dto.SlotGenerationJobDTO;
 import com.example.proyectocitas.services.AppointmentService;
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.services.AppointmentStatsService;
+import com.example.proyectocitas.services.AppointmentStreamService;
 import com.example.proyectocitas.services.DoctorService;
+import com.example.proyectocitas.services.OptimisticRetryExecutor;
+import com.example.proyectocitas.services.ScheduleTemplateCache;
+import com.example.proyectocitas.services.AppointmentArchiveService;
+import com.example.proyectocitas.services.SlotMaintenanceService;
+import com.example.proyectocitas.services.SlotOutboxService;
+import com.example.proyectocitas.services.SlotGenerationJobService;
 
 @RestController
 @RequestMapping("/admin")
@@ -28,32 +45,56 @@ import com.example.proyectocitas.services.DoctorService;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
 
+    private static final Logger log = LoggerFactory.getLogger(AdminController.class);
+
     private final DoctorService doctorService;
     private final AppointmentService appointmentService;
+    private final SlotGenerationJobService slotGenerationJobService;
+    private final AppointmentStatsService appointmentStatsService;
+    private final AppointmentStreamService appointmentStreamService;
+    private final OptimisticRetryExecutor optimisticRetryExecutor;
+    private final HikariPoolMetrics hikariPoolMetrics;
+    private final ScheduleTemplateCache scheduleTemplateCache;
+    private final SlotOutboxService slotOutboxService;
+    private final SlotMaintenanceService slotMaintenanceService;
+    private final AppointmentArchiveService appointmentArchiveService;
     
-    public AdminController(DoctorService doctorService, AppointmentService appointmentService) {
+    public AdminController(DoctorService doctorService, AppointmentService appointmentService,
+            SlotGenerationJobService slotGenerationJobService, AppointmentStatsService appointmentStatsService,
+            AppointmentStreamService appointmentStreamService, OptimisticRetryExecutor optimisticRetryExecutor,
+            HikariPoolMetrics hikariPoolMetrics, ScheduleTemplateCache scheduleTemplateCache,
+            SlotOutboxService slotOutboxService, SlotMaintenanceService slotMaintenanceService,
+            AppointmentArchiveService appointmentArchiveService) {
         this.doctorService = doctorService;
         this.appointmentService = appointmentService;
+        this.slotGenerationJobService = slotGenerationJobService;
+        this.appointmentStatsService = appointmentStatsService;
+        this.appointmentStreamService = appointmentStreamService;
+        this.optimisticRetryExecutor = optimisticRetryExecutor;
+        this.hikariPoolMetrics = hikariPoolMetrics;
+        this.scheduleTemplateCache = scheduleTemplateCache;
+        this.slotOutboxService = slotOutboxService;
+        this.slotMaintenanceService = slotMaintenanceService;
+        this.appointmentArchiveService = appointmentArchiveService;
     }
     
     @GetMapping("/medicos/pendientes")
     public ResponseEntity<List<DoctorDTO>> getPendingDoctors() {
         List<DoctorDTO> pendingDoctors = doctorService.getPendingDoctors();
-        System.out.println("DEBUG AdminController: Devolviendo " + pendingDoctors.size() + " médicos pendientes");
         return ResponseEntity.ok(pendingDoctors);
     }
     
     @PostMapping("/medicos/{id}/aprobar")
     public ResponseEntity<DoctorDTO> approveDoctor(@PathVariable Long id) {
         DoctorDTO approvedDoctor = doctorService.approveDoctor(id);
-        System.out.println("DEBUG AdminController: Médico aprobado - ID: " + id);
+        log.info("Médico {} aprobado", id);
         return ResponseEntity.ok(approvedDoctor);
     }
     
     @PostMapping("/medicos/{id}/rechazar")
     public ResponseEntity<DoctorDTO> rejectDoctor(@PathVariable Long id) {
         DoctorDTO rejectedDoctor = doctorService.rejectDoctor(id);
-        System.out.println("DEBUG AdminController: Médico rechazado - ID: " + id);
+        log.info("Médico {} rechazado", id);
         return ResponseEntity.ok(rejectedDoctor);
     }
     
@@ -68,11 +109,12 @@ public class AdminController {
             @RequestBody ScheduleRequest scheduleRequest,
             @RequestParam(defaultValue = "4") int weeksInAdvance) {
           try {
-            appointmentService.generateInitialAppointmentsForDoctor(doctorId, weeksInAdvance);
+            // Se encola y la procesan los workers de la cola de generación
+            slotOutboxService.enqueue(doctorId, weeksInAdvance, null, null);
             
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
                 "success", true,
-                "message", "Citas generadas exitosamente para el médico " + doctorId,
+                "message", "Generación de citas encolada para el médico " + doctorId,
                 "doctorId", doctorId,
                 "weeksGenerated", weeksInAdvance
             ));
@@ -93,6 +135,33 @@ public class AdminController {
         List<AppointmentDTO> appointments = appointmentService.getAllAppointments();
         return ResponseEntity.ok(appointments);
     }
+
+    /**
+     * Citas del sistema paginadas por cursor (fecha, id)
+     */
+    @GetMapping("/citas/pagina")
+    public ResponseEntity<?> getAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + AppointmentService.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) Appointment.Status estado) {
+        try {
+            AppointmentPageDTO page = appointmentService.getAppointmentsPage(estado, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Exportación completa de citas en streaming
+     */
+    @GetMapping("/citas/stream")
+    public ResponseEntity<StreamingResponseBody> streamAppointments(
+            @RequestParam(required = false) Appointment.Status estado) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(appointmentStreamService.streamAppointments(estado));
+    }
     
     /**
      * Obtener citas de un médico específico
@@ -116,37 +185,18 @@ public class AdminController {
                 .getAvailableAppointmentsByDoctorAndDateRange(doctorId, startDate, endDate);
         return ResponseEntity.ok(appointments);
     }
-      /**
-     * Obtener estadísticas de citas
+    
+    /**
+     * Obtener estadísticas de citas (instantánea en memoria)
      */
     @GetMapping("/citas/estadisticas")
-    public ResponseEntity<Map<String, Object>> getAppointmentStats() {        try {
-            List<AppointmentDTO> allAppointments = appointmentService.getAllAppointments();
-              long disponibles = allAppointments.stream()
-                    .filter(a -> "DISPONIBLE".equals(a.getStatus()))
-                    .count();
-            
-            long agendadas = allAppointments.stream()
-                    .filter(a -> "AGENDADA".equals(a.getStatus()) || "CONFIRMADA".equals(a.getStatus()))
-                    .count();
-            
-            long completadas = allAppointments.stream()
-                    .filter(a -> "COMPLETADA".equals(a.getStatus()))
-                    .count();
-            
-            long canceladas = allAppointments.stream()
-                    .filter(a -> "CANCELADA".equals(a.getStatus()))
-                    .count();
-            
-            Map<String, Object> stats = Map.of(
-                "total", allAppointments.size(),
-                "disponibles", disponibles,
-                "agendadas", agendadas,
-                "completadas", completadas,
-                "canceladas", canceladas
-            );
-            
-            return ResponseEntity.ok(stats);
+    public ResponseEntity<Map<String, Object>> getAppointmentStats(
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        try {
+            if (refresh) {
+                appointmentStatsService.refresh();
+            }
+            return ResponseEntity.ok(appointmentStatsService.getSummary());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                 "error", "Error al obtener estadísticas: " + e.getMessage()
@@ -155,43 +205,123 @@ public class AdminController {
     }
     
     /**
-     * Generar citas para todos los médicos aprobados que tengan horarios configurados
+     * Obtener estadísticas de citas por médico
      */
-    @PostMapping("/citas/generar-todas")
-    public ResponseEntity<Map<String, Object>> generateAllAppointments(
-            @RequestParam(defaultValue = "4") int weeksInAdvance) {
-          try {
-            List<DoctorDTO> approvedDoctors = doctorService.getApprovedDoctors();
-            int doctorsProcessed = 0;
-            StringBuilder messages = new StringBuilder();
-              for (DoctorDTO doctor : approvedDoctors) {                try {
-                    // Generar citas para este médico usando sus horarios existentes
-                    appointmentService.generateInitialAppointmentsForDoctor(doctor.getId(), weeksInAdvance);
-                    
-                    doctorsProcessed++;
-                    messages.append("✓ Médico ID ").append(doctor.getId())
-                           .append(" (").append(doctor.getName()).append(")\n");
-                          
-                } catch (Exception e) {
-                    messages.append("✗ Error con médico ID ").append(doctor.getId())
-                           .append(": ").append(e.getMessage()).append("\n");
-                }
+    @GetMapping("/citas/estadisticas/medicos")
+    public ResponseEntity<Map<Long, Map<String, Long>>> getAppointmentStatsByDoctor() {
+        return ResponseEntity.ok(appointmentStatsService.getByDoctor());
+    }
+    
+    /**
+     * Obtener estadísticas de citas por día en un rango de fechas
+     */
+    @GetMapping("/citas/estadisticas/dias")
+    public ResponseEntity<Map<LocalDate, Map<String, Long>>> getAppointmentStatsByDay(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return ResponseEntity.ok(appointmentStatsService.getByDay(startDate, endDate));
+    }
+    
+    /**
+     * Conflictos de versión y reintentos en las actualizaciones de citas
+     */
+    @GetMapping("/citas/estadisticas/concurrencia")
+    public ResponseEntity<Map<String, Long>> getConcurrencyStats() {
+        return ResponseEntity.ok(optimisticRetryExecutor.getMetrics());
+    }
+    
+    /**
+     * Estado del pool de conexiones a la base de datos
+     */
+    @GetMapping("/sistema/pool")
+    public ResponseEntity<Map<String, Object>> getConnectionPoolStats() {
+        return ResponseEntity.ok(hikariPoolMetrics.snapshot());
+    }
+    
+    /**
+     * Aciertos, fallos y tamaño de la caché de plantillas de horario
+     */
+    @GetMapping("/sistema/horarios-cache")
+    public ResponseEntity<Map<String, Long>> getScheduleCacheStats() {
+        return ResponseEntity.ok(scheduleTemplateCache.getMetrics());
+    }
+    
+    /**
+     * Órdenes en la cola de generación de slots y contadores de proceso
+     */
+    @GetMapping("/sistema/cola-slots")
+    public ResponseEntity<Map<String, Long>> getSlotOutboxStats() {
+        return ResponseEntity.ok(slotOutboxService.getMetrics());
+    }
+    
+    /**
+     * Resultado de la última pasada del mantenimiento nocturno de slots
+     */
+    @GetMapping("/sistema/mantenimiento-slots")
+    public ResponseEntity<Map<String, Object>> getSlotMaintenanceStatus() {
+        return ResponseEntity.ok(slotMaintenanceService.getLastRun());
+    }
+    
+    /**
+     * Eliminar en segundo plano los slots DISPONIBLE pregenerados que queden
+     * tras activar los slots virtuales
+     */
+    @PostMapping("/citas/slots-pregenerados/eliminar")
+    public ResponseEntity<Map<String, Object>> removePregeneratedSlots() {
+        try {
+            if (!slotMaintenanceService.removePregeneratedSlots()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "success", false,
+                    "message", "Hay una pasada de mantenimiento de slots en curso"
+                ));
             }
-            
-            return ResponseEntity.ok(Map.of(
-                "success", true,
-                "message", "Proceso completado",
-                "doctorsProcessed", doctorsProcessed,
-                "totalDoctors", approvedDoctors.size(),
-                "weeksGenerated", weeksInAdvance,
-                "details", messages.toString()
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "success", false,
+                "message", e.getMessage()
             ));
-            
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(Map.of(
+        }
+        log.info("Eliminación de slots pregenerados lanzada");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+            "success", true,
+            "message", "Eliminación de slots pregenerados en curso; ver /admin/sistema/mantenimiento-slots"
+        ));
+    }
+    
+    /**
+     * Resultado de la última pasada del archivo de citas cerradas
+     */
+    @GetMapping("/sistema/archivo-citas")
+    public ResponseEntity<Map<String, Object>> getAppointmentArchiveStatus() {
+        return ResponseEntity.ok(appointmentArchiveService.getLastRun());
+    }
+    
+    /**
+     * Lanzar la generación de citas para todos los médicos aprobados como
+     * trabajo asíncrono. Devuelve inmediatamente el identificador del trabajo,
+     * o 409 si ya hay uno en curso.
+     */
+    @PostMapping("/citas/generar-todas")
+    public ResponseEntity<?> generateAllAppointments(
+            @RequestParam(defaultValue = "4") int weeksInAdvance) {
+        try {
+            SlotGenerationJobDTO job = slotGenerationJobService.startGenerateAll(weeksInAdvance);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
                 "success", false,
-                "message", "Error general al generar citas: " + e.getMessage()
+                "message", e.getMessage()
             ));
         }
     }
+    
+    /**
+     * Consultar el progreso de un trabajo de generación masiva
+     */
+    @GetMapping("/citas/generar-todas/{jobId}")
+    public ResponseEntity<SlotGenerationJobDTO> getGenerateAllJob(@PathVariable String jobId) {
+        return slotGenerationJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
@@ -4,20 +4,27 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.dto.AppointmentPageDTO;
 import com.example.proyectocitas.dto.AppointmentRequest;
 import com.example.proyectocitas.dto.BookingRequest;
 import com.example.proyectocitas.dto.ScheduleRequest;
 import com.example.proyectocitas.models.Appointment.Status;
 import com.example.proyectocitas.services.AppointmentService;
+import com.example.proyectocitas.services.AppointmentStreamService;
+import com.example.proyectocitas.services.SlotOutboxService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -27,13 +34,44 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class AppointmentController {
 
+    private static final Logger log = LoggerFactory.getLogger(AppointmentController.class);
+
     private final AppointmentService appointmentService;
+    private final AppointmentStreamService appointmentStreamService;
+    private final SlotOutboxService slotOutboxService;
 
     @GetMapping
     public ResponseEntity<List<AppointmentDTO>> getAllAppointments() {
         return ResponseEntity.ok(appointmentService.getAllAppointments());
     }
 
+    /**
+     * Listado de citas paginado por cursor
+     */
+    @GetMapping("/page")
+    public ResponseEntity<?> getAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + AppointmentService.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) Status status) {
+        try {
+            AppointmentPageDTO page = appointmentService.getAppointmentsPage(status, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Listado completo de citas escrito en streaming
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAppointments(
+            @RequestParam(required = false) Status status) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(appointmentStreamService.streamAppointments(status));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<AppointmentDTO> getAppointmentById(@PathVariable Long id) {
         return ResponseEntity.ok(appointmentService.getAppointmentById(id));
@@ -52,8 +90,8 @@ public class AppointmentController {
             @PathVariable Long doctorId,
             @RequestBody ScheduleRequest scheduleRequest,
             @RequestParam(defaultValue = "4") int weeksInAdvance) {
-        appointmentService.generateInitialAppointmentsForDoctor(doctorId, weeksInAdvance);
-        return ResponseEntity.status(HttpStatus.CREATED).build();
+        slotOutboxService.enqueue(doctorId, weeksInAdvance, null, null);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
     }
 
     @PostMapping("/{appointmentId}/book")
@@ -80,7 +118,11 @@ public class AppointmentController {
     @GetMapping("/doctor/{doctorId}")
     public ResponseEntity<List<AppointmentDTO>> getAppointmentsByDoctor(
             @PathVariable Long doctorId,
-            @RequestParam(required = false) Status status) {
+            @RequestParam(required = false) Status status,
+            @RequestParam(defaultValue = "false") boolean historial) {
+        if (historial) {
+            return ResponseEntity.ok(appointmentService.getAppointmentsByDoctorWithHistory(doctorId, status));
+        }
         if (status != null) {
             return ResponseEntity.ok(appointmentService.getAppointmentsByDoctorAndStatus(doctorId, status));
         }
@@ -90,13 +132,22 @@ public class AppointmentController {
     @GetMapping("/patient/{patientId}")
     public ResponseEntity<List<AppointmentDTO>> getAppointmentsByPatient(
             @PathVariable Long patientId,
-            @RequestParam(required = false) Status status) {
+            @RequestParam(required = false) Status status,
+            @RequestParam(defaultValue = "false") boolean historial) {
+        if (historial) {
+            return ResponseEntity.ok(appointmentService.getAppointmentsByPatientWithHistory(patientId, status));
+        }
         if (status != null) {
             return ResponseEntity.ok(appointmentService.getAppointmentsByPatientAndStatus(patientId, status));
         }
         return ResponseEntity.ok(appointmentService.getAppointmentsByPatient(patientId));
     }
 
+    @GetMapping("/patient/{patientId}/history")
+    public ResponseEntity<List<AppointmentDTO>> getPatientHistory(@PathVariable Long patientId) {
+        return ResponseEntity.ok(appointmentService.getPatientHistory(patientId));
+    }
+
     @GetMapping("/available")
     public ResponseEntity<?> getAvailableAppointments(
             @RequestParam(required = false) Long doctorId,
@@ -104,36 +155,53 @@ public class AppointmentController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
 
-        System.out.println("Solicitud de citas disponibles recibida - doctorId: " + doctorId
-                + ", date: " + date + ", startDate: " + startDate + ", endDate: " + endDate);
+        log.debug("Citas disponibles - doctorId: {}, date: {}, startDate: {}, endDate: {}",
+                doctorId, date, startDate, endDate);
 
         try {
             Object result;
             if (doctorId != null && startDate != null && endDate != null) {
-                System.out.println("Buscando citas por rango de fechas");
                 result = appointmentService.getAvailableAppointmentsByDoctorAndDateRange(doctorId, startDate, endDate);
-                System.out.println("Citas encontradas: " + (result != null ? ((Map<?, ?>) result).size() : 0));
             } else if (doctorId != null && date != null) {
-                System.out.println("Buscando citas por fecha específica");
                 result = appointmentService.getAvailableAppointmentsByDoctorAndDate(doctorId, date);
-                System.out.println("Citas encontradas: " + (result != null ? ((List<?>) result).size() : 0));
             } else if (doctorId != null) {
-                System.out.println("Buscando todas las citas del doctor");
                 result = appointmentService.getAvailableAppointmentsByDoctor(doctorId);
-                System.out.println("Citas encontradas: " + (result != null ? ((List<?>) result).size() : 0));
             } else {
-                System.out.println("Buscando todas las citas disponibles");
                 result = appointmentService.getAvailableAppointments();
-                System.out.println("Citas encontradas: " + (result != null ? ((List<?>) result).size() : 0));
             }
             return ResponseEntity.ok(result);
         } catch (Exception e) {
-            System.err.println("Error al obtener citas disponibles: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error al obtener citas disponibles", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al obtener citas disponibles");
         }
     }
 
+    /**
+     * Citas disponibles paginadas por cursor (slots calculados si los slots
+     * virtuales están activados)
+     */
+    @GetMapping("/available/page")
+    public ResponseEntity<?> getAvailableAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + AppointmentService.DEFAULT_PAGE_SIZE) int size) {
+        try {
+            AppointmentPageDTO page = appointmentService.getAvailableAppointmentsPage(cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Todas las citas disponibles escritas en streaming
+     */
+    @GetMapping("/available/stream")
+    public ResponseEntity<StreamingResponseBody> streamAvailableAppointments() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(appointmentStreamService.streamAvailableAppointments());
+    }
+
     /**
      * Crea una cita de manera dinámica verificando disponibilidad en tiempo
      * real
@@ -143,13 +211,8 @@ public class AppointmentController {
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestBody BookingRequest request) {
         try {
-            System.out.println("=== DEBUG CREATE APPOINTMENT ===");
-            System.out.println("Username: " + userDetails.getUsername());
-            System.out.println("Request: " + request);
-            System.out.println("Doctor ID: " + request.getDoctorId());
-            System.out.println("Date: " + request.getDate());
-            System.out.println("Time: " + request.getTime());
-            System.out.println("Notes: " + request.getNotes());
+            log.debug("Crear cita - usuario: {}, médico: {}, fecha: {}, hora: {}",
+                    userDetails.getUsername(), request.getDoctorId(), request.getDate(), request.getTime());
 
             AppointmentDTO appointment = appointmentService.createAppointmentDynamically(
                     userDetails.getUsername(),
@@ -159,11 +222,10 @@ public class AppointmentController {
                     request.getNotes()
             );
 
-            System.out.println("Cita creada exitosamente: " + appointment);
+            log.debug("Cita {} creada", appointment.getId());
             return ResponseEntity.status(HttpStatus.CREATED).body(appointment);
         } catch (Exception e) {
-            System.err.println("Error al crear cita: " + e.getMessage());
-            e.printStackTrace();
+            log.warn("No se pudo crear la cita para {}: {}", userDetails.getUsername(), e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
         }
@@ -35,7 +35,7 @@ public class AuthController {
         try {
             return ResponseEntity.ok(authService.register(request));
         } catch (Exception e) {
-            e.printStackTrace(); // Para ver el error en los logs
+            log.error("Error al registrar el usuario {}", request.getUsername(), e);
             return ResponseEntity.status(500).body(
                 AuthResponse.builder()
                     .success(false)
@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -31,6 +33,8 @@ import com.example.proyectocitas.services.FileStorageService;
 @CrossOrigin(origins = "http://localhost:3000", maxAge = 3600, allowCredentials = "true")
 public class DoctorController {
 
+    private static final Logger log = LoggerFactory.getLogger(DoctorController.class);
+
     private final DoctorService doctorService;
     private final AppointmentService appointmentService;
     private final FileStorageService fileStorageService;
@@ -97,8 +101,9 @@ public class DoctorController {
     
     @GetMapping("/citas")
     public ResponseEntity<List<AppointmentDTO>> getDoctorAppointments(
-            @AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(appointmentService.getAppointmentsByDoctor(userDetails.getUsername()));
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "false") boolean historial) {
+        return ResponseEntity.ok(appointmentService.getAppointmentsByDoctor(userDetails.getUsername(), historial));
     }
     
     /**
@@ -111,21 +116,16 @@ public class DoctorController {
         Map<String, String> response = new HashMap<>();
         
         try {
-            // Log para debugging
-            System.out.println("=== UPLOAD PHOTO DEBUG ===");
-            System.out.println("Username: " + userDetails.getUsername());
-            System.out.println("File name: " + file.getOriginalFilename());
-            System.out.println("File size: " + file.getSize());
+            log.debug("Subida de foto - usuario: {}, archivo: {}, tamaño: {}",
+                    userDetails.getUsername(), file.getOriginalFilename(), file.getSize());
             
             // Almacenar el archivo y obtener su nombre único
             String fileName = fileStorageService.storeFile(file);
-            System.out.println("Stored file: " + fileName);
               // Construir la URL completa para acceder al archivo
             String fileDownloadUri = "/uploads/profile-photos/" + fileName;
             
             // Actualizar el perfil del médico con la URL de la imagen
             doctorService.updateDoctorPhotoUrl(userDetails.getUsername(), fileDownloadUri);
-            System.out.println("Updated doctor photo URL successfully");
             
             // Responder con la URL de la imagen
             response.put("url", fileDownloadUri);
@@ -134,14 +134,13 @@ public class DoctorController {
             return ResponseEntity.ok(response);
             
         } catch (RuntimeException ex) {
-            System.err.println("RuntimeException: " + ex.getMessage());
+            log.warn("Error al subir la foto de {}: {}", userDetails.getUsername(), ex.getMessage());
             response.put("error", ex.getMessage());
             response.put("type", "runtime_error");
             return ResponseEntity.status(404).body(response);
             
         } catch (Exception ex) {
-            System.err.println("General Exception: " + ex.getMessage());
-            ex.printStackTrace();
+            log.error("Error al subir la foto de {}", userDetails.getUsername(), ex);
             response.put("error", "Error al subir el archivo: " + ex.getMessage());
             response.put("type", "general_error");
             return ResponseEntity.status(500).body(response);
@@ -168,13 +167,11 @@ public class DoctorController {
         return ResponseEntity.ok(response);
     }    @GetMapping("/test-generate-appointments/{doctorId}")
     public ResponseEntity<Map<String, Object>> testGenerateAppointments(@PathVariable Long doctorId) {
-        System.out.println("=== ENDPOINT DE PRUEBA: Generando citas para doctor ID: " + doctorId + " ===");
-        
         try {
             DoctorDTO doctor = doctorService.getDoctorById(doctorId);
-            System.out.println("Doctor encontrado: " + doctor.getName());
-            System.out.println("Duración de cita: " + doctor.getAppointmentDuration() + " minutos");
-            System.out.println("Horarios configurados: " + (doctor.getWeeklySchedule() != null ? doctor.getWeeklySchedule().size() : 0));
+            log.debug("Prueba de generación de citas - médico {}, duración {} min, horarios {}",
+                    doctorId, doctor.getAppointmentDuration(),
+                    doctor.getWeeklySchedule() != null ? doctor.getWeeklySchedule().size() : 0);
             
             if (doctor.getWeeklySchedule() == null || doctor.getWeeklySchedule().isEmpty()) {
                 Map<String, Object> response = new HashMap<>();
@@ -198,8 +195,8 @@ public class DoctorController {
                     .duracionCita(doctor.getAppointmentDuration())
                     .build();
             
-            System.out.println("ScheduleRequest creado - Días disponibles: " + diasDisponibles.size());
-            System.out.println("Fecha inicio: " + fechaInicio + ", Fecha fin: " + fechaFin);            // Generar citas iniciales para el médico (4 semanas por adelantado)
+            log.debug("Días disponibles: {}, desde {} hasta {}", diasDisponibles.size(), fechaInicio, fechaFin);
+            // Generar citas iniciales para el médico (4 semanas por adelantado)
             appointmentService.generateInitialAppointmentsForDoctor(doctorId, 4);
             
             Map<String, Object> response = new HashMap<>();
@@ -208,11 +205,10 @@ public class DoctorController {
             response.put("doctorId", doctorId);
             response.put("doctorName", doctor.getName());
             
-            System.out.println("=== FIN ENDPOINT DE PRUEBA ===");
             return ResponseEntity.ok(response);
             
         } catch (Exception ex) {
-            System.err.println("ERROR en endpoint de prueba: " + ex.getMessage());
+            log.error("Error en la prueba de generación de citas del médico {}", doctorId, ex);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -8,6 +8,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.proyectocitas.dto.AppointmentDTO;
@@ -25,7 +26,8 @@ public class PatientController {
     
     @GetMapping("/citas")
     public ResponseEntity<List<AppointmentDTO>> getPatientAppointments(
-            @AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(appointmentService.getAppointmentsByPatient(userDetails.getUsername()));
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "false") boolean historial) {
+        return ResponseEntity.ok(appointmentService.getAppointmentsByPatient(userDetails.getUsername(), historial));
     }
 }
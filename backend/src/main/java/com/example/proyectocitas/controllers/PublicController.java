@@ -1,6 +1,7 @@
 package com.example.proyectocitas.controllers;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -19,14 +20,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.proyectocitas.config.RowSamplingTurboFilter;
 import com.example.proyectocitas.dto.DoctorDTO;
-import com.example.proyectocitas.models.Appointment;
 import com.example.proyectocitas.models.Doctor;
-import com.example.proyectocitas.models.Horario;
-import com.example.proyectocitas.repositories.AppointmentRepository;
 import com.example.proyectocitas.repositories.DoctorRepository;
-import com.example.proyectocitas.repositories.HorarioRepository;
+import com.example.proyectocitas.services.AvailabilityIndex;
 import com.example.proyectocitas.services.DoctorService;
+import com.example.proyectocitas.services.ScheduleTemplateCache;
+import com.example.proyectocitas.services.VirtualSlotService;
+import com.example.proyectocitas.utils.SlotCalculator;
 
 import lombok.RequiredArgsConstructor;
 
@@ -36,9 +38,10 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class PublicController {
     private static final Logger log = LoggerFactory.getLogger(PublicController.class);    private final DoctorRepository doctorRepository;
-    private final AppointmentRepository appointmentRepository;
-    private final HorarioRepository horarioRepository;
+    private final ScheduleTemplateCache scheduleTemplateCache;
     private final DoctorService doctorService;
+    private final AvailabilityIndex availabilityIndex;
+    private final VirtualSlotService virtualSlotService;
     
     /**
      * Endpoint público para buscar médicos por especialidad y ubicación
@@ -60,11 +63,11 @@ public class PublicController {
      */
     @GetMapping("/doctors/debug")
     public ResponseEntity<List<DoctorDTO>> getAllDoctorsDebug() {
-        log.info("DEBUG: Obteniendo todos los médicos");
+        log.debug("DEBUG: Obteniendo todos los médicos");
         
         try {
             List<DoctorDTO> allDoctors = doctorService.getAllDoctorsDebug();
-            log.info("DEBUG: Encontrados {} médicos en total", allDoctors.size());
+            log.debug("DEBUG: Encontrados {} médicos en total", allDoctors.size());
             return ResponseEntity.ok(allDoctors);
         } catch (Exception e) {
             log.error("DEBUG: Error al obtener todos los médicos", e);
@@ -77,11 +80,11 @@ public class PublicController {
      */
     @GetMapping("/doctors/approved")
     public ResponseEntity<List<DoctorDTO>> getApprovedDoctorsDebug() {
-        log.info("DEBUG: Obteniendo médicos aprobados");
+        log.debug("DEBUG: Obteniendo médicos aprobados");
         
         try {
             List<DoctorDTO> approvedDoctors = doctorService.getApprovedDoctors();
-            log.info("DEBUG: Encontrados {} médicos aprobados", approvedDoctors.size());
+            log.debug("DEBUG: Encontrados {} médicos aprobados", approvedDoctors.size());
             return ResponseEntity.ok(approvedDoctors);
         } catch (Exception e) {
             log.error("DEBUG: Error al obtener médicos aprobados", e);
@@ -94,11 +97,11 @@ public class PublicController {
      */
     @GetMapping("/doctors/pending")
     public ResponseEntity<List<DoctorDTO>> getPendingDoctorsDebug() {
-        log.info("DEBUG: Obteniendo médicos pendientes");
+        log.debug("DEBUG: Obteniendo médicos pendientes");
         
         try {
             List<DoctorDTO> pendingDoctors = doctorService.getPendingDoctors();
-            log.info("DEBUG: Encontrados {} médicos pendientes", pendingDoctors.size());
+            log.debug("DEBUG: Encontrados {} médicos pendientes", pendingDoctors.size());
             return ResponseEntity.ok(pendingDoctors);
         } catch (Exception e) {
             log.error("DEBUG: Error al obtener médicos pendientes", e);
@@ -132,36 +135,24 @@ public class PublicController {
           // Calcular disponibilidad para los próximos 3 días
         List<Map<String, Object>> availableDays = new ArrayList<>();
         
-        // Debug: verificar horarios del doctor
-        List<Horario> allSchedules = horarioRepository.findByDoctorIdAndActivoTrue(doctor.getId());
-        log.info("Doctor ID {}: Found {} active schedules", doctor.getId(), allSchedules.size());
-        for (Horario h : allSchedules) {
-            log.info("Schedule: Day={}, Start={}, End={}, Active={}", 
-                h.getDiaSemana(), h.getHoraInicio(), h.getHoraFin(), h.getActivo());
-        }
+        // Plantilla semanal del médico desde memoria
+        ScheduleTemplateCache.WeekTemplate template = scheduleTemplateCache.get(doctor.getId());
+        log.debug("Doctor ID {}: {} active schedule blocks", doctor.getId(), template.blockCount());
         
+        LocalDateTime now = LocalDateTime.now();
         for (int i = 0; i < 3; i++) {
             LocalDate date = startDate.plusDays(i);
             String dayOfWeek = date.getDayOfWeek().toString().substring(0, 3).toLowerCase();
-            log.info("Checking availability for date: {}, dayOfWeek: {}", date, dayOfWeek);
+            log.debug(RowSamplingTurboFilter.ROW, "Checking availability for date: {}, dayOfWeek: {}", date, dayOfWeek);
             
             // Buscar el horario del médico para este día
-            List<Horario> horarios = allSchedules.stream()
-                    .filter(s -> s.getDiaSemana().toString().substring(0, 3).toLowerCase().equals(dayOfWeek))
-                    .collect(Collectors.toList());
+            List<SlotCalculator.Block> blocks = template.day(date.getDayOfWeek());
             
-            log.info("Found {} schedules for day {}", horarios.size(), dayOfWeek);
+            log.debug(RowSamplingTurboFilter.ROW, "Found {} schedules for day {}", blocks.size(), dayOfWeek);
             
-            if (!horarios.isEmpty()) {
-                Horario horario = horarios.get(0);
-                
-                // Buscar citas existentes para este día
-                List<Appointment> existingAppointments = appointmentRepository
-                        .findByDoctorIdAndDate(doctor.getId(), date);
-                        
-                // Buscar citas disponibles para este día
-                List<Appointment> availableAppointments = appointmentRepository
-                        .findAvailableByDoctorIdAndDate(doctor.getId(), date);
+            if (!blocks.isEmpty()) {
+                // Ocupación del día desde el índice en memoria (sin consultas SQL)
+                AvailabilityIndex.DaySlots daySlots = availabilityIndex.getDay(doctor.getId(), date);
                 
                 // Crear slots de tiempo disponibles
                 Map<String, Object> dayData = new HashMap<>();
@@ -169,39 +160,26 @@ public class PublicController {
                 dayData.put("dayOfWeek", dayOfWeek);
                 
                 List<Map<String, Object>> slots = new ArrayList<>();
+                boolean virtualSlots = virtualSlotService.isEnabled();
                 
-                // Convertir horarios de inicio y fin a LocalTime
-                LocalTime startTime = horario.getHoraInicio();
-                LocalTime endTime = horario.getHoraFin();
-                
-                // Crear slots de duración de cita
-                LocalTime currentSlot = startTime;
-                while (currentSlot.plusMinutes(doctor.getAppointmentDuration()).isBefore(endTime) || 
-                       currentSlot.plusMinutes(doctor.getAppointmentDuration()).equals(endTime)) {
+                // Slots de todos los tramos del día con su duración e intervalo,
+                // sin los que ya han empezado hoy
+                int notBefore = SlotCalculator.notBefore(date, now);
+                SlotCalculator.forEachSlot(blocks, notBefore, (start, end, block) -> {
+                    LocalTime slotTime = SlotCalculator.toTime(start);
                     
-                    // Create a final copy of currentSlot for use in lambda
-                    final LocalTime slotTime = currentSlot;
-                      // Verificar si el slot está disponible (tiene una cita con estado 'AVAILABLE')
-                    boolean isAvailable = availableAppointments.stream()
-                        .anyMatch(appt -> appt.getHoraInicio().equals(slotTime));
-                    
-                    // Verificar si el slot está ocupado por una cita programada
-                    boolean isBooked = existingAppointments.stream()
-                        .filter(appt -> appt.getStatus() != Appointment.Status.DISPONIBLE)
-                        .anyMatch(appt -> appt.getHoraInicio().equals(slotTime));
-                    
-                    // Solo mostrar el slot si está disponible y no está ocupado
-                    boolean showSlot = isAvailable && !isBooked;
+                    // Solo mostrar el slot si tiene una cita DISPONIBLE y no está ocupado;
+                    // con slots virtuales basta con que no se solape con una reserva
+                    boolean showSlot = virtualSlots
+                            ? !daySlots.overlapsBooking(start, end)
+                            : daySlots.isFree(slotTime);
                     
                     Map<String, Object> slotData = new HashMap<>();
-                    slotData.put("time", currentSlot.toString());
+                    slotData.put("time", slotTime.toString());
                     slotData.put("available", showSlot);
                     
                     slots.add(slotData);
-                    
-                    // Avanzar al siguiente slot
-                    currentSlot = currentSlot.plusMinutes(doctor.getAppointmentDuration());
-                }
+                });
                 
                 dayData.put("slots", slots);
                 availableDays.add(dayData);
@@ -269,11 +247,11 @@ public class PublicController {
      */
     @GetMapping("/doctors/status-counts")
     public ResponseEntity<Map<String, Long>> getStatusCounts() {
-        log.info("DEBUG: Obteniendo conteo de status de médicos");
+        log.debug("DEBUG: Obteniendo conteo de status de médicos");
         
         try {
             Map<String, Long> statusCounts = doctorService.getStatusCounts();
-            log.info("DEBUG: Status counts: {}", statusCounts);
+            log.debug("DEBUG: Status counts: {}", statusCounts);
             return ResponseEntity.ok(statusCounts);
         } catch (Exception e) {
             log.error("DEBUG: Error al obtener conteo de status", e);
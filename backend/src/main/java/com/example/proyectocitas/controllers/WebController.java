@@ -2,6 +2,8 @@ package com.example.proyectocitas.controllers;
 
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -15,6 +17,8 @@ import com.example.proyectocitas.services.UserService;
 @Controller
 public class WebController {
 
+    private static final Logger log = LoggerFactory.getLogger(WebController.class);
+
     private final DoctorService doctorService;
     private final UserService userService;
 
@@ -36,16 +40,7 @@ public class WebController {
     @GetMapping("/admin-panel")
     @PreAuthorize("hasRole('ADMIN')")
     public String adminPanel(Model model) {
-        System.out.println("=== DEBUG: Cargando panel de administración ===");
-        
         List<DoctorDTO> pendingDoctors = doctorService.getPendingDoctors();
-        System.out.println("DEBUG: Médicos pendientes encontrados: " + pendingDoctors.size());
-        
-        for (DoctorDTO doctor : pendingDoctors) {
-            System.out.println("DEBUG: Doctor pendiente - ID: " + doctor.getId() + 
-                             ", Nombre: " + doctor.getName() + 
-                             ", Especialidad: " + doctor.getSpecialty());
-        }
         
         model.addAttribute("pendingDoctors", pendingDoctors);
         
@@ -53,14 +48,13 @@ public class WebController {
         Long totalDoctors = doctorService.getTotalDoctorsCount();
         Long totalPatients = userService.getTotalPatientsCount();
         
-        System.out.println("DEBUG: Total médicos: " + totalDoctors);
-        System.out.println("DEBUG: Total pacientes: " + totalPatients);
+        log.debug("Panel de administración - pendientes: {}, médicos: {}, pacientes: {}",
+                pendingDoctors.size(), totalDoctors, totalPatients);
         
         model.addAttribute("totalDoctors", totalDoctors);
         model.addAttribute("totalPatients", totalPatients);
         model.addAttribute("totalAppointments", 0); // Puedes agregarlo si tienes un servicio para citas
         
-        System.out.println("=== DEBUG: Panel de administración cargado ===");
         return "admin-panel";
     }
 
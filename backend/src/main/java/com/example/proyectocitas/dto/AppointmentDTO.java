@@ -1,8 +1,11 @@
 package com.example.proyectocitas.dto;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 
+import com.example.proyectocitas.models.Appointment;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -26,6 +29,30 @@ public class AppointmentDTO {
     private String fechaCreacion;
     private String fechaActualizacion;
     private Long horarioId;
+
+    /**
+     * Constructor para proyecciones JPQL (SELECT new ...); evita cargar las
+     * entidades Doctor, Patient y User de cada fila
+     */
+    public AppointmentDTO(Long id, Long doctorId, String doctorName, Long patientId, String patientName,
+            Long horarioId, LocalDate fecha, LocalTime horaInicio, LocalTime horaFin, Appointment.Status estado,
+            String motivoConsulta, String notas, LocalDateTime fechaCreacion, LocalDateTime fechaActualizacion) {
+        this.id = id;
+        this.doctorId = doctorId;
+        this.doctorName = doctorName;
+        this.patientId = patientId;
+        this.patientName = patientName;
+        this.horarioId = horarioId;
+        this.date = fecha;
+        this.time = horaInicio;
+        this.horaInicio = horaInicio;
+        this.horaFin = horaFin;
+        this.status = estado != null ? estado.name() : null;
+        this.motivoConsulta = motivoConsulta;
+        this.notes = notas;
+        this.fechaCreacion = fechaCreacion != null ? fechaCreacion.toString() : null;
+        this.fechaActualizacion = fechaActualizacion != null ? fechaActualizacion.toString() : null;
+    }
     
     // Compatibility method for getStatus()
     public String getStatus() {
@@ -0,0 +1,24 @@
+package com.example.proyectocitas.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Página de citas paginada por cursor (fecha, id_cita), o (médico, fecha,
+ * hora) para los slots virtuales. nextCursor es null cuando no quedan más
+ * resultados.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentPageDTO {
+    private List<AppointmentDTO> items;
+    private int size;
+    private boolean hasMore;
+    private String nextCursor;
+}
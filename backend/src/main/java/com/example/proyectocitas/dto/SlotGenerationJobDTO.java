@@ -0,0 +1,31 @@
+package com.example.proyectocitas.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progreso de un trabajo de generación masiva de citas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotGenerationJobDTO {
+    private String jobId;
+    private String status; // EN_PROCESO, COMPLETADO
+    private int weeksInAdvance;
+    private int totalDoctors;
+    private int doctorsProcessed;
+    private int failures;
+    private long slotsInserted;
+    private double doctorsPerSecond;
+    private double slotsPerSecond;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private List<String> errors;
+}
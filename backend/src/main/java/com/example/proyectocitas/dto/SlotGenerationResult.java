@@ -0,0 +1,20 @@
+package com.example.proyectocitas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de una generación de citas disponibles para un médico
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotGenerationResult {
+    private Long doctorId;
+    private int slotsInserted;
+    private int slotsRetired;
+    private long elapsedMillis;
+}
@@ -1,5 +1,6 @@
 package com.example.proyectocitas.exceptions;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -43,6 +44,16 @@ public class GlobalExceptionHandler {
                 .build());
     }
     
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<AuthResponse> handleOptimisticLocking(OptimisticLockingFailureException ex) {
+        log.warn("Conflicto de concurrencia: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .body(AuthResponse.builder()
+                .success(false)
+                .message("El registro fue modificado por otra operación, inténtelo de nuevo")
+                .build());
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<AuthResponse> handleGenericException(Exception ex) {
         log.error("Error inesperado: {}", ex.getMessage(), ex);
@@ -0,0 +1,49 @@
+package com.example.proyectocitas.listeners;
+
+import org.springframework.stereotype.Component;
+
+import com.example.proyectocitas.models.User;
+import com.example.proyectocitas.security.TokenRevocationRegistry;
+import com.example.proyectocitas.security.UserDetailsCache;
+import com.example.proyectocitas.utils.TransactionUtils;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Listener JPA de User: cuando se modifica (rol, estado, contraseña) o se
+ * elimina, retira el usuario de la caché de autenticación y publica su
+ * versión de token, que User solo aumenta al cambiar el rol o el estado
+ */
+@Component
+public class UserCacheInvalidationListener {
+
+    private final UserDetailsCache userDetailsCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    public UserCacheInvalidationListener(UserDetailsCache userDetailsCache,
+            TokenRevocationRegistry tokenRevocationRegistry) {
+        this.userDetailsCache = userDetailsCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+    }
+
+    @PostUpdate
+    public void onUserUpdated(User user) {
+        String username = user.getUsername();
+        long tokenVersion = user.getTokenVersion();
+        boolean enabled = user.isEnabled();
+        TransactionUtils.afterCommit(() -> {
+            userDetailsCache.removeUserFromCache(username);
+            tokenRevocationRegistry.userChanged(username, tokenVersion, enabled);
+        });
+    }
+
+    @PostRemove
+    public void onUserRemoved(User user) {
+        String username = user.getUsername();
+        TransactionUtils.afterCommit(() -> {
+            userDetailsCache.removeUserFromCache(username);
+            tokenRevocationRegistry.userChanged(username, null, false);
+        });
+    }
+}
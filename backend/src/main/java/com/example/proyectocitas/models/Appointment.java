@@ -15,12 +15,14 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -33,7 +35,17 @@ import lombok.ToString;
 @ToString
 @EqualsAndHashCode
 @Entity
-@Table(name = "cita")
+// Un médico no puede tener dos citas activas que empiecen a la misma hora: lo
+// garantiza uk_cita_slot_activo (migraciones V1/V2), que no cuenta las
+// canceladas y por eso no se puede declarar aquí
+@Table(name = "cita", indexes = {
+    // Agenda y disponibilidad de un médico por día y estado
+    @Index(name = "idx_cita_medico_fecha_estado_hora", columnList = "id_medico, fecha, estado, hora_inicio"),
+    // Citas de un paciente
+    @Index(name = "idx_cita_paciente_fecha", columnList = "id_paciente, fecha"),
+    // Listados paginados y exportaciones por estado ordenados por fecha
+    @Index(name = "idx_cita_estado_fecha", columnList = "estado, fecha")
+})
 public class Appointment implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -92,6 +104,11 @@ public class Appointment implements Serializable {
     @Column(name = "fecha_actualizacion", insertable = false)
     private LocalDateTime fechaActualizacion;
 
+    // Bloqueo optimista: las actualizaciones concurrentes de la misma cita fallan en lugar de sobrescribirse
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     // Status getter/setter aliases for compatibility with existing code
     @Transient
     @JsonIgnore
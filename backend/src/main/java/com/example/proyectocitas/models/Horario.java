@@ -11,6 +11,7 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -29,7 +30,9 @@ import lombok.ToString;
 @ToString(exclude = "citas")
 @EqualsAndHashCode(exclude = "citas")
 @Entity
-@Table(name = "horario")
+@Table(name = "horario", indexes = {
+    @Index(name = "idx_horario_doctor_dia_activo", columnList = "doctor_id, dia_semana, activo")
+})
 public class Horario {    @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id") // Cambiado de "id_horario" a "id" para coincidir con la base de datos
@@ -2,25 +2,34 @@ package com.example.proyectocitas.models;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.example.proyectocitas.listeners.UserCacheInvalidationListener;
+
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheInvalidationListener.class)
 public class User implements UserDetails {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -41,6 +50,17 @@ public class User implements UserDetails {
     @JoinColumn(name = "role_id", nullable = false)
     private Role role;
     
+    // Versión de los tokens con roles embebidos: aumenta al cambiar el rol o
+    // el estado de la cuenta, lo que invalida los tokens emitidos antes
+    @Column(name = "token_version", nullable = false)
+    private long tokenVersion;
+    
+    // Rol y estado tal como se leyeron, para detectar si cambian al actualizar
+    @Transient
+    private Long loadedRoleId;
+    @Transient
+    private Boolean loadedEnabled;
+    
     // Constructor por defecto
     public User() {
         this.enabled = true;
@@ -134,6 +154,26 @@ public class User implements UserDetails {
         this.username = username;
     }
     
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void rememberAuthorization() {
+        this.loadedRoleId = role != null ? role.getId() : null;
+        this.loadedEnabled = enabled;
+    }
+    
+    @PreUpdate
+    void bumpTokenVersionOnAuthorizationChange() {
+        Long roleId = role != null ? role.getId() : null;
+        if (loadedEnabled != null && (loadedEnabled != enabled || !Objects.equals(loadedRoleId, roleId))) {
+            tokenVersion++;
+        }
+        rememberAuthorization();
+    }
+    
     public Doctor getDoctor() {
         return doctor;
     }
@@ -0,0 +1,149 @@
+package com.example.proyectocitas.repositories;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.models.Appointment;
+
+/**
+ * Acceso a la tabla cita_historial (ver migración V6__cita_historial).
+ *
+ * El traslado copia las filas con INSERT ... SELECT y las borra de cita en
+ * la misma transacción, así que una cita está siempre en una sola de las dos
+ * tablas. Las consultas devuelven AppointmentDTO igual que las de
+ * AppointmentRepository, para poder unir ambos resultados, y los conteos
+ * agregados tienen la misma forma que los de AppointmentRepository.
+ */
+@Repository
+public class AppointmentArchiveRepository {
+
+    /**
+     * Estados cerrados que se trasladan al histórico
+     */
+    public static final List<Appointment.Status> ARCHIVABLE = List.of(
+            Appointment.Status.COMPLETADA, Appointment.Status.CANCELADA, Appointment.Status.NO_ASISTIO);
+
+    private static final String COLUMNS = "id_cita, id_paciente, id_medico, id_horario, fecha, hora_inicio, "
+            + "hora_fin, estado, motivo_consulta, motivo_cancelacion, notas, fecha_creacion, fecha_actualizacion, "
+            + "version";
+
+    private static final String DTO_SELECT = "SELECT c.id_cita, c.id_medico, mu.name AS medico_nombre, "
+            + "c.id_paciente, pu.name AS paciente_nombre, c.id_horario, c.fecha, c.hora_inicio, c.hora_fin, "
+            + "c.estado, c.motivo_consulta, c.notas, c.fecha_creacion, c.fecha_actualizacion "
+            + "FROM cita_historial c "
+            + "LEFT JOIN doctors m ON m.id = c.id_medico LEFT JOIN users mu ON mu.id = m.user_id "
+            + "LEFT JOIN paciente p ON p.id_paciente = c.id_paciente LEFT JOIN users pu ON pu.id = p.user_id ";
+
+    private static final String DTO_ORDER = " ORDER BY c.fecha DESC, c.hora_inicio DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AppointmentArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Traslada al histórico hasta limit citas cerradas anteriores a la fecha
+     * indicada; devuelve cuántas se trasladaron. Debe ejecutarse dentro de
+     * una transacción.
+     */
+    public int archiveBatch(LocalDate before, int limit, LocalDateTime archivedAt) {
+        List<Object> args = new ArrayList<>(ARCHIVABLE.size() + 2);
+        args.add(before);
+        for (Appointment.Status status : ARCHIVABLE) {
+            args.add(status.name());
+        }
+        args.add(limit);
+        // Bloquear primero las filas elegidas para que copia y borrado vean las mismas
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id_cita FROM cita WHERE fecha < ? "
+                + "AND estado IN (" + placeholders(ARCHIVABLE.size()) + ") ORDER BY id_cita LIMIT ? FOR UPDATE",
+                Long.class, args.toArray());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String in = placeholders(ids.size());
+        Object[] insertArgs = new Object[ids.size() + 1];
+        insertArgs[0] = archivedAt;
+        for (int i = 0; i < ids.size(); i++) {
+            insertArgs[i + 1] = ids.get(i);
+        }
+        jdbcTemplate.update("INSERT INTO cita_historial (" + COLUMNS + ", archivado_en) "
+                + "SELECT " + COLUMNS + ", ? FROM cita WHERE id_cita IN (" + in + ")", insertArgs);
+        return jdbcTemplate.update("DELETE FROM cita WHERE id_cita IN (" + in + ")", ids.toArray());
+    }
+
+    /**
+     * Citas archivadas de un médico, opcionalmente filtradas por estado
+     */
+    public List<AppointmentDTO> findDTOsByMedicoId(Long medicoId, Appointment.Status estado) {
+        return findDTOs("c.id_medico = ?", medicoId, estado);
+    }
+
+    /**
+     * Citas archivadas de un paciente, opcionalmente filtradas por estado
+     */
+    public List<AppointmentDTO> findDTOsByPacienteId(Long pacienteId, Appointment.Status estado) {
+        return findDTOs("c.id_paciente = ?", pacienteId, estado);
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cita_historial", Long.class);
+        return count != null ? count : 0;
+    }
+
+    // Conteos agregados para estadísticas, con el estado como Appointment.Status
+    public List<Object[]> countGroupByEstado() {
+        return jdbcTemplate.query("SELECT estado, COUNT(*) FROM cita_historial GROUP BY estado",
+                (rs, rowNum) -> new Object[] {Appointment.Status.valueOf(rs.getString(1)), rs.getLong(2)});
+    }
+
+    public List<Object[]> countGroupByMedicoAndEstado() {
+        return jdbcTemplate.query("SELECT id_medico, estado, COUNT(*) FROM cita_historial GROUP BY id_medico, estado",
+                (rs, rowNum) -> new Object[] {rs.getLong(1), Appointment.Status.valueOf(rs.getString(2)),
+                        rs.getLong(3)});
+    }
+
+    public List<Object[]> countGroupByFechaAndEstado() {
+        return jdbcTemplate.query("SELECT fecha, estado, COUNT(*) FROM cita_historial GROUP BY fecha, estado",
+                (rs, rowNum) -> new Object[] {rs.getObject(1, LocalDate.class),
+                        Appointment.Status.valueOf(rs.getString(2)), rs.getLong(3)});
+    }
+
+    private List<AppointmentDTO> findDTOs(String condition, Long id, Appointment.Status estado) {
+        if (estado != null && !ARCHIVABLE.contains(estado)) {
+            return Collections.emptyList();
+        }
+        if (estado == null) {
+            return jdbcTemplate.query(DTO_SELECT + "WHERE " + condition + DTO_ORDER,
+                    AppointmentArchiveRepository::mapDTO, id);
+        }
+        return jdbcTemplate.query(DTO_SELECT + "WHERE " + condition + " AND c.estado = ?" + DTO_ORDER,
+                AppointmentArchiveRepository::mapDTO, id, estado.name());
+    }
+
+    private static AppointmentDTO mapDTO(ResultSet rs, int rowNum) throws SQLException {
+        return new AppointmentDTO(rs.getLong("id_cita"), rs.getObject("id_medico", Long.class),
+                rs.getString("medico_nombre"), rs.getObject("id_paciente", Long.class),
+                rs.getString("paciente_nombre"), rs.getObject("id_horario", Long.class),
+                rs.getObject("fecha", LocalDate.class), rs.getObject("hora_inicio", LocalTime.class),
+                rs.getObject("hora_fin", LocalTime.class), Appointment.Status.valueOf(rs.getString("estado")),
+                rs.getString("motivo_consulta"), rs.getString("notas"),
+                rs.getObject("fecha_creacion", LocalDateTime.class),
+                rs.getObject("fecha_actualizacion", LocalDateTime.class));
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.proyectocitas.repositories;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.example.proyectocitas.models.Appointment;
+
+/**
+ * Inserciones y borrados masivos de citas mediante JDBC.
+ *
+ * Appointment usa GenerationType.IDENTITY, por lo que Hibernate no puede
+ * agrupar sus inserts; aquí se escriben sentencias INSERT multi-fila que
+ * insertan hasta {@link #ROWS_PER_STATEMENT} citas por sentencia.
+ */
+@Repository
+public class AppointmentBatchRepository {
+
+    static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String INSERT_PREFIX = "INSERT INTO cita "
+            + "(id_medico, id_horario, fecha, hora_inicio, hora_fin, estado, fecha_creacion) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 7;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AppointmentBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserta las citas indicadas y devuelve el número de filas insertadas
+     */
+    public int insertAll(List<Appointment> appointments) {
+        int inserted = 0;
+        for (int from = 0; from < appointments.size(); from += ROWS_PER_STATEMENT) {
+            List<Appointment> chunk = appointments.subList(from,
+                    Math.min(from + ROWS_PER_STATEMENT, appointments.size()));
+            inserted += insertChunk(chunk);
+        }
+        return inserted;
+    }
+
+    private int insertChunk(List<Appointment> chunk) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + chunk.size() * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(chunk.size() * COLUMNS);
+
+        for (int i = 0; i < chunk.size(); i++) {
+            Appointment appointment = chunk.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+            args.add(appointment.getMedico().getId());
+            args.add(appointment.getHorario() != null ? appointment.getHorario().getId() : null);
+            args.add(appointment.getFecha());
+            args.add(appointment.getHoraInicio());
+            args.add(appointment.getHoraFin());
+            args.add(appointment.getEstado().name());
+            args.add(appointment.getFechaCreacion());
+        }
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Elimina hasta limit slots DISPONIBLE sin paciente anteriores a la
+     * fecha indicada; devuelve cuántos se eliminaron
+     */
+    public int deleteExpiredAvailable(LocalDate before, int limit) {
+        return jdbcTemplate.update("DELETE FROM cita WHERE estado = ? AND id_paciente IS NULL AND fecha < ? LIMIT ?",
+                Appointment.Status.DISPONIBLE.name(), before, limit);
+    }
+
+    /**
+     * Elimina hasta limit slots DISPONIBLE sin paciente de cualquier fecha
+     * (paso a slots virtuales); devuelve cuántos se eliminaron
+     */
+    public int deleteAvailable(int limit) {
+        return jdbcTemplate.update("DELETE FROM cita WHERE estado = ? AND id_paciente IS NULL LIMIT ?",
+                Appointment.Status.DISPONIBLE.name(), limit);
+    }
+}
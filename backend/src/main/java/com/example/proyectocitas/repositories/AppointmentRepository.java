@@ -1,22 +1,124 @@
 package com.example.proyectocitas.repositories;
 
+import com.example.proyectocitas.dto.AppointmentDTO;
 import com.example.proyectocitas.models.Appointment;
 import com.example.proyectocitas.models.Appointment.Status;
 import com.example.proyectocitas.models.Doctor;
 import com.example.proyectocitas.models.Patient;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+
+    // Proyección a AppointmentDTO con los nombres de médico y paciente en la misma consulta
+    String APPOINTMENT_DTO_SELECT = "SELECT new com.example.proyectocitas.dto.AppointmentDTO(" +
+           "a.id, m.id, mu.name, p.id, pu.name, h.id, a.fecha, a.horaInicio, a.horaFin, a.estado, " +
+           "a.motivoConsulta, a.notas, a.fechaCreacion, a.fechaActualizacion) " +
+           "FROM Appointment a LEFT JOIN a.medico m LEFT JOIN m.user mu " +
+           "LEFT JOIN a.paciente p LEFT JOIN p.user pu LEFT JOIN a.horario h ";
+
+    // Listados como DTO: una sola consulta por llamada, sin cargas perezosas por fila
+    @Query(APPOINTMENT_DTO_SELECT)
+    List<AppointmentDTO> findAllAsDTO();
+
+    @Query(APPOINTMENT_DTO_SELECT + "WHERE a.estado = :estado")
+    List<AppointmentDTO> findDTOsByEstado(@Param("estado") Status estado);
+
+    @Query(APPOINTMENT_DTO_SELECT + "WHERE m.id = :medicoId")
+    List<AppointmentDTO> findDTOsByMedicoId(@Param("medicoId") Long medicoId);
+
+    @Query(APPOINTMENT_DTO_SELECT + "WHERE m.id = :medicoId AND a.estado = :estado")
+    List<AppointmentDTO> findDTOsByMedicoIdAndEstado(
+            @Param("medicoId") Long medicoId,
+            @Param("estado") Status estado);
+
+    @Query(APPOINTMENT_DTO_SELECT + "WHERE m.id = :medicoId AND a.fecha = :fecha")
+    List<AppointmentDTO> findDTOsByMedicoIdAndFecha(
+            @Param("medicoId") Long medicoId,
+            @Param("fecha") LocalDate fecha);
+
+    @Query(APPOINTMENT_DTO_SELECT +
+           "WHERE m.id = :medicoId AND a.estado = :estado " +
+           "AND a.fecha BETWEEN :fechaInicio AND :fechaFin")
+    List<AppointmentDTO> findDTOsByMedicoIdAndEstadoAndFechaBetween(
+            @Param("medicoId") Long medicoId,
+            @Param("estado") Status estado,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin") LocalDate fechaFin);
+
+    @Query(APPOINTMENT_DTO_SELECT + "WHERE p.id = :pacienteId")
+    List<AppointmentDTO> findDTOsByPacienteId(@Param("pacienteId") Long pacienteId);
+
+    @Query(APPOINTMENT_DTO_SELECT + "WHERE p.id = :pacienteId AND a.estado = :estado")
+    List<AppointmentDTO> findDTOsByPacienteIdAndEstado(
+            @Param("pacienteId") Long pacienteId,
+            @Param("estado") Status estado);
+
+    // Paginación por cursor (fecha, id_cita); el tamaño de página lo fija el Pageable.
+    // Con y sin estado son consultas distintas: "(:estado IS NULL OR ...)" impide
+    // usar el índice (estado, fecha).
+    @Query(APPOINTMENT_DTO_SELECT +
+           "ORDER BY a.fecha, a.id")
+    List<AppointmentDTO> findPageFirst(Pageable pageable);
+
+    @Query(APPOINTMENT_DTO_SELECT +
+           "WHERE a.estado = :estado " +
+           "ORDER BY a.fecha, a.id")
+    List<AppointmentDTO> findPageFirstByEstado(@Param("estado") Status estado, Pageable pageable);
+
+    @Query(APPOINTMENT_DTO_SELECT +
+           "WHERE a.fecha > :fecha OR (a.fecha = :fecha AND a.id > :id) " +
+           "ORDER BY a.fecha, a.id")
+    List<AppointmentDTO> findPageAfter(
+            @Param("fecha") LocalDate fecha,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    @Query(APPOINTMENT_DTO_SELECT +
+           "WHERE a.estado = :estado " +
+           "AND (a.fecha > :fecha OR (a.fecha = :fecha AND a.id > :id)) " +
+           "ORDER BY a.fecha, a.id")
+    List<AppointmentDTO> findPageAfterByEstado(
+            @Param("estado") Status estado,
+            @Param("fecha") LocalDate fecha,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    // Recorrido completo en streaming; requiere una transacción abierta y cerrar el Stream.
+    // Con MySQL, fetch size Integer.MIN_VALUE hace que el driver entregue fila a fila.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(APPOINTMENT_DTO_SELECT +
+           "ORDER BY a.fecha, a.id")
+    Stream<AppointmentDTO> streamAll();
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(APPOINTMENT_DTO_SELECT +
+           "WHERE a.estado = :estado " +
+           "ORDER BY a.fecha, a.id")
+    Stream<AppointmentDTO> streamAllByEstado(@Param("estado") Status estado);
     
     // Métodos para buscar por médico
     List<Appointment> findByMedico(Doctor medico);
@@ -36,8 +138,42 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     
     // Métodos de existencia
     boolean existsByMedicoIdAndFechaAndHoraInicio(Long medicoId, LocalDate fecha, LocalTime horaInicio);
+    // Las canceladas no ocupan su hora: se excluyen pasando CANCELADA como estado
+    boolean existsByMedicoIdAndFechaAndHoraInicioAndEstadoNot(Long medicoId, LocalDate fecha, LocalTime horaInicio, Status estado);
     boolean existsByMedicoAndFechaAndHoraInicio(Doctor medico, LocalDate fecha, LocalTime horaInicio);
     
+    Optional<Appointment> findFirstByMedicoIdAndFechaAndHoraInicio(Long medicoId, LocalDate fecha, LocalTime horaInicio);
+    Optional<Appointment> findFirstByMedicoIdAndFechaAndHoraInicioAndEstadoNot(Long medicoId, LocalDate fecha, LocalTime horaInicio, Status estado);
+
+    // Reserva atómica de un slot pregenerado: solo una petición concurrente obtiene 1 fila actualizada
+    @Modifying
+    @Query("UPDATE Appointment a SET a.paciente = :paciente, a.estado = :nuevoEstado, " +
+           "a.motivoConsulta = :motivoConsulta, a.notas = :notas, a.fechaActualizacion = :ahora, " +
+           "a.version = a.version + 1 " +
+           "WHERE a.medico.id = :medicoId AND a.fecha = :fecha AND a.horaInicio = :horaInicio " +
+           "AND a.estado = :disponible AND a.paciente IS NULL")
+    int claimAvailableSlot(
+            @Param("medicoId") Long medicoId,
+            @Param("fecha") LocalDate fecha,
+            @Param("horaInicio") LocalTime horaInicio,
+            @Param("paciente") Patient paciente,
+            @Param("nuevoEstado") Status nuevoEstado,
+            @Param("disponible") Status disponible,
+            @Param("motivoConsulta") String motivoConsulta,
+            @Param("notas") String notas,
+            @Param("ahora") LocalDateTime ahora);
+
+    // Citas con paciente (no canceladas) que se solapan con el intervalo [horaInicio, horaFin)
+    @Query("SELECT COUNT(a) FROM Appointment a WHERE a.medico.id = :medicoId AND a.fecha = :fecha " +
+           "AND a.paciente IS NOT NULL AND a.estado <> :cancelada " +
+           "AND a.horaInicio < :horaFin AND a.horaFin > :horaInicio")
+    long countOcupadasSolapadas(
+            @Param("medicoId") Long medicoId,
+            @Param("fecha") LocalDate fecha,
+            @Param("horaInicio") LocalTime horaInicio,
+            @Param("horaFin") LocalTime horaFin,
+            @Param("cancelada") Status cancelada);
+    
     // Métodos para buscar por estado
     List<Appointment> findByEstado(Status estado);
     
@@ -45,6 +181,48 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     @Query("SELECT a FROM Appointment a WHERE a.medico.id = :doctorId AND a.fecha = :date AND a.estado = 'DISPONIBLE' ORDER BY a.horaInicio")
     List<Appointment> findAvailableByMedicoIdAndFecha(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
     
+    // Inicio, fin y estado de las citas no canceladas de un médico en una fecha (índice de disponibilidad)
+    @Query("SELECT a.horaInicio, a.horaFin, a.estado FROM Appointment a WHERE a.medico.id = :medicoId AND a.fecha = :fecha " +
+           "AND a.estado <> 'CANCELADA'")
+    List<Object[]> findSlotEstadosByMedicoIdAndFecha(@Param("medicoId") Long medicoId, @Param("fecha") LocalDate fecha);
+
+    // Slots libres de los tramos indicados desde una fecha (cambios de horario)
+    @Modifying
+    @Query("DELETE FROM Appointment a WHERE a.horario.id IN :horarioIds AND a.fecha >= :desde " +
+           "AND a.estado = :disponible AND a.paciente IS NULL")
+    int deleteDisponiblesByHorarioIdIn(
+            @Param("horarioIds") Collection<Long> horarioIds,
+            @Param("desde") LocalDate desde,
+            @Param("disponible") Appointment.Status disponible);
+
+    // Fecha y hora de inicio de las citas que ocupan su hora (no canceladas)
+    // de un médico en un rango (generación masiva)
+    @Query("SELECT a.fecha, a.horaInicio FROM Appointment a WHERE a.medico.id = :medicoId " +
+           "AND a.fecha BETWEEN :fechaInicio AND :fechaFin AND a.estado <> 'CANCELADA'")
+    List<Object[]> findSlotInicioByMedicoIdAndFechaBetween(
+            @Param("medicoId") Long medicoId,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin") LocalDate fechaFin);
+
+    // Ocupación (médico, fecha, inicio, fin, estado) de las citas no canceladas en un rango (slots virtuales)
+    @Query("SELECT a.medico.id, a.fecha, a.horaInicio, a.horaFin, a.estado FROM Appointment a " +
+           "WHERE a.medico.id IN :medicoIds AND a.fecha BETWEEN :fechaInicio AND :fechaFin " +
+           "AND a.estado <> 'CANCELADA'")
+    List<Object[]> findOcupacionByMedicoIdInAndFechaBetween(
+            @Param("medicoIds") Collection<Long> medicoIds,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin") LocalDate fechaFin);
+
+    // Conteos agregados para estadísticas
+    @Query("SELECT a.estado, COUNT(a) FROM Appointment a GROUP BY a.estado")
+    List<Object[]> countGroupByEstado();
+
+    @Query("SELECT a.medico.id, a.estado, COUNT(a) FROM Appointment a GROUP BY a.medico.id, a.estado")
+    List<Object[]> countGroupByMedicoAndEstado();
+
+    @Query("SELECT a.fecha, a.estado, COUNT(a) FROM Appointment a GROUP BY a.fecha, a.estado")
+    List<Object[]> countGroupByFechaAndEstado();
+
     // Métodos para compatibilidad con el controlador público
     @Query("SELECT a FROM Appointment a WHERE a.medico.id = :doctorId AND a.fecha = :date ORDER BY a.horaInicio")
     List<Appointment> findByDoctorIdAndDate(@Param("doctorId") Long doctorId, @Param("date") LocalDate date);
@@ -86,7 +264,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     }
     
     default boolean existsByDoctorIdAndDateAndTime(Long doctorId, LocalDate date, LocalTime time) {
-        return existsByMedicoIdAndFechaAndHoraInicio(doctorId, date, time);
+        return existsByMedicoIdAndFechaAndHoraInicioAndEstadoNot(doctorId, date, time, Status.CANCELADA);
     }
     
     default boolean existsByDoctorAndDateAndTime(Doctor doctor, LocalDate date, LocalTime time) {
@@ -117,12 +295,12 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
             @Param("pacienteId") Long pacienteId, 
             @Param("fecha") LocalDate fecha);
     
-    // Buscar citas para historial médico del paciente
-    @Query("SELECT a FROM Appointment a " +
-           "WHERE a.paciente.id = :pacienteId " +
+    // Citas pasadas del paciente que siguen en cita (las archivadas están en cita_historial)
+    @Query(APPOINTMENT_DTO_SELECT +
+           "WHERE p.id = :pacienteId " +
            "AND (a.fecha < CURRENT_DATE OR (a.fecha = CURRENT_DATE AND a.horaFin < CURRENT_TIME)) " +
            "ORDER BY a.fecha DESC, a.horaInicio DESC")
-    List<Appointment> findHistorialCitasByPacienteId(@Param("pacienteId") Long pacienteId);
+    List<AppointmentDTO> findHistorialDTOsByPacienteId(@Param("pacienteId") Long pacienteId);
     
     // Verificar disponibilidad de horario
     @Query("SELECT CASE WHEN COUNT(a) = 0 THEN true ELSE false END FROM Appointment a " +
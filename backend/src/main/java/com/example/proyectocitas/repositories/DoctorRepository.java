@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -24,6 +25,19 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     // List<Doctor> findByApprovedFalse();
     
     Long countByStatus(String status);
+    
+    // Solo los IDs, para procesos masivos que no necesitan la entidad completa
+    @Query("SELECT d.id FROM Doctor d WHERE d.status = :status ORDER BY d.id")
+    List<Long> findIdsByStatus(@Param("status") String status);
+
+    // Médicos de un estado con id >= fromId, en orden de id y con su usuario (recorrido por lotes)
+    @Query("SELECT d FROM Doctor d LEFT JOIN FETCH d.user WHERE d.status = :status AND d.id >= :fromId ORDER BY d.id")
+    List<Doctor> findByStatusFromId(@Param("status") String status, @Param("fromId") Long fromId, Pageable pageable);
+
+    // Médicos con usuario y horarios en una sola consulta (carga del directorio)
+    @Query("SELECT DISTINCT d FROM Doctor d LEFT JOIN FETCH d.user LEFT JOIN FETCH d.horarios " +
+           "WHERE d.status = :status ORDER BY d.id")
+    List<Doctor> findByStatusWithUserAndHorarios(@Param("status") String status);
       @Query("SELECT d FROM Doctor d WHERE " +
            "(:specialty is null or d.especialidad = :specialty) AND " +
            "(:location is null or d.location = :location)")
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.DayOfWeek;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,6 +48,11 @@ public interface HorarioRepository extends JpaRepository<Horario, Long> {
     List<DayOfWeek> findDiasDisponiblesByDoctorId(@Param("doctorId") Long doctorId);
     
     List<Horario> findByDoctorIdAndActivoTrue(Long doctorId);
+
+    // Tramos activos sin cargar entidades: [doctorId, id, diaSemana, horaInicio, horaFin, duracionCita, intervaloEntreCitas]
+    @Query("SELECT h.doctor.id, h.id, h.diaSemana, h.horaInicio, h.horaFin, h.duracionCita, h.intervaloEntreCitas " +
+           "FROM Horario h WHERE h.activo = true AND h.doctor.id IN :doctorIds")
+    List<Object[]> findTramosActivosByDoctorIdIn(@Param("doctorIds") Collection<Long> doctorIds);
     
     @Query("SELECT h FROM Horario h " +
            "JOIN h.doctor d " +
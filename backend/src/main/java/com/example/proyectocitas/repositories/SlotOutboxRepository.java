@@ -0,0 +1,127 @@
+package com.example.proyectocitas.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Acceso a la cola cola_generacion_slots (ver migración
+ * V5__cola_generacion_slots).
+ *
+ * Un worker reclama órdenes con un UPDATE ... LIMIT que las marca con un
+ * identificador de lote, así que dos instancias de la aplicación no
+ * procesan la misma fila.
+ */
+@Repository
+public class SlotOutboxRepository {
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String PROCESANDO = "PROCESANDO";
+    public static final String FALLIDO = "FALLIDO";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SlotOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Encola una orden; participa en la transacción en curso
+     */
+    public void insert(Long doctorId, int semanas, String dias, String horariosRetirados, LocalDateTime ahora) {
+        jdbcTemplate.update("INSERT INTO cola_generacion_slots "
+                + "(id_medico, semanas, dias, horarios_retirados, estado, intentos, disponible_desde, fecha_creacion) "
+                + "VALUES (?, ?, ?, ?, ?, 0, ?, ?)",
+                doctorId, semanas, dias, horariosRetirados, PENDIENTE, ahora, ahora);
+    }
+
+    /**
+     * Marca con el lote hasta limit órdenes pendientes, las más antiguas
+     * primero; devuelve cuántas se reclamaron
+     */
+    public int claim(String lote, int limit, LocalDateTime ahora) {
+        return jdbcTemplate.update("UPDATE cola_generacion_slots SET estado = ?, lote = ?, reclamado_en = ? "
+                + "WHERE estado = ? AND disponible_desde <= ? ORDER BY id LIMIT ?",
+                PROCESANDO, lote, ahora, PENDIENTE, ahora, limit);
+    }
+
+    public List<Command> findByLote(String lote) {
+        return jdbcTemplate.query("SELECT id, id_medico, semanas, dias, horarios_retirados, intentos "
+                + "FROM cola_generacion_slots WHERE lote = ? ORDER BY id",
+                (rs, rowNum) -> new Command(rs.getLong("id"), rs.getLong("id_medico"), rs.getInt("semanas"),
+                        rs.getString("dias"), rs.getString("horarios_retirados"), rs.getInt("intentos")),
+                lote);
+    }
+
+    public int deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM cola_generacion_slots WHERE id IN (" + placeholders(ids.size()) + ")",
+                ids.toArray());
+    }
+
+    /**
+     * Devuelve las órdenes a la cola para reintentarlas después, o las marca
+     * como fallidas si agotaron los intentos
+     */
+    public int reschedule(List<Long> ids, String error, LocalDateTime reintentarDesde, int maxIntentos) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Object[] args = new Object[5 + ids.size()];
+        // MySQL evalúa las asignaciones en orden: estado antes de incrementar intentos
+        args[0] = maxIntentos;
+        args[1] = FALLIDO;
+        args[2] = PENDIENTE;
+        args[3] = reintentarDesde;
+        args[4] = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        for (int i = 0; i < ids.size(); i++) {
+            args[5 + i] = ids.get(i);
+        }
+        return jdbcTemplate.update("UPDATE cola_generacion_slots SET "
+                + "estado = CASE WHEN intentos + 1 >= ? THEN ? ELSE ? END, "
+                + "intentos = intentos + 1, lote = NULL, reclamado_en = NULL, "
+                + "disponible_desde = ?, ultimo_error = ? "
+                + "WHERE id IN (" + placeholders(ids.size()) + ")", args);
+    }
+
+    /**
+     * Devuelve a la cola las órdenes reclamadas por un worker que no terminó
+     * (p. ej. la instancia se detuvo)
+     */
+    public int releaseStale(LocalDateTime reclamadasAntesDe) {
+        return jdbcTemplate.update("UPDATE cola_generacion_slots SET estado = ?, lote = NULL, reclamado_en = NULL "
+                + "WHERE estado = ? AND reclamado_en < ?",
+                PENDIENTE, PROCESANDO, reclamadasAntesDe);
+    }
+
+    public Map<String, Long> countByEstado() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put(PENDIENTE, 0L);
+        counts.put(PROCESANDO, 0L);
+        counts.put(FALLIDO, 0L);
+        jdbcTemplate.query("SELECT estado, COUNT(*) FROM cola_generacion_slots GROUP BY estado",
+                rs -> {
+                    counts.put(rs.getString(1), rs.getLong(2));
+                });
+        return counts;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Orden de regeneración tal como está en la cola
+     */
+    public record Command(long id, Long doctorId, int semanas, String dias, String horariosRetirados, int intentos) {
+    }
+}
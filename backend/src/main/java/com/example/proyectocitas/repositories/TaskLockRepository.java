@@ -0,0 +1,45 @@
+package com.example.proyectocitas.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Acceso a la tabla bloqueo_tarea (ver migración V9__bloqueo_tareas).
+ *
+ * Los plazos se calculan con NOW(6) de MySQL para que la diferencia entre
+ * los relojes de las instancias no adelante ni alargue un bloqueo. Cada
+ * sentencia se confirma sola: el bloqueo no debe depender de la transacción
+ * de la tarea.
+ */
+@Repository
+public class TaskLockRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TaskLockRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Reclama el bloqueo durante como mucho maxSeconds si está libre o
+     * caducado; devuelve si se obtuvo
+     */
+    public boolean tryAcquire(String nombre, String owner, long maxSeconds) {
+        // La primera vez crea la fila ya caducada para que el UPDATE la reclame
+        jdbcTemplate.update("INSERT IGNORE INTO bloqueo_tarea (nombre, bloqueado_hasta, bloqueado_en, bloqueado_por) "
+                + "VALUES (?, NOW(6), NOW(6), '')", nombre);
+        return jdbcTemplate.update("UPDATE bloqueo_tarea SET bloqueado_hasta = NOW(6) + INTERVAL ? SECOND, "
+                + "bloqueado_en = NOW(6), bloqueado_por = ? WHERE nombre = ? AND bloqueado_hasta <= NOW(6)",
+                maxSeconds, owner, nombre) == 1;
+    }
+
+    /**
+     * Libera el bloqueo si sigue siendo de owner, pero lo mantiene hasta que
+     * hayan pasado minSeconds desde que se obtuvo
+     */
+    public boolean release(String nombre, String owner, long minSeconds) {
+        return jdbcTemplate.update("UPDATE bloqueo_tarea SET bloqueado_hasta = "
+                + "GREATEST(NOW(6), bloqueado_en + INTERVAL ? SECOND) WHERE nombre = ? AND bloqueado_por = ?",
+                minSeconds, nombre, owner) == 1;
+    }
+}
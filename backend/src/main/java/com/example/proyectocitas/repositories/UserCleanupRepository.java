@@ -0,0 +1,103 @@
+package com.example.proyectocitas.repositories;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Consultas por conjuntos para eliminar usuarios duplicados sin cargar la
+ * tabla users en memoria.
+ *
+ * Los borrados siguen el mismo orden que la migración
+ * V3__eliminar_usuarios_duplicados: citas, horarios y perfiles de los
+ * usuarios duplicados (también las archivadas en cita_historial) y, por
+ * último, los propios usuarios.
+ */
+@Repository
+public class UserCleanupRepository {
+
+    private static final String[] DEPENDENT_DELETES = {
+        "DELETE c FROM cita_historial c JOIN doctors m ON m.id = c.id_medico WHERE m.user_id IN (%s)",
+        "DELETE c FROM cita_historial c JOIN paciente p ON p.id_paciente = c.id_paciente WHERE p.user_id IN (%s)",
+        "DELETE c FROM cita c JOIN doctors m ON m.id = c.id_medico WHERE m.user_id IN (%s)",
+        "DELETE c FROM cita c JOIN paciente p ON p.id_paciente = c.id_paciente WHERE p.user_id IN (%s)",
+        "DELETE h FROM horario h JOIN doctors m ON m.id = h.doctor_id WHERE m.user_id IN (%s)",
+        "DELETE s FROM schedules s JOIN doctors m ON m.id = s.doctor_id WHERE m.user_id IN (%s)",
+        "DELETE FROM doctors WHERE user_id IN (%s)",
+        "DELETE FROM paciente WHERE user_id IN (%s)"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserCleanupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Hasta limit nombres de usuario que aparecen más de una vez
+     */
+    public List<String> findDuplicatedUsernames(int limit) {
+        return jdbcTemplate.queryForList(
+                "SELECT username FROM users WHERE username IS NOT NULL "
+                        + "GROUP BY username HAVING COUNT(*) > 1 LIMIT ?",
+                String.class, limit);
+    }
+
+    /**
+     * Ids a eliminar de los usuarios indicados: todos salvo el de menor id
+     * de cada nombre de usuario
+     */
+    public List<Long> findDuplicateIds(List<String> usernames) {
+        if (usernames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String sql = "SELECT u.id FROM users u "
+                + "JOIN (SELECT username, MIN(id) AS id_conservado FROM users "
+                + "WHERE username IN (" + placeholders(usernames.size()) + ") GROUP BY username) d "
+                + "ON d.username = u.username "
+                + "WHERE u.id <> d.id_conservado";
+        return jdbcTemplate.queryForList(sql, Long.class, usernames.toArray());
+    }
+
+    /**
+     * Médicos cuyos datos cambian al eliminar los usuarios indicados: los
+     * propios médicos eliminados y los que tienen citas de los pacientes
+     * eliminados. Debe llamarse antes de deleteUsers.
+     */
+    public List<Long> findAffectedDoctorIds(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String in = placeholders(userIds.size());
+        Object[] args = new Object[userIds.size() * 2];
+        for (int i = 0; i < userIds.size(); i++) {
+            args[i] = userIds.get(i);
+            args[userIds.size() + i] = userIds.get(i);
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM doctors WHERE user_id IN (" + in + ") "
+                + "UNION SELECT c.id_medico FROM cita c JOIN paciente p ON p.id_paciente = c.id_paciente "
+                + "WHERE p.user_id IN (" + in + ")", Long.class, args);
+    }
+
+    /**
+     * Elimina los usuarios indicados y sus datos dependientes; devuelve el
+     * número de usuarios eliminados. Debe ejecutarse dentro de una transacción.
+     */
+    public int deleteUsers(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        String in = placeholders(userIds.size());
+        Object[] args = userIds.toArray();
+        for (String statement : DEPENDENT_DELETES) {
+            jdbcTemplate.update(String.format(statement, in), args);
+        }
+        return jdbcTemplate.update("DELETE FROM users WHERE id IN (" + in + ")", args);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
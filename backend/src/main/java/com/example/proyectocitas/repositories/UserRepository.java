@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.proyectocitas.models.Role;
 import com.example.proyectocitas.models.User;
@@ -13,4 +15,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findAllByUsername(String username);
     boolean existsByUsername(String username);
     Long countByRole(Role role);
+    List<User> findTop2ByOrderByIdAsc();
+
+    // Versión de token y estado de la cuenta, sin cargar el usuario
+    @Query("SELECT u.tokenVersion, u.enabled FROM User u WHERE u.username = :username ORDER BY u.id")
+    List<Object[]> findTokenStateByUsername(@Param("username") String username);
 }
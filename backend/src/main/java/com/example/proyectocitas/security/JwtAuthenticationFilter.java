@@ -21,10 +21,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserDetailsCache userDetailsCache;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService,
+            UserDetailsCache userDetailsCache) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.userDetailsCache = userDetailsCache;
     }
 
     
@@ -45,11 +48,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         
         jwt = authHeader.substring(7);
-        username = jwtService.extractUsername(jwt);
+        // El token se parsea y verifica una sola vez por petición
+        ParsedToken token = jwtService.parse(jwt);
+        username = token.subject();
         
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            // Con roles embebidos no se consulta el usuario; si el token es
+            // antiguo o ha sido revocado se carga y valida como siempre
+            UserDetails userDetails = jwtService.statelessPrincipal(token)
+                    .orElseGet(() -> userDetailsCache.get(username, userDetailsService::loadUserByUsername));
+            if (jwtService.isTokenValid(token, userDetails)) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -1,15 +1,22 @@
 package com.example.proyectocitas.security;
 
 import java.security.Key;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -19,58 +26,136 @@ import io.jsonwebtoken.security.Keys;
 public class JwtService {
     // Esta clave debe estar en un entorno seguro como variables de entorno
     private static final String SECRET_KEY = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
-    
+
+    static final String ROLES_CLAIM = "roles";
+    static final String ROLE_CLAIM = "role";
+    static final String USER_ID_CLAIM = "uid";
+    static final String VERSION_CLAIM = "ver";
+
+    private static final long EXPIRATION_MILLIS = 1000 * 60 * 60 * 24; // 24 horas
+
+    // Clave y parser se construyen una sola vez; JwtParser es inmutable y thread-safe
+    private final Key signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET_KEY));
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+
+    private final boolean statelessTokens;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    public JwtService(@Value("${app.security.jwt.stateless:false}") boolean statelessTokens,
+            TokenRevocationRegistry tokenRevocationRegistry) {
+        this.statelessTokens = statelessTokens;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
-    
+
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
     }
-    
+
+    /**
+     * Genera el token del usuario. En modo stateless incluye además los
+     * roles, el id, el rol de la aplicación y la versión de token, de modo
+     * que las peticiones se autorizan sin consultar la base de datos.
+     */
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        if (statelessTokens) {
+            claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList());
+            long tokenVersion = tokenRevocationRegistry.currentVersion(userDetails.getUsername());
+            if (userDetails instanceof com.example.proyectocitas.models.User user) {
+                // El usuario puede venir de la caché de autenticación: la versión más alta
+                tokenVersion = Math.max(tokenVersion, user.getTokenVersion());
+                claims.put(USER_ID_CLAIM, user.getId());
+                if (user.getRole() != null) {
+                    claims.put(ROLE_CLAIM, user.getRole().getName());
+                }
+            }
+            claims.put(VERSION_CLAIM, tokenVersion);
+        }
+        return generateToken(claims, userDetails);
     }
-    
+
     public String generateToken(
             Map<String, Object> extraClaims,
             UserDetails userDetails
     ) {
+        long now = System.currentTimeMillis();
         return Jwts
                 .builder()
                 .setClaims(extraClaims)
                 .setSubject(userDetails.getUsername())
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 24)) // 24 horas
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + EXPIRATION_MILLIS))
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
-    
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+
+    /**
+     * Verifica la firma y la expiración del token y devuelve sus datos
+     */
+    public ParsedToken parse(String token) {
+        Claims claims = extractAllClaims(token);
+        return new ParsedToken(
+                claims.getSubject(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null,
+                extractRoles(claims),
+                toLong(claims.get(USER_ID_CLAIM)),
+                toLong(claims.get(VERSION_CLAIM)));
+    }
+
+    /**
+     * Construye el usuario autenticado a partir de los claims si el modo
+     * stateless está activo, el token lleva roles y no ha sido revocado.
+     * Si devuelve vacío hay que cargar el usuario de la forma habitual.
+     */
+    public Optional<UserDetails> statelessPrincipal(ParsedToken token) {
+        if (!statelessTokens || !token.hasEmbeddedRoles() || token.subject() == null
+                || tokenRevocationRegistry.isRevoked(token.subject(), token.tokenVersion())) {
+            return Optional.empty();
+        }
+        return Optional.of(User.withUsername(token.subject())
+                .password("")
+                .authorities(token.roles().toArray(String[]::new))
+                .build());
     }
-    
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        return isTokenValid(parse(token), userDetails);
     }
-    
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+
+    /**
+     * Valida un token ya parseado, para no volver a verificar la firma en la
+     * misma petición
+     */
+    public boolean isTokenValid(ParsedToken token, UserDetails userDetails) {
+        return userDetails.getUsername().equals(token.subject())
+                && userDetails.isEnabled()
+                && !token.isExpired();
     }
-    
+
     private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
-    
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-        return Keys.hmacShaKeyFor(keyBytes);
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static List<String> extractRoles(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (roles instanceof Collection<?> values) {
+            return values.stream().map(String::valueOf).toList();
+        }
+        if (roles instanceof String value) {
+            return List.of(value);
+        }
+        return List.of();
     }
 }
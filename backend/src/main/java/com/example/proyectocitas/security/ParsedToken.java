@@ -0,0 +1,35 @@
+package com.example.proyectocitas.security;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Datos de un JWT ya verificado: se obtiene una sola vez por petición y se
+ * reutiliza para todas las comprobaciones posteriores.
+ *
+ * @param subject nombre de usuario
+ * @param issuedAt fecha de emisión (puede ser null)
+ * @param expiration fecha de expiración (puede ser null)
+ * @param roles roles incluidos en el token; vacío si el token no los lleva
+ * @param userId id del usuario, o null si el token no lo lleva
+ * @param tokenVersion versión del token, o null si no lleva roles embebidos
+ */
+public record ParsedToken(String subject, Instant issuedAt, Instant expiration, List<String> roles,
+        Long userId, Long tokenVersion) {
+
+    public ParsedToken {
+        roles = roles == null ? List.of() : List.copyOf(roles);
+    }
+
+    /**
+     * El token lleva los datos necesarios para autenticar sin cargar el
+     * usuario
+     */
+    public boolean hasEmbeddedRoles() {
+        return tokenVersion != null && !roles.isEmpty();
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.isBefore(Instant.now());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.proyectocitas.security;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.proyectocitas.repositories.UserRepository;
+
+/**
+ * Control de los tokens con roles embebidos.
+ *
+ * La versión de token de cada usuario se guarda en users.token_version y
+ * aumenta cuando cambian su rol o su estado (ver User#bumpTokenVersionOnAuthorizationChange);
+ * los tokens emitidos con una versión anterior, o de cuentas deshabilitadas o
+ * eliminadas, dejan de aceptarse. Para no consultar la base de datos en cada
+ * petición la versión se cachea por usuario durante
+ * app.security.jwt.version-ttl-seconds; los cambios hechos en esta instancia
+ * se aplican al momento y los de otras instancias al caducar la entrada.
+ */
+@Component
+public class TokenRevocationRegistry {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final Map<String, TokenState> states = new ConcurrentHashMap<>();
+
+    public TokenRevocationRegistry(UserRepository userRepository,
+            @Value("${app.security.jwt.version-ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.ttlNanos = Math.max(0, ttlSeconds) * 1_000_000_000L;
+    }
+
+    /**
+     * Versión que se incluye en los tokens nuevos del usuario
+     */
+    public long currentVersion(String username) {
+        TokenState state = state(username);
+        return state.exists ? state.version : 0L;
+    }
+
+    /**
+     * Registra tras el commit el estado que acaba de escribirse; tokenVersion
+     * null indica que el usuario se ha eliminado
+     */
+    public void userChanged(String username, Long tokenVersion, boolean enabled) {
+        TokenState state = tokenVersion != null
+                ? new TokenState(true, tokenVersion, enabled, System.nanoTime())
+                : new TokenState(false, 0L, false, System.nanoTime());
+        states.merge(username, state, TokenState::newest);
+    }
+
+    public boolean isRevoked(String username, long tokenVersion) {
+        TokenState state = state(username);
+        return !state.exists || !state.enabled || tokenVersion < state.version;
+    }
+
+    private TokenState state(String username) {
+        TokenState state = states.get(username);
+        if (state != null && System.nanoTime() - state.loadedAt < ttlNanos) {
+            return state;
+        }
+        TokenState loaded = load(username);
+        if (states.size() >= MAX_ENTRIES) {
+            states.clear();
+        }
+        return states.merge(username, loaded, TokenState::newest);
+    }
+
+    private TokenState load(String username) {
+        long loadedAt = System.nanoTime();
+        List<Object[]> rows = userRepository.findTokenStateByUsername(username);
+        if (rows.isEmpty()) {
+            return new TokenState(false, 0L, false, loadedAt);
+        }
+        Object[] row = rows.get(0);
+        return new TokenState(true, ((Number) row[0]).longValue(), Boolean.TRUE.equals(row[1]), loadedAt);
+    }
+
+    private record TokenState(boolean exists, long version, boolean enabled, long loadedAt) {
+
+        /**
+         * Conserva la versión más alta: una lectura lenta no deshace un cambio
+         * registrado mientras tanto
+         */
+        private static TokenState newest(TokenState current, TokenState candidate) {
+            if (current.exists && candidate.exists && candidate.version < current.version) {
+                return new TokenState(true, current.version, current.enabled, candidate.loadedAt);
+            }
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.proyectocitas.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caché acotada con expiración de los usuarios que autentica
+ * JwtAuthenticationFilter.
+ *
+ * Guarda una copia inmutable del UserDetails (sin contraseña ni entidades
+ * JPA) para que una petición autenticada no necesite consultar la base de
+ * datos. Las entradas se invalidan al modificar o borrar el usuario.
+ */
+@Component
+public class UserDetailsCache implements UserCache {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public UserDetailsCache(@Value("${app.security.user-cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${app.security.user-cache.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Devuelve el usuario desde la caché o lo carga con el loader y lo guarda
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        UserDetails cached = getUserFromCache(username);
+        if (cached != null) {
+            return cached;
+        }
+        UserDetails snapshot = snapshot(loader.apply(username));
+        putUserInCache(snapshot);
+        return snapshot;
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() < 0) {
+            entries.remove(username, entry);
+            return null;
+        }
+        return entry.user;
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        evictIfFull();
+        entries.put(user.getUsername(), new Entry(snapshot(user), System.nanoTime() + ttlNanos));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        entries.remove(username);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private void evictIfFull() {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAt - now < 0);
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+
+    private static UserDetails snapshot(UserDetails user) {
+        if (user instanceof User) {
+            return user;
+        }
+        return User.withUsername(user.getUsername())
+                .password("")
+                .authorities(user.getAuthorities())
+                .disabled(!user.isEnabled())
+                .accountExpired(!user.isAccountNonExpired())
+                .accountLocked(!user.isAccountNonLocked())
+                .credentialsExpired(!user.isCredentialsNonExpired())
+                .build();
+    }
+
+    private record Entry(UserDetails user, long expiresAt) {
+    }
+}
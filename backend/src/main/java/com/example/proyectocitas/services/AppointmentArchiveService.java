@@ -0,0 +1,154 @@
+package com.example.proyectocitas.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectocitas.repositories.AppointmentArchiveRepository;
+
+/**
+ * Traslado nocturno de citas cerradas a cita_historial.
+ *
+ * Cada noche (app.appointments.archive.cron) mueve las citas COMPLETADA,
+ * CANCELADA y NO_ASISTIO con más de app.appointments.archive.retention-days
+ * días, en lotes de batch-size filas con una transacción por lote y una
+ * pausa entre lotes, para no retener bloqueos sobre cita. Las consultas
+ * habituales solo leen cita; el histórico se une cuando se pide, y
+ * AppointmentStatsService cuenta ambas tablas. Con varias instancias solo
+ * archiva la que obtiene el bloqueo de tarea "archivo-citas".
+ */
+@Service
+public class AppointmentArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentArchiveService.class);
+
+    private static final String LOCK_NAME = "archivo-citas";
+    private static final Duration LOCK_DURATION = Duration.ofHours(4);
+
+    private final AppointmentArchiveRepository appointmentArchiveRepository;
+    private final AvailabilityIndex availabilityIndex;
+    private final TaskLockService taskLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpleAsyncTaskExecutor runner = new SimpleAsyncTaskExecutor("cita-archive-");
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final boolean enabled;
+    private final int retentionDays;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public AppointmentArchiveService(AppointmentArchiveRepository appointmentArchiveRepository,
+            AvailabilityIndex availabilityIndex, TaskLockService taskLockService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.appointments.archive.enabled:true}") boolean enabled,
+            @Value("${app.appointments.archive.retention-days:90}") int retentionDays,
+            @Value("${app.appointments.archive.batch-size:1000}") int batchSize,
+            @Value("${app.appointments.archive.pause-ms:200}") long pauseMillis) {
+        this.appointmentArchiveRepository = appointmentArchiveRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.taskLockService = taskLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.retentionDays = Math.max(1, retentionDays);
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMillis = Math.max(0, pauseMillis);
+        this.runner.setDaemon(true);
+    }
+
+    /**
+     * Lanza el traslado en su propio hilo para no ocupar el del planificador
+     */
+    @Scheduled(cron = "${app.appointments.archive.cron:0 0 3 * * *}")
+    public void nightlyRun() {
+        if (!enabled) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Archivo de citas: la pasada anterior aún no ha terminado");
+            return;
+        }
+        runner.execute(() -> {
+            try {
+                if (taskLockService.tryLock(LOCK_NAME, LOCK_DURATION)) {
+                    try {
+                        archive();
+                    } finally {
+                        taskLockService.unlock(LOCK_NAME);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Error archivando citas: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Resultado de la última pasada y tamaño del histórico
+     */
+    public Map<String, Object> getLastRun() {
+        Map<String, Object> status = new LinkedHashMap<>(lastRun);
+        status.put("enCurso", running.get());
+        status.put("citasArchivadas", appointmentArchiveRepository.count());
+        return status;
+    }
+
+    private void archive() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+        LocalDate before = startedAt.toLocalDate().minusDays(retentionDays);
+
+        int total = 0;
+        int batches = 0;
+        Integer moved;
+        do {
+            moved = transactionTemplate.execute(
+                    status -> appointmentArchiveRepository.archiveBatch(before, batchSize, startedAt));
+            moved = moved != null ? moved : 0;
+            total += moved;
+            batches++;
+        } while (moved == batchSize && pause());
+
+        if (total > 0) {
+            availabilityIndex.invalidateBefore(before);
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("inicio", startedAt.toString());
+        result.put("duracionMs", elapsedMillis);
+        result.put("anterioresA", before.toString());
+        result.put("lotes", batches);
+        result.put("citasTrasladadas", total);
+        lastRun = result;
+        log.info("Archivo de citas completado en {} ms: {} citas anteriores a {} trasladadas en {} lotes",
+                elapsedMillis, total, before, batches);
+    }
+
+    private boolean pause() {
+        if (pauseMillis == 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -5,14 +5,29 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.dto.AppointmentPageDTO;
 import com.example.proyectocitas.dto.AppointmentRequest;
 import com.example.proyectocitas.dto.HorarioDTO;
+import com.example.proyectocitas.dto.SlotGenerationResult;
 import com.example.proyectocitas.exceptions.AppointmentNotAvailableException;
 import com.example.proyectocitas.exceptions.DoctorNotFoundException;
 import com.example.proyectocitas.exceptions.HorarioNotFoundException;
@@ -22,10 +37,14 @@ import com.example.proyectocitas.models.Appointment;
 import com.example.proyectocitas.models.Doctor;
 import com.example.proyectocitas.models.Horario;
 import com.example.proyectocitas.models.Patient;
+import com.example.proyectocitas.repositories.AppointmentArchiveRepository;
+import com.example.proyectocitas.repositories.AppointmentBatchRepository;
 import com.example.proyectocitas.repositories.AppointmentRepository;
 import com.example.proyectocitas.repositories.DoctorRepository;
 import com.example.proyectocitas.repositories.HorarioRepository;
 import com.example.proyectocitas.repositories.PatientRepository;
+import com.example.proyectocitas.utils.SlotCalculator;
+import com.example.proyectocitas.utils.TransactionUtils;
 
 import jakarta.transaction.Transactional;
 
@@ -35,27 +54,138 @@ import jakarta.transaction.Transactional;
 @Service
 public class AppointmentService {
 
+    private static final Logger log = LoggerFactory.getLogger(AppointmentService.class);
+
     private final AppointmentRepository appointmentRepository;
+    private final AppointmentBatchRepository appointmentBatchRepository;
+    private final AppointmentArchiveRepository appointmentArchiveRepository;
     private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
     private final HorarioRepository horarioRepository;
-
-    public AppointmentService(AppointmentRepository appointmentRepository, DoctorRepository doctorRepository,
-            PatientRepository patientRepository, HorarioRepository horarioRepository) {
+    private final AvailabilityIndex availabilityIndex;
+    private final AppointmentStatsService appointmentStatsService;
+    private final BookingLocks bookingLocks;
+    private final OptimisticRetryExecutor retryExecutor;
+    private final VirtualSlotService virtualSlotService;
+    private final ScheduleTemplateCache scheduleTemplateCache;
+
+    public AppointmentService(AppointmentRepository appointmentRepository,
+            AppointmentBatchRepository appointmentBatchRepository,
+            AppointmentArchiveRepository appointmentArchiveRepository, DoctorRepository doctorRepository,
+            PatientRepository patientRepository, HorarioRepository horarioRepository,
+            AvailabilityIndex availabilityIndex, AppointmentStatsService appointmentStatsService,
+            BookingLocks bookingLocks, OptimisticRetryExecutor retryExecutor,
+            VirtualSlotService virtualSlotService, ScheduleTemplateCache scheduleTemplateCache) {
         this.appointmentRepository = appointmentRepository;
+        this.appointmentBatchRepository = appointmentBatchRepository;
+        this.appointmentArchiveRepository = appointmentArchiveRepository;
         this.doctorRepository = doctorRepository;
         this.patientRepository = patientRepository;
         this.horarioRepository = horarioRepository;
+        this.availabilityIndex = availabilityIndex;
+        this.appointmentStatsService = appointmentStatsService;
+        this.bookingLocks = bookingLocks;
+        this.retryExecutor = retryExecutor;
+        this.virtualSlotService = virtualSlotService;
+        this.scheduleTemplateCache = scheduleTemplateCache;
     }
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
     /**
      * Obtiene todas las citas del sistema
      */
     public List<AppointmentDTO> getAllAppointments() {
-        return appointmentRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return appointmentRepository.findAllAsDTO();
+    }
+
+    /**
+     * Obtiene una página de citas ordenadas por (fecha, id) a partir del
+     * cursor recibido
+     *
+     * @param estado filtro opcional por estado
+     * @param cursor cursor devuelto por la página anterior, o null para la primera
+     * @param size tamaño de página, limitado a MAX_PAGE_SIZE
+     */
+    public AppointmentPageDTO getAppointmentsPage(Appointment.Status estado, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // Se pide una fila de más para saber si existe una página siguiente
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<AppointmentDTO> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = estado != null
+                    ? appointmentRepository.findPageFirstByEstado(estado, limit)
+                    : appointmentRepository.findPageFirst(limit);
+        } else {
+            String[] parts = cursor.split("_", 2);
+            LocalDate fecha;
+            Long id;
+            // Solo el formato del cursor es un error del cliente; los fallos
+            // de la consulta se propagan tal cual
+            try {
+                fecha = LocalDate.parse(parts[0], DATE_FORMAT);
+                id = Long.valueOf(parts[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            rows = estado != null
+                    ? appointmentRepository.findPageAfterByEstado(estado, fecha, id, limit)
+                    : appointmentRepository.findPageAfter(fecha, id, limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<AppointmentDTO> items = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        AppointmentDTO last = items.isEmpty() ? null : items.get(items.size() - 1);
+        return AppointmentPageDTO.builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? last.getDate().format(DATE_FORMAT) + "_" + last.getId() : null)
+                .build();
+    }
+
+    /**
+     * Página de citas disponibles: con slots virtuales se calculan desde los
+     * horarios (cursor médico_fecha_hora), si no se leen de la tabla cita
+     */
+    public AppointmentPageDTO getAvailableAppointmentsPage(String cursor, int size) {
+        if (virtualSlotService.isEnabled()) {
+            return virtualSlotService.getAvailablePage(cursor, Math.max(1, Math.min(size, MAX_PAGE_SIZE)));
+        }
+        return getAppointmentsPage(Appointment.Status.DISPONIBLE, cursor, size);
+    }
+
+    /**
+     * Recorre todas las citas disponibles sin cargarlas en memoria, como
+     * forEachAppointment(DISPONIBLE) o calculadas con slots virtuales
+     */
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public void forEachAvailableAppointment(Consumer<AppointmentDTO> action) {
+        if (virtualSlotService.isEnabled()) {
+            virtualSlotService.forEachAvailableSlot(action);
+            return;
+        }
+        try (Stream<AppointmentDTO> rows = appointmentRepository.streamAllByEstado(Appointment.Status.DISPONIBLE)) {
+            rows.forEach(action);
+        }
+    }
+
+    /**
+     * Recorre todas las citas (opcionalmente filtradas por estado) sin
+     * cargarlas en memoria; cada fila se entrega a la acción según llega de
+     * la base de datos
+     */
+    // La anotación de Spring, no la de jakarta, porque esta no admite readOnly
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public void forEachAppointment(Appointment.Status estado, Consumer<AppointmentDTO> action) {
+        try (Stream<AppointmentDTO> rows = estado != null
+                ? appointmentRepository.streamAllByEstado(estado)
+                : appointmentRepository.streamAll()) {
+            rows.forEach(action);
+        }
     }
 
     /**
@@ -71,60 +201,77 @@ public class AppointmentService {
      * Obtiene las citas de un médico
      */
     public List<AppointmentDTO> getAppointmentsByDoctor(Long doctorId) {
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId));
-
-        return appointmentRepository.findByDoctor(doctor).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        requireDoctor(doctorId);
+        return appointmentRepository.findDTOsByMedicoId(doctorId);
     }
 
     /**
      * Obtiene las citas de un médico por estado
      */
     public List<AppointmentDTO> getAppointmentsByDoctorAndStatus(Long doctorId, Appointment.Status status) {
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId));
-
-        return appointmentRepository.findByDoctorAndStatus(doctor, status).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        requireDoctor(doctorId);
+        return appointmentRepository.findDTOsByMedicoIdAndEstado(doctorId, status);
     }
 
     /**
      * Obtiene las citas de un paciente
      */
     public List<AppointmentDTO> getAppointmentsByPatient(Long patientId) {
-        Patient patient = patientRepository.findById(patientId)
-                .orElseThrow(() -> new PatientNotFoundException("Paciente no encontrado con ID: " + patientId));
-
-        return appointmentRepository.findByPatient(patient).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        requirePatient(patientId);
+        return appointmentRepository.findDTOsByPacienteId(patientId);
     }
 
     /**
      * Obtiene las citas de un paciente por estado
      */
     public List<AppointmentDTO> getAppointmentsByPatientAndStatus(Long patientId, Appointment.Status status) {
-        Patient patient = patientRepository.findById(patientId)
-                .orElseThrow(() -> new PatientNotFoundException("Paciente no encontrado con ID: " + patientId));
+        requirePatient(patientId);
+        return appointmentRepository.findDTOsByPacienteIdAndEstado(patientId, status);
+    }
 
-        return appointmentRepository.findByPatientAndStatus(patient, status).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    /**
+     * Obtiene las citas de un médico junto con las archivadas en
+     * cita_historial, opcionalmente filtradas por estado
+     */
+    public List<AppointmentDTO> getAppointmentsByDoctorWithHistory(Long doctorId, Appointment.Status status) {
+        requireDoctor(doctorId);
+        List<AppointmentDTO> current = status != null
+                ? appointmentRepository.findDTOsByMedicoIdAndEstado(doctorId, status)
+                : appointmentRepository.findDTOsByMedicoId(doctorId);
+        return concat(current, appointmentArchiveRepository.findDTOsByMedicoId(doctorId, status));
+    }
+
+    /**
+     * Obtiene las citas de un paciente junto con las archivadas en
+     * cita_historial, opcionalmente filtradas por estado
+     */
+    public List<AppointmentDTO> getAppointmentsByPatientWithHistory(Long patientId, Appointment.Status status) {
+        requirePatient(patientId);
+        List<AppointmentDTO> current = status != null
+                ? appointmentRepository.findDTOsByPacienteIdAndEstado(patientId, status)
+                : appointmentRepository.findDTOsByPacienteId(patientId);
+        return concat(current, appointmentArchiveRepository.findDTOsByPacienteId(patientId, status));
+    }
+
+    /**
+     * Historial de un paciente: sus citas pasadas, tanto las que siguen en
+     * cita como las archivadas, de la más reciente a la más antigua
+     */
+    public List<AppointmentDTO> getPatientHistory(Long patientId) {
+        requirePatient(patientId);
+        List<AppointmentDTO> history = concat(appointmentRepository.findHistorialDTOsByPacienteId(patientId),
+                appointmentArchiveRepository.findDTOsByPacienteId(patientId, null));
+        history.sort(Comparator.comparing(AppointmentDTO::getDate, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(AppointmentDTO::getHoraInicio, Comparator.nullsLast(Comparator.reverseOrder())));
+        return history;
     }
 
     /**
      * Obtiene las citas de un médico para una fecha específica
      */
     public List<AppointmentDTO> getDoctorAppointmentsForDate(Long doctorId, LocalDate date) {
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId));
-
-        return appointmentRepository.findByDoctorAndDate(doctor, date).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        requireDoctor(doctorId);
+        return appointmentRepository.findDTOsByMedicoIdAndFecha(doctorId, date);
     }
 
     /**
@@ -138,8 +285,11 @@ public class AppointmentService {
     /**
      * Programa una cita disponible para un paciente
      */
-    @Transactional
     public AppointmentDTO scheduleAppointment(String username, Long appointmentId) {
+        return retryExecutor.execute("scheduleAppointment", () -> doScheduleAppointment(username, appointmentId));
+    }
+
+    private AppointmentDTO doScheduleAppointment(String username, Long appointmentId) {
         // Obtener la cita
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cita no encontrada con ID: " + appointmentId));
@@ -158,14 +308,19 @@ public class AppointmentService {
         appointment.setStatus(Appointment.Status.AGENDADA);
         appointment.setUpdatedAt(LocalDateTime.now());
 
-        return convertToDTO(appointmentRepository.save(appointment));
+        Appointment savedAppointment = appointmentRepository.saveAndFlush(appointment);
+        registerChange(savedAppointment, Appointment.Status.DISPONIBLE);
+        return convertToDTO(savedAppointment);
     }
 
     /**
      * Actualiza el estado de una cita
      */
-    @Transactional
     public AppointmentDTO updateAppointmentStatus(Long appointmentId, Appointment.Status newStatus) {
+        return retryExecutor.execute("updateAppointmentStatus", () -> doUpdateAppointmentStatus(appointmentId, newStatus));
+    }
+
+    private AppointmentDTO doUpdateAppointmentStatus(Long appointmentId, Appointment.Status newStatus) {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cita no encontrada con ID: " + appointmentId));
 
@@ -175,10 +330,13 @@ public class AppointmentService {
                     + appointment.getStatus() + " -> " + newStatus);
         }
 
+        Appointment.Status previousStatus = appointment.getStatus();
         appointment.setStatus(newStatus);
         appointment.setUpdatedAt(LocalDateTime.now());
 
-        return convertToDTO(appointmentRepository.save(appointment));
+        Appointment savedAppointment = appointmentRepository.saveAndFlush(appointment);
+        registerChange(savedAppointment, previousStatus);
+        return convertToDTO(savedAppointment);
     }
 
     private boolean isValidStatusTransition(Appointment.Status currentStatus, Appointment.Status newStatus) {
@@ -208,8 +366,14 @@ public class AppointmentService {
     /**
      * Cancela una cita
      */
-    @Transactional
     public void cancelAppointment(Long appointmentId, String username, String reason) {
+        retryExecutor.execute("cancelAppointment", () -> {
+            doCancelAppointment(appointmentId, username, reason);
+            return null;
+        });
+    }
+
+    private void doCancelAppointment(Long appointmentId, String username, String reason) {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cita no encontrada con ID: " + appointmentId));
 
@@ -222,11 +386,12 @@ public class AppointmentService {
         }
 
         // Actualizar estado de la cita
+        Appointment.Status previousStatus = appointment.getStatus();
         appointment.setStatus(Appointment.Status.CANCELADA);
         appointment.setMotivoCancelacion(reason);
         appointment.setUpdatedAt(LocalDateTime.now());
 
-        appointmentRepository.save(appointment);
+        registerChange(appointmentRepository.saveAndFlush(appointment), previousStatus);
     }
 
     /**
@@ -234,14 +399,12 @@ public class AppointmentService {
      */
     public List<AppointmentDTO> getAvailableAppointmentsByDoctorAndDateRange(
             Long doctorId, LocalDate startDate, LocalDate endDate) {
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId));
-
-        return appointmentRepository.findByDoctorAndStatusAndDateBetween(
-                doctor, Appointment.Status.DISPONIBLE, startDate, endDate)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        requireDoctor(doctorId);
+        if (virtualSlotService.isEnabled()) {
+            return virtualSlotService.getAvailableSlots(doctorId, startDate, endDate);
+        }
+        return appointmentRepository.findDTOsByMedicoIdAndEstadoAndFechaBetween(
+                doctorId, Appointment.Status.DISPONIBLE, startDate, endDate);
     }
 
     /**
@@ -256,23 +419,23 @@ public class AppointmentService {
      * Obtiene todas las citas disponibles para un médico
      */
     public List<AppointmentDTO> getAvailableAppointmentsByDoctor(Long doctorId) {
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId));
-
-        return appointmentRepository.findByDoctorAndStatus(doctor, Appointment.Status.DISPONIBLE)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        requireDoctor(doctorId);
+        if (virtualSlotService.isEnabled()) {
+            return virtualSlotService.getAvailableSlots(doctorId, LocalDate.now(), virtualSlotService.horizonEnd());
+        }
+        return appointmentRepository.findDTOsByMedicoIdAndEstado(doctorId, Appointment.Status.DISPONIBLE);
     }
 
     /**
-     * Obtiene todas las citas disponibles en el sistema
+     * Obtiene todas las citas disponibles en el sistema; con slots virtuales
+     * como mucho VirtualSlotService.MAX_UNPAGED_SLOTS (el resto, con
+     * getAvailableAppointmentsPage o forEachAvailableAppointment)
      */
     public List<AppointmentDTO> getAvailableAppointments() {
-        return appointmentRepository.findByEstado(Appointment.Status.DISPONIBLE)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        if (virtualSlotService.isEnabled()) {
+            return virtualSlotService.getAvailableSlots(LocalDate.now(), virtualSlotService.horizonEnd());
+        }
+        return appointmentRepository.findDTOsByEstado(Appointment.Status.DISPONIBLE);
     }
 
     /**
@@ -321,6 +484,7 @@ public class AppointmentService {
 
         // 7. Guardar la cita
         Appointment savedCita = appointmentRepository.save(cita);
+        registerChange(savedCita, null);
 
         return convertToDTO(savedCita);
     }
@@ -328,13 +492,18 @@ public class AppointmentService {
     /**
      * Actualiza el estado de una cita (implementación secundaria)
      */
-    @Transactional
     public AppointmentDTO updateEstado(Long appointmentId, Appointment.Status newStatus) {
+        return retryExecutor.execute("updateEstado", () -> doUpdateEstado(appointmentId, newStatus));
+    }
+
+    private AppointmentDTO doUpdateEstado(Long appointmentId, Appointment.Status newStatus) {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
 
+        Appointment.Status previousStatus = appointment.getEstado();
         appointment.setEstado(newStatus);
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
+        Appointment updatedAppointment = appointmentRepository.saveAndFlush(appointment);
+        registerChange(updatedAppointment, previousStatus);
 
         return convertToDTO(updatedAppointment);
     }
@@ -342,8 +511,11 @@ public class AppointmentService {
     /**
      * Cancela una cita
      */
-    @Transactional
     public AppointmentDTO cancelAppointment(Long appointmentId, String motivoCancelacion) {
+        return retryExecutor.execute("cancelAppointment", () -> doCancelAppointment(appointmentId, motivoCancelacion));
+    }
+
+    private AppointmentDTO doCancelAppointment(Long appointmentId, String motivoCancelacion) {
         Appointment appointment = appointmentRepository.findById(appointmentId)
                 .orElseThrow(() -> new IllegalArgumentException("Cita no encontrada"));
 
@@ -353,7 +525,8 @@ public class AppointmentService {
 
         appointment.setEstado(Appointment.Status.CANCELADA);
         appointment.setMotivoCancelacion(motivoCancelacion);
-        Appointment updatedAppointment = appointmentRepository.save(appointment);
+        Appointment updatedAppointment = appointmentRepository.saveAndFlush(appointment);
+        registerChange(updatedAppointment, Appointment.Status.CONFIRMADA);
 
         return convertToDTO(updatedAppointment);
     }
@@ -362,28 +535,69 @@ public class AppointmentService {
      * Obtiene los horarios disponibles de un médico para una fecha específica
      */
     public List<HorarioDTO> getAvailableSlots(Long doctorId, LocalDate fecha) {
-        // Obtener el día de la semana (LUNES, MARTES, etc.)
-        DayOfWeek diaSemana = fecha.getDayOfWeek();
+        // Tramos del médico para ese día de la semana desde la plantilla en memoria
+        List<SlotCalculator.Block> blocks = scheduleTemplateCache.get(doctorId).day(fecha.getDayOfWeek());
+
+        // Obtener la ocupación del médico en esa fecha desde el índice en memoria
+        AvailabilityIndex.DaySlots ocupacion = availabilityIndex.getDay(doctorId, fecha);
+
+        // Un tramo está disponible si le queda algún slot libre no pasado: con
+        // slots virtuales, sin solape con una reserva (como VirtualSlotService
+        // y la propia reserva); si no, con su cita DISPONIBLE sin ocupar
+        boolean virtualSlots = virtualSlotService.isEnabled();
+        Set<Long> conHueco = new HashSet<>();
+        int notBefore = SlotCalculator.notBefore(fecha, LocalDateTime.now());
+        SlotCalculator.forEachSlot(blocks, notBefore, (start, end, block) -> {
+            if (virtualSlots ? !ocupacion.overlapsBooking(start, end) : ocupacion.isFree(SlotCalculator.toTime(start))) {
+                conHueco.add(block.horario().getId());
+            }
+        });
 
-        // Obtener el horario del médico para ese día de la semana
-        List<Horario> horarios = horarioRepository.findByDoctorIdAndDiaSemanaAndActivoTrue(doctorId, diaSemana);
+        return blocks.stream()
+                .map(block -> {
+                    HorarioDTO dto = convertToHorarioDTO(block.horario());
+                    dto.setDoctorId(doctorId);
+                    dto.setDisponible(conHueco.contains(block.horario().getId()));
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
 
-        // Obtener las citas existentes para ese médico en esa fecha
-        List<Appointment> citasExistentes = appointmentRepository.findByMedicoIdAndFecha(doctorId, fecha);
+    /**
+     * Notifica a las cachés en memoria (disponibilidad y estadísticas) el
+     * cambio de estado de una cita
+     */
+    private void registerChange(Appointment appointment, Appointment.Status previousStatus) {
+        availabilityIndex.registerChange(appointment, previousStatus);
+        appointmentStatsService.registerChange(appointment, previousStatus);
+    }
 
-        // Convertir a DTOs y marcar los horarios ocupados
-        return horarios.stream()
-                .map(horario -> {
-                    HorarioDTO dto = convertToHorarioDTO(horario);
+    // Se lee cita antes que el histórico: una cita trasladada entre ambas
+    // consultas aparece en las dos y se descarta la copia archivada
+    private static List<AppointmentDTO> concat(List<AppointmentDTO> current, List<AppointmentDTO> archived) {
+        List<AppointmentDTO> all = new ArrayList<>(current.size() + archived.size());
+        all.addAll(current);
+        if (!archived.isEmpty()) {
+            Set<Long> ids = current.stream().map(AppointmentDTO::getId).collect(Collectors.toSet());
+            for (AppointmentDTO dto : archived) {
+                if (!ids.contains(dto.getId())) {
+                    all.add(dto);
+                }
+            }
+        }
+        return all;
+    }
 
-                    // Verificar si hay una cita en este horario
-                    boolean ocupado = citasExistentes.stream()
-                            .anyMatch(cita -> cita.getHoraInicio().equals(horario.getHoraInicio()));
+    private void requireDoctor(Long doctorId) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId);
+        }
+    }
 
-                    dto.setDisponible(!ocupado);
-                    return dto;
-                })
-                .collect(Collectors.toList());
+    private void requirePatient(Long patientId) {
+        if (!patientRepository.existsById(patientId)) {
+            throw new PatientNotFoundException("Paciente no encontrado con ID: " + patientId);
+        }
     }
 
     /**
@@ -421,7 +635,7 @@ public class AppointmentService {
     private HorarioDTO convertToHorarioDTO(Horario horario) {
         return HorarioDTO.builder()
                 .id(horario.getId())
-                .doctorId(horario.getDoctor().getId())
+                .doctorId(horario.getDoctor() != null ? horario.getDoctor().getId() : null)
                 .diaSemana(horario.getDiaSemana())
                 .horaInicio(horario.getHoraInicio())
                 .horaFin(horario.getHoraFin())
@@ -435,30 +649,22 @@ public class AppointmentService {
      * Obtiene las citas de un médico por su nombre de usuario
      */
     public List<AppointmentDTO> getAppointmentsByDoctor(String username) {
-        System.out.println("=== DEBUG AppointmentService.getAppointmentsByDoctor ===");
-        System.out.println("Username recibido: " + username);
+        return getAppointmentsByDoctor(username, false);
+    }
 
+    /**
+     * Obtiene las citas de un médico por su nombre de usuario, incluyendo
+     * las archivadas si includeHistory es true
+     */
+    public List<AppointmentDTO> getAppointmentsByDoctor(String username, boolean includeHistory) {
         Doctor doctor = doctorRepository.findByUserUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor no encontrado"));
 
-        System.out.println("Doctor encontrado - ID: " + doctor.getId());
-
-        List<Appointment> appointments = appointmentRepository.findByMedico(doctor);
-        System.out.println("Citas encontradas en BD: " + appointments.size());
-
-        for (Appointment appointment : appointments) {
-            System.out.println("Cita encontrada - ID: " + appointment.getId()
-                    + ", Fecha: " + appointment.getFecha()
-                    + ", Hora: " + appointment.getHoraInicio()
-                    + ", Estado: " + appointment.getEstado());
+        List<AppointmentDTO> dtos = appointmentRepository.findDTOsByMedicoId(doctor.getId());
+        if (includeHistory) {
+            dtos = concat(dtos, appointmentArchiveRepository.findDTOsByMedicoId(doctor.getId(), null));
         }
-
-        List<AppointmentDTO> dtos = appointments.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-
-        System.out.println("DTOs generados: " + dtos.size());
-        System.out.println("=== FIN DEBUG getAppointmentsByDoctor ===");
+        log.debug("Citas del médico {} (usuario {}): {}", doctor.getId(), username, dtos.size());
 
         return dtos;
     }
@@ -467,91 +673,152 @@ public class AppointmentService {
      * Obtiene las citas de un paciente por su nombre de usuario
      */
     public List<AppointmentDTO> getAppointmentsByPatient(String username) {
+        return getAppointmentsByPatient(username, false);
+    }
+
+    /**
+     * Obtiene las citas de un paciente por su nombre de usuario, incluyendo
+     * las archivadas si includeHistory es true
+     */
+    public List<AppointmentDTO> getAppointmentsByPatient(String username, boolean includeHistory) {
         Patient patient = patientRepository.findByUserUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Paciente no encontrado"));
 
-        List<Appointment> appointments = appointmentRepository.findByPaciente(patient);
-        
-        return appointments.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<AppointmentDTO> dtos = appointmentRepository.findDTOsByPacienteId(patient.getId());
+        if (includeHistory) {
+            dtos = concat(dtos, appointmentArchiveRepository.findDTOsByPacienteId(patient.getId(), null));
+        }
+        return dtos;
     }
     /**
      * Genera citas automáticamente para un médico cuando configura su horario
      * por primera vez Este método debe ser llamado desde DoctorService cuando
      * el doctor guarda su perfil por primera vez
+     *
+     * Con slots virtuales no se insertan filas: solo se descarta la
+     * disponibilidad en memoria del médico.
+     */
+    @Transactional
+    public SlotGenerationResult generateInitialAppointmentsForDoctor(Long doctorId, int weeksInAdvance) {
+        return generateSlots(doctorId, weeksInAdvance, EnumSet.allOf(DayOfWeek.class), Collections.emptyList(), true);
+    }
+
+    /**
+     * Regenera los slots de un médico solo en los días de la semana afectados
+     * por un cambio de horario: retira los slots libres de los tramos
+     * eliminados o modificados y genera los que faltan
      */
     @Transactional
-    public void generateInitialAppointmentsForDoctor(Long doctorId, int weeksInAdvance) {
+    public SlotGenerationResult regenerateSlotsForDays(Long doctorId, int weeksInAdvance, Set<DayOfWeek> days,
+            Collection<Long> retiredHorarioIds) {
+        return generateSlots(doctorId, weeksInAdvance, days, retiredHorarioIds, false);
+    }
+
+    private SlotGenerationResult generateSlots(Long doctorId, int weeksInAdvance, Set<DayOfWeek> days,
+            Collection<Long> retiredHorarioIds, boolean requireHorarios) {
+        long startNanos = System.nanoTime();
+
         Doctor doctor = doctorRepository.findById(doctorId)
                 .orElseThrow(() -> new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId));
 
+        // Retirar los slots libres que ya no corresponden a ningún tramo activo
+        int retired = 0;
+        if (!retiredHorarioIds.isEmpty()) {
+            retired = appointmentRepository.deleteDisponiblesByHorarioIdIn(retiredHorarioIds, LocalDate.now(),
+                    Appointment.Status.DISPONIBLE);
+            if (retired > 0) {
+                // Borrado con JPQL: el índice no ve estas filas, hay que descartarlo
+                availabilityIndex.invalidateDoctor(doctorId);
+                TransactionUtils.afterCommit(appointmentStatsService::refresh);
+            }
+        }
+
+        if (virtualSlotService.isEnabled()) {
+            availabilityIndex.invalidateDoctor(doctorId);
+            return SlotGenerationResult.builder()
+                    .doctorId(doctorId)
+                    .slotsInserted(0)
+                    .slotsRetired(retired)
+                    .elapsedMillis((System.nanoTime() - startNanos) / 1_000_000)
+                    .build();
+        }
+
         // Obtener los horarios activos del médico
         List<Horario> horarios = horarioRepository.findByDoctorIdAndActivoTrue(doctorId);
 
-        if (horarios.isEmpty()) {
+        if (horarios.isEmpty() && requireHorarios) {
             throw new IllegalStateException("El médico no tiene horarios configurados");
         }
 
         LocalDate startDate = LocalDate.now();
         LocalDate endDate = startDate.plusWeeks(weeksInAdvance);
 
-        // Generar citas para cada día en el rango especificado
+        // Cargar en una sola consulta los slots que ya existen en el rango
+        Set<LocalDateTime> existingSlots = new HashSet<>();
+        for (Object[] row : appointmentRepository.findSlotInicioByMedicoIdAndFechaBetween(doctorId, startDate, endDate)) {
+            existingSlots.add(LocalDateTime.of((LocalDate) row[0], (LocalTime) row[1]));
+        }
+
+        // Calcular en memoria los slots que faltan para cada día afectado del rango
+        List<SlotCalculator.Block>[] week = SlotCalculator.weekOf(horarios);
+        List<Appointment> missingSlots = new ArrayList<>();
         LocalDate currentDate = startDate;
         while (!currentDate.isAfter(endDate)) {
-            DayOfWeek dayOfWeek = currentDate.getDayOfWeek();
-
-            // Buscar horarios para este día de la semana
-            List<Horario> horariosDelDia = horarios.stream()
-                    .filter(h -> h.getDiaSemana() == dayOfWeek)
-                    .collect(Collectors.toList());
-
-            // Generar citas para cada horario de este día
-            for (Horario horario : horariosDelDia) {
-                generateAppointmentsForSpecificDay(doctor, currentDate, horario);
+            if (days.contains(currentDate.getDayOfWeek())) {
+                collectMissingSlotsForDay(doctor, currentDate, week[currentDate.getDayOfWeek().ordinal()],
+                        existingSlots, missingSlots);
             }
-
             currentDate = currentDate.plusDays(1);
         }
+
+        // Insertar los slots nuevos con sentencias multi-fila
+        int inserted = appointmentBatchRepository.insertAll(missingSlots);
+        availabilityIndex.invalidateDoctor(doctorId);
+        appointmentStatsService.registerGenerated(doctorId, missingSlots);
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        log.info("Generación de citas - médico {}: {} slots insertados y {} retirados en {} ms ({} - {}, días {})",
+                doctorId, inserted, retired, elapsedMillis, startDate, endDate, days);
+
+        return SlotGenerationResult.builder()
+                .doctorId(doctorId)
+                .slotsInserted(inserted)
+                .slotsRetired(retired)
+                .elapsedMillis(elapsedMillis)
+                .build();
     }
 
     /**
-     * Genera citas disponibles para un día específico basándose en un horario
+     * Calcula las citas disponibles que faltan para un día específico a
+     * partir de todos los tramos horarios de ese día
      */
-    private void generateAppointmentsForSpecificDay(Doctor doctor, LocalDate date, Horario horario) {
-        LocalTime startTime = horario.getHoraInicio();
-        LocalTime endTime = horario.getHoraFin();
-        int duration = horario.getDuracionCita();
-
-        LocalTime currentTime = startTime;
-
-        while (currentTime.plusMinutes(duration).isBefore(endTime)
-                || currentTime.plusMinutes(duration).equals(endTime)) {
+    private void collectMissingSlotsForDay(Doctor doctor, LocalDate date, List<SlotCalculator.Block> blocks,
+            Set<LocalDateTime> existingSlots, List<Appointment> missingSlots) {
+        LocalDateTime now = LocalDateTime.now();
 
+        SlotCalculator.forEachSlot(blocks, 0, (start, end, block) -> {
+            LocalTime horaInicio = SlotCalculator.toTime(start);
             // Verificar si ya existe una cita en este horario
-            if (!appointmentRepository.existsByMedicoAndFechaAndHoraInicio(doctor, date, currentTime)) {
-                // Crear nueva cita disponible
-                Appointment appointment = Appointment.builder()
+            if (existingSlots.add(LocalDateTime.of(date, horaInicio))) {
+                missingSlots.add(Appointment.builder()
                         .medico(doctor)
                         .fecha(date)
-                        .horaInicio(currentTime)
-                        .horaFin(currentTime.plusMinutes(duration))
+                        .horaInicio(horaInicio)
+                        .horaFin(SlotCalculator.toTime(end))
                         .estado(Appointment.Status.DISPONIBLE)
-                        .horario(horario)
-                        .fechaCreacion(LocalDateTime.now())
-                        .build();
-
-                appointmentRepository.save(appointment);
+                        .horario(block.horario())
+                        .fechaCreacion(now)
+                        .build());
             }
-
-            // Mover al siguiente bloque de tiempo
-            currentTime = currentTime.plusMinutes(duration);
-        }
+        });
     }
 
     /**
      * Crea una cita de manera dinámica verificando disponibilidad en tiempo
      * real Utilizado para booking desde la interfaz pública
+     *
+     * La reserva de un slot pregenerado se hace con un UPDATE condicional
+     * (estado DISPONIBLE y sin paciente), sin leer las citas del día.
      */
     @Transactional
     public AppointmentDTO createAppointmentDynamically(String patientUsername, Long doctorId, LocalDate date, LocalTime time, String notes) {
@@ -561,78 +828,54 @@ public class AppointmentService {
         Patient patient = patientRepository.findByUserUsername(patientUsername)
                 .orElseThrow(() -> new PatientNotFoundException("Paciente no encontrado con username: " + patientUsername));
 
-        System.out.println("=== DEBUG PACIENTE ===");
-        System.out.println("Username buscado: " + patientUsername);
-        System.out.println("Paciente encontrado - ID: " + patient.getId() + ", Username: " + patient.getUser().getUsername());
+        log.debug("Reserva dinámica: paciente {} (usuario {}), médico {}, {} {}",
+                patient.getId(), patientUsername, doctorId, date, time);
 
         // 3. Verificar que el horario es válido para el médico en ese día de la semana
-        DayOfWeek dayOfWeek = date.getDayOfWeek();
-        List<Horario> horariosDelDia = horarioRepository.findByDoctorIdAndDiaSemanaAndActivoTrue(doctorId, dayOfWeek);
-
-        Horario horarioValido = horariosDelDia.stream()
-                .filter(h -> !time.isBefore(h.getHoraInicio()) && !time.plusMinutes(h.getDuracionCita()).isAfter(h.getHoraFin()))
-                .findFirst()
-                .orElseThrow(() -> new AppointmentNotAvailableException("No hay horario disponible para el médico en el día y hora solicitados"));        // 4. Verificar que no existe una cita conflictiva
-        LocalTime endTime = time.plusMinutes(horarioValido.getDuracionCita());
-
-        // Debug: Ver qué citas existen para este médico en esta fecha
-        List<Appointment> citasExistentes = appointmentRepository.findByMedicoIdAndFecha(doctorId, date);
-        System.out.println("=== DEBUG VERIFICACIÓN DE DISPONIBILIDAD ===");
-        System.out.println("Doctor ID: " + doctorId + ", Fecha: " + date + ", Hora solicitada: " + time);
-        System.out.println("Citas existentes para este médico en esta fecha:");
-        for (Appointment cita : citasExistentes) {
-            System.out.println("  - ID: " + cita.getId() + ", Hora: " + cita.getHoraInicio()
-                    + ", Estado: " + cita.getEstado()
-                    + ", Paciente: " + (cita.getPaciente() != null ? cita.getPaciente().getId() : "null"));
-        }        // Verificar si existe una cita ocupada (con paciente asignado y no cancelada) en este horario exacto
-        boolean existeCitaOcupada = citasExistentes.stream()
-                .anyMatch(cita -> cita.getHoraInicio().equals(time)
-                && cita.getPaciente() != null
-                && cita.getEstado() != Appointment.Status.CANCELADA);
-
-        if (existeCitaOcupada) {
-            System.out.println("ERROR: Ya existe una cita ocupada en el horario " + time);
-            throw new AppointmentNotAvailableException("Ya existe una cita en el horario solicitado");
-        }        // 5. Verificar conflictos con citas existentes (solo citas ocupadas)
-        boolean hasConflict = citasExistentes.stream()
-                .filter(cita -> cita.getPaciente() != null && cita.getEstado() != Appointment.Status.CANCELADA) // Solo citas ocupadas y no canceladas
-                .anyMatch(cita -> {
-                    LocalTime citaStart = cita.getHoraInicio();
-                    LocalTime citaEnd = cita.getHoraFin();
-                    // Verificar solapamiento de horarios
-                    boolean overlap = !(endTime.isBefore(citaStart) || time.isAfter(citaEnd));
-                    if (overlap) {
-                        System.out.println("CONFLICTO encontrado con cita ocupada ID: " + cita.getId()
-                                + ", Horario: " + citaStart + "-" + citaEnd
-                                + ", Estado: " + cita.getEstado()
-                                + ", Paciente: " + cita.getPaciente().getId());
-                    }
-                    return overlap;
-                });
-
-        if (hasConflict) {
-            throw new AppointmentNotAvailableException("El horario solicitado entra en conflicto con otra cita existente");
-        }        // 6. Buscar si hay una cita DISPONIBLE en este horario que podamos reutilizar
-        Appointment citaDisponible = citasExistentes.stream()
-                .filter(cita -> cita.getHoraInicio().equals(time)
-                && cita.getEstado() == Appointment.Status.DISPONIBLE
-                && cita.getPaciente() == null)
-                .findFirst()
-                .orElse(null);
+        List<SlotCalculator.Block> blocks = scheduleTemplateCache.get(doctorId).day(date.getDayOfWeek());
+
+        // La hora debe ser el inicio de uno de los slots del día (duración e
+        // intervalo entre citas incluidos)
+        SlotCalculator.Block block = time.getSecond() == 0 && time.getNano() == 0
+                ? SlotCalculator.findSlot(blocks, SlotCalculator.toMinute(time))
+                : null;
+        if (block == null) {
+            throw new AppointmentNotAvailableException("No hay horario disponible para el médico en el día y hora solicitados");
+        }
+        // Referencia sin consulta: la plantilla solo guarda una copia del tramo
+        Horario horarioValido = horarioRepository.getReferenceById(block.horario().getId());
+        LocalTime endTime = time.plusMinutes(block.duration());
+
+        // 4. Serializar en este proceso las reservas del mismo médico y día;
+        // el lock se libera al terminar la transacción
+        bookingLocks.lockUntilCompletion(doctorId, date);
+
+        // 5. Reclamar el slot DISPONIBLE pregenerado: la sentencia decide quién gana.
+        // Con slots virtuales normalmente no hay ninguno y se inserta la cita.
+        LocalDateTime now = LocalDateTime.now();
+        int claimed = appointmentRepository.claimAvailableSlot(doctorId, date, time, patient,
+                Appointment.Status.AGENDADA, Appointment.Status.DISPONIBLE,
+                notes != null ? notes : "", notes, now);
+
         Appointment savedCita;
-        if (citaDisponible != null) {
-            // Reutilizar la cita disponible existente
-            System.out.println("Reutilizando cita disponible ID: " + citaDisponible.getId());
-            System.out.println("Asignando paciente ID: " + patient.getId() + " a la cita");
-            citaDisponible.setPatient(patient);
-            citaDisponible.setEstado(Appointment.Status.AGENDADA);
-            citaDisponible.setMotivoConsulta(notes != null ? notes : "");
-            citaDisponible.setNotas(notes);
-            citaDisponible.setUpdatedAt(LocalDateTime.now());
-            savedCita = appointmentRepository.save(citaDisponible);
+        if (claimed == 1) {
+            savedCita = appointmentRepository.findFirstByMedicoIdAndFechaAndHoraInicioAndEstadoNot(doctorId, date, time,
+                            Appointment.Status.CANCELADA)
+                    .orElseThrow(() -> new AppointmentNotAvailableException("Ya existe una cita en el horario solicitado"));
+            log.debug("Slot reservado - médico {}, fecha {}, hora {}, cita {}", doctorId, date, time, savedCita.getId());
+            registerChange(savedCita, Appointment.Status.DISPONIBLE);
         } else {
-            // Crear una nueva cita
-            System.out.println("Creando nueva cita para horario: " + time);
+            // 6. No hay slot libre a esa hora: solo se crea una cita nueva si
+            // no existe ninguna activa a la misma hora ni se solapa con una
+            // ocupada. Las canceladas se conservan y no ocupan la hora.
+            if (appointmentRepository.existsByMedicoIdAndFechaAndHoraInicioAndEstadoNot(doctorId, date, time,
+                    Appointment.Status.CANCELADA)) {
+                throw new AppointmentNotAvailableException("Ya existe una cita en el horario solicitado");
+            }
+            if (appointmentRepository.countOcupadasSolapadas(doctorId, date, time, endTime, Appointment.Status.CANCELADA) > 0) {
+                throw new AppointmentNotAvailableException("El horario solicitado entra en conflicto con otra cita existente");
+            }
+
             Appointment nuevaCita = Appointment.builder()
                     .medico(doctor)
                     .paciente(patient)
@@ -643,10 +886,17 @@ public class AppointmentService {
                     .estado(Appointment.Status.AGENDADA)
                     .motivoConsulta(notes != null ? notes : "")
                     .notas(notes)
-                    .fechaCreacion(LocalDateTime.now())
-                    .fechaActualizacion(LocalDateTime.now())
+                    .fechaCreacion(now)
+                    .fechaActualizacion(now)
                     .build();
-            savedCita = appointmentRepository.save(nuevaCita);
+            try {
+                // La clave única uk_cita_slot_activo (médico, fecha, hora de las
+                // citas no canceladas) resuelve la carrera con otra instancia
+                savedCita = appointmentRepository.saveAndFlush(nuevaCita);
+            } catch (DataIntegrityViolationException e) {
+                throw new AppointmentNotAvailableException("Ya existe una cita en el horario solicitado");
+            }
+            registerChange(savedCita, null);
         }
 
         return convertToDTO(savedCita);
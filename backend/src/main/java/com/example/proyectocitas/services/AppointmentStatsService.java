@@ -0,0 +1,307 @@
+package com.example.proyectocitas.services;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.models.Appointment.Status;
+import com.example.proyectocitas.repositories.AppointmentArchiveRepository;
+import com.example.proyectocitas.repositories.AppointmentRepository;
+import com.example.proyectocitas.utils.TransactionUtils;
+
+/**
+ * Estadísticas de citas por estado, médico y día, sumando las de cita y
+ * las archivadas en cita_historial.
+ *
+ * La instantánea se construye con consultas GROUP BY la primera vez que se
+ * pide y después se mantiene con los eventos de reserva y cambio de estado
+ * que notifica AppointmentService, así que el resumen se sirve en tiempo
+ * constante sin leer la tabla cita. El archivo nocturno solo mueve citas
+ * de una tabla a otra, así que no cambia los conteos ni obliga a recargar.
+ * Los cambios hechos por otras instancias no llegan como eventos: la
+ * instantánea se reconstruye cuando lleva más de app.cache.ttl-seconds
+ * cargada (0 = sin caducidad, solo para una única instancia).
+ *
+ * Las consultas de carga se hacen en una única transacción de solo lectura
+ * REPEATABLE_READ, es decir, sobre una misma vista de la base de datos: una
+ * cita que se archiva durante la carga se cuenta una sola vez. Cada
+ * cambio lleva dos números de secuencia, uno al registrarse (antes del
+ * commit) y otro tras el commit: si el segundo es anterior al inicio de la
+ * carga el cambio ya está en la vista y se descarta; si el primero es
+ * posterior a abrir la vista se aplica. Un cambio cuyo commit pudo coincidir
+ * con la apertura de la vista no se puede clasificar y obliga a recargar.
+ */
+@Service
+public class AppointmentStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentStatsService.class);
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final AppointmentRepository appointmentRepository;
+    private final AppointmentArchiveRepository appointmentArchiveRepository;
+    private final TransactionTemplate readTemplate;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public AppointmentStatsService(AppointmentRepository appointmentRepository,
+            AppointmentArchiveRepository appointmentArchiveRepository, PlatformTransactionManager transactionManager,
+            @Value("${app.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.appointmentRepository = appointmentRepository;
+        this.appointmentArchiveRepository = appointmentArchiveRepository;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.ttlNanos = Math.max(0, ttlSeconds) * 1_000_000_000L;
+    }
+
+    /**
+     * Resumen global: total, conteos agrupados y desglose por estado
+     */
+    public Map<String, Object> getSummary() {
+        Counters totals = current().totals;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", totals.sum());
+        stats.put("disponibles", totals.get(Status.DISPONIBLE));
+        stats.put("agendadas", totals.get(Status.AGENDADA) + totals.get(Status.CONFIRMADA));
+        stats.put("completadas", totals.get(Status.COMPLETADA));
+        stats.put("canceladas", totals.get(Status.CANCELADA));
+        stats.put("porEstado", totals.toMap());
+        return stats;
+    }
+
+    /**
+     * Conteos por estado para cada médico
+     */
+    public Map<Long, Map<String, Long>> getByDoctor() {
+        Map<Long, Map<String, Long>> result = new LinkedHashMap<>();
+        current().byDoctor.forEach((doctorId, counters) -> result.put(doctorId, counters.toMap()));
+        return result;
+    }
+
+    /**
+     * Conteos por estado para cada día del rango (ambos extremos incluidos)
+     */
+    public Map<LocalDate, Map<String, Long>> getByDay(LocalDate from, LocalDate to) {
+        Map<LocalDate, Map<String, Long>> result = new LinkedHashMap<>();
+        current().byDay.subMap(from, true, to, true)
+                .forEach((fecha, counters) -> result.put(fecha, counters.toMap()));
+        return result;
+    }
+
+    /**
+     * Registra el cambio de estado de una cita tras el commit
+     *
+     * @param previousStatus estado anterior, o null si la cita es nueva
+     */
+    public void registerChange(Appointment appointment, Status previousStatus) {
+        if (appointment == null || appointment.getMedico() == null) {
+            return;
+        }
+        Long doctorId = appointment.getMedico().getId();
+        LocalDate fecha = appointment.getFecha();
+        Status currentStatus = appointment.getEstado();
+        if (previousStatus == currentStatus) {
+            return;
+        }
+        long registered = sequence.incrementAndGet();
+        TransactionUtils.afterCommit(() ->
+                apply(registered, doctorId, fecha, previousStatus, currentStatus, 1));
+    }
+
+    /**
+     * Registra tras el commit las citas DISPONIBLE insertadas en bloque
+     */
+    public void registerGenerated(Long doctorId, List<Appointment> generated) {
+        if (generated.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, Integer> perDay = new LinkedHashMap<>();
+        for (Appointment appointment : generated) {
+            perDay.merge(appointment.getFecha(), 1, Integer::sum);
+        }
+        long registered = sequence.incrementAndGet();
+        TransactionUtils.afterCommit(() -> perDay.forEach((fecha, count) ->
+                apply(registered, doctorId, fecha, null, Status.DISPONIBLE, count)));
+    }
+
+    /**
+     * Descarta la instantánea; se reconstruye desde la base de datos en la
+     * siguiente lectura
+     */
+    public void refresh() {
+        lock.lock();
+        try {
+            snapshot = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(long registered, Long doctorId, LocalDate fecha, Status previousStatus,
+            Status currentStatus, int count) {
+        long committed = sequence.incrementAndGet();
+        lock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current == null) {
+                // Aún no cargada: la próxima carga ya incluirá este cambio
+                return;
+            }
+            if (committed <= current.loadStarted) {
+                // Confirmado antes de empezar la carga: ya está en la vista
+                return;
+            }
+            if (registered <= current.viewOpened) {
+                log.debug("Cambio de estadísticas concurrente con la carga; se recargará la instantánea");
+                snapshot = null;
+                return;
+            }
+            Counters doctorCounters = current.byDoctor.computeIfAbsent(doctorId, id -> new Counters());
+            Counters dayCounters = current.byDay.computeIfAbsent(fecha, d -> new Counters());
+            if (previousStatus != null) {
+                current.totals.add(previousStatus, -count);
+                doctorCounters.add(previousStatus, -count);
+                dayCounters.add(previousStatus, -count);
+            }
+            if (currentStatus != null) {
+                current.totals.add(currentStatus, count);
+                doctorCounters.add(currentStatus, count);
+                dayCounters.add(currentStatus, count);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && !expired(current)) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (snapshot == null || expired(snapshot)) {
+                snapshot = load();
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean expired(Snapshot current) {
+        return ttlNanos > 0 && System.nanoTime() - current.loadedAt >= ttlNanos;
+    }
+
+    private Snapshot load() {
+        long startNanos = System.nanoTime();
+        long loadStarted = sequence.get();
+        Snapshot loaded = readTemplate.execute(status -> read(loadStarted));
+
+        log.info("Estadísticas de citas cargadas en {} ms: {} médicos, {} días",
+                (System.nanoTime() - startNanos) / 1_000_000, loaded.byDoctor.size(), loaded.byDay.size());
+        return loaded;
+    }
+
+    private Snapshot read(long loadStarted) {
+        List<Object[]> totals = appointmentRepository.countGroupByEstado();
+        // InnoDB fija la vista en la primera lectura de la transacción
+        Snapshot loaded = new Snapshot(loadStarted, sequence.get());
+
+        addTotals(loaded, totals);
+        addByDoctor(loaded, appointmentRepository.countGroupByMedicoAndEstado());
+        addByDay(loaded, appointmentRepository.countGroupByFechaAndEstado());
+
+        addTotals(loaded, appointmentArchiveRepository.countGroupByEstado());
+        addByDoctor(loaded, appointmentArchiveRepository.countGroupByMedicoAndEstado());
+        addByDay(loaded, appointmentArchiveRepository.countGroupByFechaAndEstado());
+        return loaded;
+    }
+
+    private static void addTotals(Snapshot loaded, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            loaded.totals.add((Status) row[0], ((Number) row[1]).longValue());
+        }
+    }
+
+    private static void addByDoctor(Snapshot loaded, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            loaded.byDoctor.computeIfAbsent((Long) row[0], id -> new Counters())
+                    .add((Status) row[1], ((Number) row[2]).longValue());
+        }
+    }
+
+    private static void addByDay(Snapshot loaded, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            loaded.byDay.computeIfAbsent((LocalDate) row[0], d -> new Counters())
+                    .add((Status) row[1], ((Number) row[2]).longValue());
+        }
+    }
+
+    private static final class Snapshot {
+        // Secuencia al empezar la carga y justo después de abrir la vista
+        private final long loadStarted;
+        private final long viewOpened;
+        private final long loadedAt = System.nanoTime();
+        private final Counters totals = new Counters();
+        private final Map<Long, Counters> byDoctor = new ConcurrentHashMap<>();
+        private final NavigableMap<LocalDate, Counters> byDay = new ConcurrentSkipListMap<>();
+
+        private Snapshot(long loadStarted, long viewOpened) {
+            this.loadStarted = loadStarted;
+            this.viewOpened = viewOpened;
+        }
+    }
+
+    /**
+     * Un contador por estado
+     */
+    private static final class Counters {
+        private final AtomicLongArray counts = new AtomicLongArray(STATUSES.length);
+
+        private void add(Status status, long delta) {
+            counts.addAndGet(status.ordinal(), delta);
+        }
+
+        private long get(Status status) {
+            return counts.get(status.ordinal());
+        }
+
+        private long sum() {
+            long total = 0;
+            for (int i = 0; i < STATUSES.length; i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        private Map<String, Long> toMap() {
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (Status status : STATUSES) {
+                result.put(status.name(), get(status));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.proyectocitas.services;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.models.Appointment;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Escribe listados completos de citas como un array JSON elemento a
+ * elemento, de modo que el tamaño de la respuesta no condiciona el heap.
+ */
+@Service
+public class AppointmentStreamService {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final AppointmentService appointmentService;
+    private final ObjectMapper objectMapper;
+
+    public AppointmentStreamService(AppointmentService appointmentService, ObjectMapper objectMapper) {
+        this.appointmentService = appointmentService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Cuerpo de respuesta con todas las citas del estado indicado (o todas si
+     * es null) en orden (fecha, id)
+     */
+    public StreamingResponseBody streamAppointments(Appointment.Status estado) {
+        return stream(action -> appointmentService.forEachAppointment(estado, action));
+    }
+
+    /**
+     * Cuerpo de respuesta con todas las citas disponibles, también con slots
+     * virtuales (en ese caso en orden médico, fecha, hora)
+     */
+    public StreamingResponseBody streamAvailableAppointments() {
+        return stream(appointmentService::forEachAvailableAppointment);
+    }
+
+    private StreamingResponseBody stream(Consumer<Consumer<AppointmentDTO>> source) {
+        return out -> {
+            // No se cierra el generador: el contenedor gestiona el stream de salida
+            JsonGenerator generator = objectMapper.createGenerator(out);
+            generator.writeStartArray();
+            int[] written = {0};
+            try {
+                source.accept(dto -> {
+                    try {
+                        generator.writeObject(dto);
+                        if (++written[0] % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
+    }
+}
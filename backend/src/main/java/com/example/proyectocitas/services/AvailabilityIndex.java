@@ -0,0 +1,332 @@
+package com.example.proyectocitas.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.repositories.AppointmentRepository;
+import com.example.proyectocitas.utils.TransactionUtils;
+
+/**
+ * Índice en memoria de disponibilidad por médico y fecha.
+ *
+ * Cada entrada guarda dos mapas de bits sobre una rejilla de minutos del día:
+ * los slots con una cita DISPONIBLE y los slots ocupados por cualquier otro
+ * estado, más el intervalo (inicio, fin) de cada cita ocupada para detectar
+ * solapes como hace la reserva. Las citas canceladas no ocupan su hora; como
+ * la clave única solo admite una cita no cancelada por hora, cada bit
+ * corresponde a una sola fila. Se cargan de forma perezosa desde la tabla cita y se actualizan
+ * tras el commit de cada reserva, cancelación o cambio de estado, de modo que
+ * las lecturas de disponibilidad no necesitan SQL.
+ *
+ * Como en ScheduleTemplateCache, una carga solo se publica si no ha habido
+ * cambios desde que empezó: cada cambio incrementa la generación de su
+ * franja de claves y cada invalidación masiva la generación global. Las
+ * reservas hechas en otras instancias no llegan a esta, así que cada entrada
+ * se recarga cuando lleva más de app.cache.ttl-seconds cargada; aplicar un
+ * cambio local no renueva ese plazo.
+ */
+@Component
+public class AvailabilityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityIndex.class);
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int GENERATION_STRIPES = 64;
+
+    private final AppointmentRepository appointmentRepository;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<Key, DaySlots> entries = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLongArray stripeGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public AvailabilityIndex(AppointmentRepository appointmentRepository,
+            @Value("${app.availability.max-entries:50000}") int maxEntries,
+            @Value("${app.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.appointmentRepository = appointmentRepository;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = Math.max(0, ttlSeconds) * 1_000_000_000L;
+    }
+
+    /**
+     * Obtiene la disponibilidad de un médico para una fecha, cargándola si no
+     * está en memoria
+     */
+    public DaySlots getDay(Long doctorId, LocalDate fecha) {
+        Key key = new Key(doctorId, fecha);
+        DaySlots slots = entries.get(key);
+        if (slots != null && !expired(slots)) {
+            return slots;
+        }
+        long startGeneration = generation.get();
+        long startStripe = stripeGenerations.get(stripe(key));
+        DaySlots loaded = load(doctorId, fecha);
+        evictIfFull();
+        // La comprobación y la publicación son atómicas respecto a apply(),
+        // que incrementa la generación dentro de un compute sobre la misma clave
+        DaySlots published = entries.compute(key, (k, current) -> {
+            if (current != null && !expired(current)) {
+                return current;
+            }
+            boolean unchanged = generation.get() == startGeneration
+                    && stripeGenerations.get(stripe(k)) == startStripe;
+            return unchanged ? loaded : null;
+        });
+        return published != null ? published : loaded;
+    }
+
+    /**
+     * Registra el cambio de una cita. Si hay una transacción activa el índice
+     * se actualiza después del commit para no publicar estados revertidos.
+     *
+     * @param previousStatus estado anterior de la cita, o null si es nueva
+     */
+    public void registerChange(Appointment appointment, Appointment.Status previousStatus) {
+        if (appointment == null || appointment.getMedico() == null) {
+            return;
+        }
+        Long doctorId = appointment.getMedico().getId();
+        LocalDate fecha = appointment.getFecha();
+        LocalTime horaInicio = appointment.getHoraInicio();
+        LocalTime horaFin = appointment.getHoraFin();
+        Appointment.Status currentStatus = appointment.getEstado();
+
+        TransactionUtils.afterCommit(() -> apply(doctorId, fecha, horaInicio, horaFin, previousStatus, currentStatus));
+    }
+
+    /**
+     * Descarta todas las entradas de un médico (p. ej. tras generar citas en
+     * bloque); se recargan en la siguiente lectura
+     */
+    public void invalidateDoctor(Long doctorId) {
+        TransactionUtils.afterCommit(() -> {
+            generation.incrementAndGet();
+            entries.keySet().removeIf(key -> key.doctorId().equals(doctorId));
+        });
+    }
+
+    /**
+     * Descarta la entrada de un médico para una fecha concreta
+     */
+    public void invalidate(Long doctorId, LocalDate fecha) {
+        TransactionUtils.afterCommit(() -> entries.compute(new Key(doctorId, fecha), (k, slots) -> {
+            stripeGenerations.incrementAndGet(stripe(k));
+            return null;
+        }));
+    }
+
+    /**
+     * Descarta las entradas de fechas anteriores a la indicada (p. ej. tras
+     * purgar o archivar citas pasadas con JDBC)
+     */
+    public void invalidateBefore(LocalDate fecha) {
+        TransactionUtils.afterCommit(() -> {
+            generation.incrementAndGet();
+            entries.keySet().removeIf(key -> key.fecha().isBefore(fecha));
+        });
+    }
+
+    /**
+     * Descarta todo el índice
+     */
+    public void invalidateAll() {
+        TransactionUtils.afterCommit(() -> {
+            generation.incrementAndGet();
+            entries.clear();
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void apply(Long doctorId, LocalDate fecha, LocalTime horaInicio, LocalTime horaFin,
+            Appointment.Status previousStatus, Appointment.Status currentStatus) {
+        Key key = new Key(doctorId, fecha);
+        // Si la hora no cae en la rejilla, withTransition devuelve null y la
+        // entrada se elimina para recargarla en la próxima lectura
+        entries.compute(key, (k, slots) -> {
+            stripeGenerations.incrementAndGet(stripe(k));
+            return slots != null ? slots.withTransition(horaInicio, horaFin, previousStatus, currentStatus) : null;
+        });
+    }
+
+    private DaySlots load(Long doctorId, LocalDate fecha) {
+        List<Object[]> rows = appointmentRepository.findSlotEstadosByMedicoIdAndFecha(doctorId, fecha);
+
+        int grid = MINUTES_PER_DAY;
+        for (Object[] row : rows) {
+            grid = gcd(grid, minuteOfDay((LocalTime) row[0]));
+        }
+
+        BitSet open = new BitSet();
+        BitSet booked = new BitSet();
+        int[] ranges = new int[rows.size() * 2];
+        int rangeCount = 0;
+        for (Object[] row : rows) {
+            int start = minuteOfDay((LocalTime) row[0]);
+            if (row[2] == Appointment.Status.DISPONIBLE) {
+                open.set(start / grid);
+            } else {
+                booked.set(start / grid);
+                ranges[rangeCount++] = start;
+                ranges[rangeCount++] = row[1] != null ? minuteOfDay((LocalTime) row[1]) : start;
+            }
+        }
+        log.debug("Índice de disponibilidad cargado - médico {}, fecha {}, {} citas, rejilla {} min",
+                doctorId, fecha, rows.size(), grid);
+        return new DaySlots(grid, open, booked, Arrays.copyOf(ranges, rangeCount), System.nanoTime());
+    }
+
+    private boolean expired(DaySlots slots) {
+        return ttlNanos > 0 && System.nanoTime() - slots.loadedAt >= ttlNanos;
+    }
+
+    private void evictIfFull() {
+        if (entries.size() < maxEntries) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        entries.keySet().removeIf(key -> key.fecha().isBefore(today));
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+
+    private static int stripe(Key key) {
+        return Math.floorMod(key.hashCode(), GENERATION_STRIPES);
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private record Key(Long doctorId, LocalDate fecha) {
+    }
+
+    /**
+     * Instantánea inmutable de los slots de un médico en un día. Cada bit
+     * representa un inicio de cita en múltiplos de {@code gridMinutes}.
+     */
+    public static final class DaySlots {
+
+        private final int gridMinutes;
+        private final BitSet open;
+        private final BitSet booked;
+        private final BitSet free;
+        // (inicio, fin) en minutos del día de cada cita ocupada, por parejas
+        private final int[] bookedRanges;
+        private final long loadedAt;
+
+        private DaySlots(int gridMinutes, BitSet open, BitSet booked, int[] bookedRanges, long loadedAt) {
+            this.gridMinutes = gridMinutes;
+            this.open = open;
+            this.booked = booked;
+            this.bookedRanges = bookedRanges;
+            this.loadedAt = loadedAt;
+            this.free = (BitSet) open.clone();
+            this.free.andNot(booked);
+        }
+
+        /**
+         * Alguna cita reservada (ni DISPONIBLE ni cancelada) se solapa con el
+         * intervalo [start, end) en minutos del día, el mismo criterio que
+         * aplica la reserva
+         */
+        public boolean overlapsBooking(int start, int end) {
+            for (int i = 0; i < bookedRanges.length; i += 2) {
+                if (bookedRanges[i] < end && start < bookedRanges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Existe una cita DISPONIBLE a esta hora y ninguna otra la ocupa
+         */
+        public boolean isFree(LocalTime time) {
+            int bit = bitFor(time);
+            return bit >= 0 && free.get(bit);
+        }
+
+        public int getGridMinutes() {
+            return gridMinutes;
+        }
+
+        private int bitFor(LocalTime time) {
+            int minute = minuteOfDay(time);
+            return minute % gridMinutes == 0 ? minute / gridMinutes : -1;
+        }
+
+        /**
+         * Devuelve una copia con la transición aplicada, o null si la hora no
+         * se puede representar en la rejilla actual
+         */
+        private DaySlots withTransition(LocalTime time, LocalTime endTime, Appointment.Status previousStatus,
+                Appointment.Status currentStatus) {
+            int bit = bitFor(time);
+            if (bit < 0 || endTime == null) {
+                return null;
+            }
+            int start = minuteOfDay(time);
+            BitSet newOpen = (BitSet) open.clone();
+            BitSet newBooked = (BitSet) booked.clone();
+            int[] newRanges = bookedRanges;
+            if (previousStatus == Appointment.Status.DISPONIBLE) {
+                newOpen.clear(bit);
+            } else if (isBlocking(previousStatus)) {
+                newBooked.clear(bit);
+                newRanges = withoutRange(newRanges, start);
+            }
+            if (currentStatus == Appointment.Status.DISPONIBLE) {
+                newOpen.set(bit);
+            } else if (isBlocking(currentStatus)) {
+                newBooked.set(bit);
+                newRanges = Arrays.copyOf(newRanges, newRanges.length + 2);
+                newRanges[newRanges.length - 2] = start;
+                newRanges[newRanges.length - 1] = minuteOfDay(endTime);
+            }
+            return new DaySlots(gridMinutes, newOpen, newBooked, newRanges, loadedAt);
+        }
+
+        private static boolean isBlocking(Appointment.Status status) {
+            return status != null && status != Appointment.Status.DISPONIBLE && status != Appointment.Status.CANCELADA;
+        }
+
+        // Quita el intervalo de la cita que empieza en start (solo hay una no cancelada por hora)
+        private static int[] withoutRange(int[] ranges, int start) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] == start) {
+                    int[] result = new int[ranges.length - 2];
+                    System.arraycopy(ranges, 0, result, 0, i);
+                    System.arraycopy(ranges, i + 2, result, i, ranges.length - i - 2);
+                    return result;
+                }
+            }
+            return ranges;
+        }
+    }
+}
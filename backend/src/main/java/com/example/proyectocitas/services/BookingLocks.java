@@ -0,0 +1,48 @@
+package com.example.proyectocitas.services;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.proyectocitas.utils.TransactionUtils;
+
+/**
+ * Locks por franjas para serializar dentro del proceso las reservas de un
+ * mismo médico y día. Evitan que peticiones simultáneas compitan por las
+ * mismas filas; la decisión final la toman la sentencia de reserva y la
+ * clave única de las citas activas de la tabla cita.
+ */
+@Component
+public class BookingLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    public BookingLocks(@Value("${app.booking.lock-stripes:256}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adquiere el lock de (médico, fecha) y lo libera al terminar la
+     * transacción actual, de modo que el siguiente hilo ya ve el commit
+     */
+    public void lockUntilCompletion(Long doctorId, LocalDate fecha) {
+        ReentrantLock lock = stripeFor(doctorId, fecha);
+        lock.lock();
+        TransactionUtils.afterCompletion(lock::unlock);
+    }
+
+    private ReentrantLock stripeFor(Long doctorId, LocalDate fecha) {
+        int hash = Objects.hash(doctorId, fecha);
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+}
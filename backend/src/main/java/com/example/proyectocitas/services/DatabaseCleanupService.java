@@ -1,80 +1,141 @@
 package com.example.proyectocitas.services;
 
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.CommandLineRunner;
-import org.springframework.core.annotation.Order;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.example.proyectocitas.models.User;
-import com.example.proyectocitas.repositories.UserRepository;
+import com.example.proyectocitas.repositories.UserCleanupRepository;
+import com.example.proyectocitas.security.UserDetailsCache;
 
+/**
+ * Limpieza de usuarios duplicados por conjuntos.
+ *
+ * Localiza los nombres de usuario repetidos con GROUP BY ... HAVING y borra
+ * los duplicados por lotes, con una transacción por lote, sin cargar la
+ * tabla users en memoria. La limpieza inicial la hace la migración
+ * V3__eliminar_usuarios_duplicados; este servicio queda para ejecutarla de
+ * nuevo, opcionalmente en segundo plano al arrancar
+ * (app.cleanup.duplicate-users.on-startup).
+ *
+ * Los borrados son JDBC y las cachés en memoria no los ven: tras el commit
+ * de cada lote se descartan los usuarios de la caché de autenticación y, de
+ * los médicos afectados, el directorio, las plantillas de horario, el índice
+ * de disponibilidad y las estadísticas de citas.
+ */
 @Service
-@Order(1) // Execute before DataInitializer
-public class DatabaseCleanupService implements CommandLineRunner {
+public class DatabaseCleanupService {
 
     private static final Logger log = LoggerFactory.getLogger(DatabaseCleanupService.class);
-    private final UserRepository userRepository;
 
-    public DatabaseCleanupService(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    private final UserCleanupRepository userCleanupRepository;
+    private final UserDetailsCache userDetailsCache;
+    private final DoctorDirectory doctorDirectory;
+    private final ScheduleTemplateCache scheduleTemplateCache;
+    private final AvailabilityIndex availabilityIndex;
+    private final AppointmentStatsService appointmentStatsService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean runOnStartup;
+    private final int batchSize;
+
+    public DatabaseCleanupService(UserCleanupRepository userCleanupRepository, UserDetailsCache userDetailsCache,
+            DoctorDirectory doctorDirectory, ScheduleTemplateCache scheduleTemplateCache,
+            AvailabilityIndex availabilityIndex, AppointmentStatsService appointmentStatsService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.cleanup.duplicate-users.on-startup:false}") boolean runOnStartup,
+            @Value("${app.cleanup.duplicate-users.batch-size:500}") int batchSize) {
+        this.userCleanupRepository = userCleanupRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.doctorDirectory = doctorDirectory;
+        this.scheduleTemplateCache = scheduleTemplateCache;
+        this.availabilityIndex = availabilityIndex;
+        this.appointmentStatsService = appointmentStatsService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.runOnStartup = runOnStartup;
+        this.batchSize = Math.max(1, batchSize);
     }
 
-    @Override
-    public void run(String... args) throws Exception {
-        log.info("Iniciando limpieza de usuarios duplicados...");
-        cleanupDuplicateUsers();
-        log.info("Limpieza de usuarios duplicados completada.");
+    /**
+     * Lanza la limpieza en un hilo propio una vez arrancada la aplicación,
+     * sin retrasar que empiece a atender peticiones
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cleanupOnStartup() {
+        if (!runOnStartup) {
+            return;
+        }
+        new SimpleAsyncTaskExecutor("db-cleanup-").execute(() -> {
+            try {
+                cleanupDuplicateUsers();
+            } catch (RuntimeException e) {
+                log.error("Error en la limpieza de usuarios duplicados: {}", e.getMessage(), e);
+            }
+        });
     }
 
-    @Transactional
-    public void cleanupDuplicateUsers() {
-        try {
-            // Get all users
-            List<User> allUsers = userRepository.findAll();
-            
-            // Group users by username
-            Map<String, List<User>> usersByUsername = allUsers.stream()
-                .collect(Collectors.groupingBy(User::getUsername));
-            
-            // Find and clean up duplicates
-            int totalDuplicatesRemoved = 0;
-            
-            for (Map.Entry<String, List<User>> entry : usersByUsername.entrySet()) {
-                String username = entry.getKey();
-                List<User> usersWithSameUsername = entry.getValue();
-                
-                if (usersWithSameUsername.size() > 1) {
-                    log.warn("Found {} users with username: {}", usersWithSameUsername.size(), username);
-                    
-                    // Keep the first user (usually the oldest by ID) and delete the rest
-                    User userToKeep = usersWithSameUsername.get(0);
-                    List<User> usersToDelete = usersWithSameUsername.subList(1, usersWithSameUsername.size());
-                    
-                    log.info("Keeping user ID: {} for username: {}", userToKeep.getId(), username);
-                    
-                    for (User userToDelete : usersToDelete) {
-                        log.info("Deleting duplicate user ID: {} for username: {}", userToDelete.getId(), username);
-                        userRepository.delete(userToDelete);
-                        totalDuplicatesRemoved++;
-                    }
-                }
+    /**
+     * Elimina los usuarios duplicados conservando el de menor id de cada
+     * nombre de usuario; devuelve el número de usuarios eliminados
+     */
+    public int cleanupDuplicateUsers() {
+        long startNanos = System.nanoTime();
+        int totalRemoved = 0;
+        int batches = 0;
+
+        List<String> usernames;
+        while (!(usernames = userCleanupRepository.findDuplicatedUsernames(batchSize)).isEmpty()) {
+            List<String> batch = usernames;
+            DeletedBatch deleted = transactionTemplate.execute(status -> {
+                List<Long> userIds = userCleanupRepository.findDuplicateIds(batch);
+                Set<Long> doctorIds = new LinkedHashSet<>(userCleanupRepository.findAffectedDoctorIds(userIds));
+                return new DeletedBatch(userCleanupRepository.deleteUsers(userIds), doctorIds);
+            });
+            // Lote ya confirmado
+            batch.forEach(userDetailsCache::removeUserFromCache);
+            if (deleted != null && !deleted.doctorIds().isEmpty()) {
+                evictDoctors(deleted.doctorIds());
             }
-            
-            if (totalDuplicatesRemoved > 0) {
-                log.info("Successfully removed {} duplicate users from the database.", totalDuplicatesRemoved);
-            } else {
-                log.info("No duplicate users found. Database is clean.");
+
+            int removed = deleted != null ? deleted.users() : 0;
+            if (removed == 0) {
+                // Evita repetir indefinidamente el mismo lote si no se pudo borrar nada
+                log.warn("Limpieza de usuarios duplicados detenida: el lote de {} nombres no eliminó filas",
+                        batch.size());
+                break;
             }
-            
-        } catch (Exception e) {
-            log.error("Error during duplicate user cleanup: {}", e.getMessage(), e);
-            // Don't rethrow the exception to allow application to continue starting
+            totalRemoved += removed;
+            batches++;
+            log.info("Limpieza de usuarios duplicados: lote {} - {} nombres, {} usuarios eliminados ({} en total)",
+                    batches, batch.size(), removed, totalRemoved);
+        }
+
+        if (totalRemoved > 0) {
+            log.info("Limpieza de usuarios duplicados completada en {} ms: {} usuarios eliminados",
+                    (System.nanoTime() - startNanos) / 1_000_000, totalRemoved);
+        } else {
+            log.info("No hay usuarios duplicados");
+        }
+        return totalRemoved;
+    }
+
+    private void evictDoctors(Set<Long> doctorIds) {
+        doctorDirectory.invalidate();
+        for (Long doctorId : doctorIds) {
+            scheduleTemplateCache.invalidate(doctorId);
+            availabilityIndex.invalidateDoctor(doctorId);
         }
+        appointmentStatsService.refresh();
+    }
+
+    private record DeletedBatch(int users, Set<Long> doctorIds) {
     }
 }
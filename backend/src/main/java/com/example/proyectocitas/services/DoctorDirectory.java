@@ -0,0 +1,198 @@
+package com.example.proyectocitas.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.proyectocitas.dto.DoctorDTO;
+import com.example.proyectocitas.utils.Constants;
+import com.example.proyectocitas.utils.TransactionUtils;
+
+/**
+ * Directorio en memoria de los médicos aprobados, indexado por especialidad
+ * y ubicación.
+ *
+ * Se carga en la primera búsqueda y después se parchea con cada aprobación,
+ * rechazo o cambio de perfil, horario o foto, tras el commit. Cada cambio
+ * publica una instantánea nueva, así que las búsquedas no toman bloqueos.
+ *
+ * Especialidad y ubicación se comparan sin distinguir mayúsculas ni acentos,
+ * igual que la colación de MySQL que usaba la consulta original.
+ *
+ * Los cambios hechos en otra instancia de la aplicación no llegan a esta: el
+ * directorio se reconstruye cuando lleva más de app.cache.ttl-seconds
+ * cargado, aunque se haya parcheado después.
+ */
+@Component
+public class DoctorDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(DoctorDirectory.class);
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long ttlNanos;
+    private volatile Snapshot snapshot;
+
+    public DoctorDirectory(@Value("${app.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.ttlNanos = Math.max(0, ttlSeconds) * 1_000_000_000L;
+    }
+
+    /**
+     * Busca médicos aprobados; un filtro null no restringe. Si el directorio
+     * no está cargado se construye con el loader recibido.
+     */
+    public List<DoctorDTO> search(String specialty, String location, Supplier<List<DoctorDTO>> loader) {
+        Snapshot current = current(loader);
+        specialty = normalize(specialty);
+        location = normalize(location);
+
+        if (specialty == null && location == null) {
+            return new ArrayList<>(current.byId.values());
+        }
+        if (location == null) {
+            return new ArrayList<>(current.bySpecialty.getOrDefault(specialty, Collections.emptyList()));
+        }
+        if (specialty == null) {
+            return new ArrayList<>(current.byLocation.getOrDefault(location, Collections.emptyList()));
+        }
+
+        // Ambos filtros: recorrer el índice más pequeño
+        List<DoctorDTO> bySpecialty = current.bySpecialty.getOrDefault(specialty, Collections.emptyList());
+        List<DoctorDTO> byLocation = current.byLocation.getOrDefault(location, Collections.emptyList());
+        boolean specialtySmaller = bySpecialty.size() <= byLocation.size();
+        List<DoctorDTO> result = new ArrayList<>();
+        for (DoctorDTO doctor : specialtySmaller ? bySpecialty : byLocation) {
+            if (specialtySmaller ? location.equals(normalize(doctor.getLocation()))
+                    : specialty.equals(normalize(doctor.getSpecialty()))) {
+                result.add(doctor);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Aplica tras el commit el estado actual de un médico: se añade o
+     * reemplaza si está aprobado y se retira en cualquier otro caso
+     */
+    public void update(DoctorDTO doctor) {
+        if (doctor == null || doctor.getId() == null) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> apply(doctor));
+    }
+
+    /**
+     * Descarta el directorio; se recarga en la siguiente búsqueda
+     */
+    public void invalidate() {
+        TransactionUtils.afterCommit(() -> {
+            lock.lock();
+            try {
+                snapshot = null;
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private void apply(DoctorDTO doctor) {
+        lock.lock();
+        try {
+            Snapshot current = snapshot;
+            if (current == null) {
+                // Aún no cargado: la próxima carga ya leerá este cambio
+                return;
+            }
+            Map<Long, DoctorDTO> doctors = new LinkedHashMap<>(current.byId);
+            if (Constants.DOCTOR_STATUS_APPROVED.equals(doctor.getStatus())) {
+                doctors.put(doctor.getId(), doctor);
+            } else if (doctors.remove(doctor.getId()) == null) {
+                return;
+            }
+            snapshot = new Snapshot(doctors.values(), current.loadedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Snapshot current(Supplier<List<DoctorDTO>> loader) {
+        Snapshot current = snapshot;
+        if (current != null && !expired(current)) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (snapshot == null || expired(snapshot)) {
+                long startNanos = System.nanoTime();
+                snapshot = new Snapshot(loader.get(), startNanos);
+                log.info("Directorio de médicos cargado en {} ms: {} médicos aprobados",
+                        (System.nanoTime() - startNanos) / 1_000_000, snapshot.byId.size());
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean expired(Snapshot current) {
+        return ttlNanos > 0 && System.nanoTime() - current.loadedAt >= ttlNanos;
+    }
+
+    /**
+     * Clave de búsqueda: sin acentos, en minúsculas y sin espacios en los
+     * extremos; null si el texto es null
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Instantánea inmutable con los índices secundarios
+     */
+    private static final class Snapshot {
+        private final Map<Long, DoctorDTO> byId;
+        private final Map<String, List<DoctorDTO>> bySpecialty;
+        private final Map<String, List<DoctorDTO>> byLocation;
+        private final long loadedAt;
+
+        private Snapshot(Collection<DoctorDTO> doctors, long loadedAt) {
+            this.loadedAt = loadedAt;
+            Map<Long, DoctorDTO> ids = new LinkedHashMap<>();
+            Map<String, List<DoctorDTO>> specialties = new HashMap<>();
+            Map<String, List<DoctorDTO>> locations = new HashMap<>();
+            for (DoctorDTO doctor : doctors) {
+                ids.put(doctor.getId(), doctor);
+                String specialty = normalize(doctor.getSpecialty());
+                if (specialty != null) {
+                    specialties.computeIfAbsent(specialty, k -> new ArrayList<>()).add(doctor);
+                }
+                String location = normalize(doctor.getLocation());
+                if (location != null) {
+                    locations.computeIfAbsent(location, k -> new ArrayList<>()).add(doctor);
+                }
+            }
+            this.byId = Collections.unmodifiableMap(ids);
+            this.bySpecialty = specialties;
+            this.byLocation = locations;
+        }
+    }
+}
@@ -9,9 +9,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.proyectocitas.config.RowSamplingTurboFilter;
 import com.example.proyectocitas.dto.DoctorDTO;
 import com.example.proyectocitas.dto.ScheduleDTO;
 import com.example.proyectocitas.dto.ScheduleRequest;
@@ -21,21 +24,30 @@ import com.example.proyectocitas.models.User;
 import com.example.proyectocitas.repositories.AppointmentRepository;
 import com.example.proyectocitas.repositories.DoctorRepository;
 import com.example.proyectocitas.repositories.UserRepository;
+import com.example.proyectocitas.utils.ScheduleDiff;
 
 @Service
 public class DoctorService {
 
+    private static final Logger log = LoggerFactory.getLogger(DoctorService.class);
+
     private final DoctorRepository doctorRepository;
     private final UserRepository userRepository;
     private final AppointmentRepository appointmentRepository;
-    private final AppointmentService appointmentService;
+    private final DoctorDirectory doctorDirectory;
+    private final ScheduleTemplateCache scheduleTemplateCache;
+    private final SlotOutboxService slotOutboxService;
 
     public DoctorService(DoctorRepository doctorRepository, UserRepository userRepository, 
-                        AppointmentRepository appointmentRepository, AppointmentService appointmentService) {
+                        AppointmentRepository appointmentRepository,
+                        DoctorDirectory doctorDirectory, ScheduleTemplateCache scheduleTemplateCache,
+                        SlotOutboxService slotOutboxService) {
         this.doctorRepository = doctorRepository;
         this.userRepository = userRepository;
         this.appointmentRepository = appointmentRepository;
-        this.appointmentService = appointmentService;
+        this.doctorDirectory = doctorDirectory;
+        this.scheduleTemplateCache = scheduleTemplateCache;
+        this.slotOutboxService = slotOutboxService;
     }
 
     public List<DoctorDTO> getAllDoctors() {
@@ -45,31 +57,22 @@ public class DoctorService {
     }
     
     public List<DoctorDTO> getApprovedDoctors() {
-        return doctorRepository.findByStatus("APPROVED").stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return doctorDirectory.search(null, null, this::loadApprovedDoctors);
     }      public List<DoctorDTO> getPendingDoctors() {
-        System.out.println("=== DEBUG: Buscando médicos pendientes ===");
-        
         List<Doctor> pendingDoctors = doctorRepository.findByStatus("PENDING");
-        System.out.println("DEBUG: Médicos con status PENDING encontrados: " + pendingDoctors.size());
+        log.debug("Médicos pendientes encontrados: {}", pendingDoctors.size());
         
-        for (Doctor doctor : pendingDoctors) {
-            User user = doctor.getUser();
-            System.out.println("DEBUG: Doctor encontrado - ID: " + doctor.getId() + 
-                             ", Usuario: " + (user != null ? user.getName() : "NULL") + 
-                             ", Status: " + doctor.getStatus() + 
-                             ", Especialidad: " + doctor.getEspecialidad());
+        if (log.isDebugEnabled()) {
+            for (Doctor doctor : pendingDoctors) {
+                User user = doctor.getUser();
+                log.debug(RowSamplingTurboFilter.ROW, "Médico pendiente id={} usuario={} especialidad={}",
+                        doctor.getId(), user != null ? user.getName() : null, doctor.getEspecialidad());
+            }
         }
         
-        List<DoctorDTO> result = pendingDoctors.stream()
+        return pendingDoctors.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
-                
-        System.out.println("DEBUG: DTOs convertidos: " + result.size());
-        System.out.println("=== DEBUG: Fin búsqueda médicos pendientes ===");
-        
-        return result;
     }
     
     public DoctorDTO getDoctorById(Long id) {
@@ -144,18 +147,18 @@ public class DoctorService {
         }
 
         Doctor savedDoctor = doctorRepository.save(doctor);
+        if (doctorDTO.getWeeklySchedule() != null) {
+            scheduleTemplateCache.replace(savedDoctor.getId(), savedDoctor.getHorarios());
+        }
 
-        // Generar citas automáticamente después de guardar los horarios
+        // Encolar la generación de citas; se procesa en segundo plano tras el commit
         if (doctorDTO.getWeeklySchedule() != null && !doctorDTO.getWeeklySchedule().isEmpty()) {
-            try {
-                appointmentService.generateInitialAppointmentsForDoctor(savedDoctor.getId(), 4);
-            } catch (Exception e) {
-                System.err.println("ERROR al generar citas automáticamente: " + e.getMessage());
-                e.printStackTrace();
-            }
+            slotOutboxService.enqueue(savedDoctor.getId(), 4, null, null);
         }
 
-        return convertToDTO(savedDoctor);
+        DoctorDTO result = convertToDTO(savedDoctor);
+        doctorDirectory.update(result);
+        return result;
     }
     
     @Transactional
@@ -167,7 +170,9 @@ public class DoctorService {
         doctor.setProfileConfigured(false); // Marcar que el perfil aún no ha sido configurado
         doctorRepository.save(doctor);
         
-        return convertToDTO(doctor);
+        DoctorDTO result = convertToDTO(doctor);
+        doctorDirectory.update(result);
+        return result;
     }
     
     @Transactional
@@ -178,42 +183,23 @@ public class DoctorService {
         doctor.setStatus("REJECTED");
         doctorRepository.save(doctor);
         
-        return convertToDTO(doctor);
+        DoctorDTO result = convertToDTO(doctor);
+        doctorDirectory.update(result);
+        return result;
     }
     
+    /**
+     * Busca médicos aprobados por especialidad y ubicación desde el
+     * directorio en memoria
+     */
     public List<DoctorDTO> searchDoctors(String specialty, String location) {
-        // Log de depuración para verificar parámetros de entrada
-        System.out.println("=== DoctorService.searchDoctors ===");
-        System.out.println("Parámetros recibidos - Specialty: " + specialty + ", Location: " + location);
-        
-        // Obtener todos los doctores de la consulta
-        List<Doctor> allDoctorsFromQuery = doctorRepository.findBySpecialtyAndLocation(specialty, location);
-        System.out.println("Doctores encontrados en la consulta: " + allDoctorsFromQuery.size());
-          // Log de cada doctor encontrado
-        for (Doctor doctor : allDoctorsFromQuery) {
-            User user = doctor.getUser();
-            System.out.println("Doctor encontrado - ID: " + doctor.getId() + 
-                             ", Nombre: " + (user != null ? user.getName() : "N/A") + 
-                             ", Status: " + doctor.getStatus() + 
-                             ", Especialidad: " + doctor.getEspecialidad());
-        }
-        
-        // Filtrar por status APPROVED
-        List<Doctor> approvedDoctors = allDoctorsFromQuery.stream()
-                .filter(doctor -> "APPROVED".equals(doctor.getStatus()))
-                .collect(Collectors.toList());
-        
-        System.out.println("Doctores con status APPROVED: " + approvedDoctors.size());
-        
-        // Convertir a DTO
-        List<DoctorDTO> result = approvedDoctors.stream()
+        return doctorDirectory.search(specialty, location, this::loadApprovedDoctors);
+    }
+
+    private List<DoctorDTO> loadApprovedDoctors() {
+        return doctorRepository.findByStatusWithUserAndHorarios("APPROVED").stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
-                
-        System.out.println("DTOs generados: " + result.size());
-        System.out.println("=== Fin DoctorService.searchDoctors ===");
-        
-        return result;
     }
     
     public boolean isTimeSlotAvailable(Long doctorId, LocalDate date, LocalTime time) {
@@ -228,20 +214,14 @@ public class DoctorService {
      * Actualiza la URL de la foto de perfil del médico
      */    @Transactional
     public void updateDoctorPhotoUrl(String username, String photoUrl) {
-        System.out.println("=== updateDoctorPhotoUrl DEBUG ===");
-        System.out.println("Username: " + username);
-        System.out.println("PhotoUrl: " + photoUrl);
-        
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
         
-        System.out.println("User found: " + user.getId() + " - " + user.getName());
-        
         // Buscar doctor existente o crear uno nuevo si no existe
         Doctor doctor = doctorRepository.findByUser(user).orElse(null);
         
         if (doctor == null) {
-            System.out.println("No doctor profile found, creating basic profile");
+            log.debug("Usuario {} sin perfil de médico, se crea uno básico", username);
             // Crear un perfil de doctor básico si no existe
             doctor = Doctor.builder()
                     .user(user)
@@ -251,12 +231,11 @@ public class DoctorService {
                     .build();
         }
         
-        System.out.println("Setting photo URL: " + photoUrl);
         doctor.setPhotoUrl(photoUrl);
         
         Doctor savedDoctor = doctorRepository.save(doctor);
-        System.out.println("Doctor saved successfully with ID: " + savedDoctor.getId());
-        System.out.println("=== updateDoctorPhotoUrl END ===");
+        doctorDirectory.update(convertToDTO(savedDoctor));
+        log.debug("Foto del médico {} actualizada: {}", savedDoctor.getId(), photoUrl);
     }
     
     /**
@@ -273,47 +252,36 @@ public class DoctorService {
         
         // Obtener el horario desde el mapa de datos
         List<Map<String, Object>> scheduleList = (List<Map<String, Object>>) scheduleData.get("schedule");
+        ScheduleDiff diff = null;
         
         if (scheduleList != null) {
-            // Limpiar el horario actual
-            doctor.getHorarios().clear();
-              // Añadir los nuevos horarios
+            List<Horario> deseados = new ArrayList<>(scheduleList.size());
             for (Map<String, Object> scheduleItem : scheduleList) {
                 Horario horario = new Horario();
-                String day = (String) scheduleItem.get("day");
-                String startTime = (String) scheduleItem.get("startTime");
-                String endTime = (String) scheduleItem.get("endTime");
-                
-                horario.setDiaSemana(DayOfWeek.valueOf(day));
-                horario.setHoraInicio(LocalTime.parse(startTime));
-                horario.setHoraFin(LocalTime.parse(endTime));
+                horario.setDiaSemana(DayOfWeek.valueOf((String) scheduleItem.get("day")));
+                horario.setHoraInicio(LocalTime.parse((String) scheduleItem.get("startTime")));
+                horario.setHoraFin(LocalTime.parse((String) scheduleItem.get("endTime")));
                 horario.setDoctor(doctor);
-                horario.setDuracionCita(doctor.getAppointmentDuration()); // Set duration
-                horario.setActivo(true); // Marcar el horario como activo
-                doctor.getHorarios().add(horario);// Generar citas disponibles para este horario
-                try {
-                    System.out.println("=== INICIO GENERACIÓN DE CITAS ===");
-                    System.out.println("Doctor ID: " + doctor.getId());
-                    System.out.println("Día: " + day + ", Hora inicio: " + startTime + ", Hora fin: " + endTime);
-                    System.out.println("Duración cita: " + doctor.getAppointmentDuration());
-                    
-                    // Generar citas para las próximas 4 semanas basándose en los horarios configurados
-                    appointmentService.generateInitialAppointmentsForDoctor(doctor.getId(), 4);
-                    
-                    System.out.println("Generación de citas completada");
-                    System.out.println("=== FIN GENERACIÓN DE CITAS ===");
-                } catch (Exception e) {
-                    // Registrar el error pero no fallar la operación completa
-                    System.err.println("=== ERROR GENERANDO CITAS ===");
-                    System.err.println("Error generando citas para el día " + day + ": " + e.getMessage());
-                    e.printStackTrace();
-                    System.err.println("=== FIN ERROR ===");
-                }
+                horario.setDuracionCita(doctor.getAppointmentDuration());
+                deseados.add(horario);
             }
+
+            // Aplicar solo lo que cambia en lugar de borrar y recrear todos los tramos
+            diff = ScheduleDiff.compute(doctor.getHorarios(), deseados);
+            diff.applyTo(doctor.getHorarios());
+            log.debug("Horario del médico {} actualizado: {}", doctor.getId(), diff);
         }
         
         Doctor savedDoctor = doctorRepository.save(doctor);
-        return convertToDTO(savedDoctor);
+        if (diff != null && !diff.isEmpty()) {
+            // Publicar la nueva plantilla y encolar en esta misma transacción
+            // la regeneración de los días afectados
+            scheduleTemplateCache.replace(savedDoctor.getId(), savedDoctor.getHorarios());
+            slotOutboxService.enqueue(savedDoctor.getId(), 4, diff.affectedDays(), diff.retiredHorarioIds());
+        }
+        DoctorDTO result = convertToDTO(savedDoctor);
+        doctorDirectory.update(result);
+        return result;
     }    public DoctorDTO convertToDTO(Doctor doctor) {
         if (doctor == null) {
             return null;
@@ -344,7 +312,9 @@ public class DoctorService {
         if (horarios == null || horarios.isEmpty()) {
             return new ArrayList<>();
         }
+        // Los tramos retirados se conservan desactivados y no se muestran
         return horarios.stream()
+                .filter(horario -> !Boolean.FALSE.equals(horario.getActivo()))
                 .map(horario -> ScheduleDTO.builder()
                         .id(horario.getId())
                         .day(horario.getDiaSemana() != null ? horario.getDiaSemana().toString() : null)
@@ -354,18 +324,16 @@ public class DoctorService {
                 .collect(Collectors.toList());
     }    // Método temporal de depuración para obtener todos los doctores
     public List<DoctorDTO> getAllDoctorsDebug() {
-        System.out.println("=== DEBUG: getAllDoctorsDebug method called ===");
         List<Doctor> allDoctors = doctorRepository.findAll();
-        System.out.println("DEBUG: Total doctors found: " + allDoctors.size());
+        log.debug("Total de médicos: {}", allDoctors.size());
         
-        for (Doctor doctor : allDoctors) {
-            User user = doctor.getUser();
-            System.out.println("DEBUG: Doctor - ID: " + doctor.getId() + 
-                             ", Usuario: " + (user != null ? user.getName() : "NULL") + 
-                             ", Username: " + (user != null ? user.getUsername() : "NULL") +
-                             ", Status: '" + doctor.getStatus() + "'" + 
-                             ", Especialidad: " + doctor.getEspecialidad() +
-                             ", Activo: " + doctor.getActivo());
+        if (log.isDebugEnabled()) {
+            for (Doctor doctor : allDoctors) {
+                User user = doctor.getUser();
+                log.debug(RowSamplingTurboFilter.ROW, "Médico id={} usuario={} status='{}' especialidad={} activo={}",
+                        doctor.getId(), user != null ? user.getUsername() : null, doctor.getStatus(),
+                        doctor.getEspecialidad(), doctor.getActivo());
+            }
         }
         
         return allDoctors.stream()
@@ -375,7 +343,6 @@ public class DoctorService {
     
     // Method to check all status values in database
     public Map<String, Long> getStatusCounts() {
-        System.out.println("=== DEBUG: getStatusCounts method called ===");
         List<Doctor> allDoctors = doctorRepository.findAll();
         
         Map<String, Long> statusCounts = allDoctors.stream()
@@ -384,9 +351,7 @@ public class DoctorService {
                     Collectors.counting()
                 ));
         
-        System.out.println("DEBUG: Status counts:");
-        statusCounts.forEach((status, count) -> 
-            System.out.println("  Status: '" + status + "' -> Count: " + count));
+        log.debug("Médicos por status: {}", statusCounts);
         
         return statusCounts;
     }
@@ -7,6 +7,8 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -15,13 +17,15 @@ import org.springframework.web.multipart.MultipartFile;
 @Service
 public class FileStorageService {
 
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
     private final Path fileStorageLocation;    public FileStorageService(@Value("${app.upload.dir:./uploads}") String uploadDir) {
         this.fileStorageLocation = Paths.get(uploadDir, "profile-photos")
                 .toAbsolutePath().normalize();
 
         try {
             Files.createDirectories(this.fileStorageLocation);
-            System.out.println("FileStorageService initialized. Upload directory: " + this.fileStorageLocation);
+            log.info("Directorio de subida de archivos: {}", this.fileStorageLocation);
         } catch (Exception ex) {
             throw new RuntimeException("No se pudo crear el directorio para almacenar los archivos subidos.", ex);
         }
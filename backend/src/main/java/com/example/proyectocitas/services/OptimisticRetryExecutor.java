@@ -0,0 +1,93 @@
+package com.example.proyectocitas.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Ejecuta una operación en su propia transacción y la repite, con espera
+ * exponencial acotada, cuando falla por un conflicto de versión (@Version).
+ * Cada intento vuelve a leer la entidad, así que la transición se aplica
+ * sobre el estado más reciente.
+ */
+@Component
+public class OptimisticRetryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryExecutor.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+
+    public OptimisticRetryExecutor(PlatformTransactionManager transactionManager,
+            @Value("${app.appointments.retry.max-attempts:3}") int maxAttempts,
+            @Value("${app.appointments.retry.backoff-ms:20}") long baseBackoffMillis,
+            @Value("${app.appointments.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = Math.max(0, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+    }
+
+    public <T> T execute(String operation, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Dentro de una transacción externa no se puede reintentar por separado
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    exhausted.incrementAndGet();
+                    log.warn("Conflicto de versión en {}: se agotaron los {} intentos", operation, maxAttempts);
+                    throw e;
+                }
+                retries.incrementAndGet();
+                log.debug("Conflicto de versión en {} (intento {}), reintentando", operation, attempt);
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Contadores acumulados desde el arranque
+     */
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("conflictos", conflicts.get());
+        metrics.put("reintentos", retries.get());
+        metrics.put("agotados", exhausted.get());
+        return metrics;
+    }
+
+    private void backoff(int attempt, OptimisticLockingFailureException cause) {
+        long delay = Math.min(maxBackoffMillis, baseBackoffMillis << (attempt - 1));
+        // Jitter para que los hilos en conflicto no vuelvan a coincidir
+        delay += ThreadLocalRandom.current().nextLong(baseBackoffMillis + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
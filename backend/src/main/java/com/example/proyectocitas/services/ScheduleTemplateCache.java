@@ -0,0 +1,234 @@
+package com.example.proyectocitas.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.proyectocitas.models.Horario;
+import com.example.proyectocitas.repositories.HorarioRepository;
+import com.example.proyectocitas.utils.SlotCalculator;
+import com.example.proyectocitas.utils.TransactionUtils;
+
+/**
+ * Plantilla semanal de horarios por médico en memoria.
+ *
+ * Cada médico tiene una plantilla inmutable con sus tramos activos indexados
+ * por día de la semana. Se carga en la primera lectura y se sustituye entera
+ * tras el commit de cada cambio de horario, de modo que la reserva y la
+ * consulta de disponibilidad no leen la tabla horario.
+ *
+ * Los cambios hechos en otra instancia de la aplicación no llegan a esta:
+ * cada plantilla se vuelve a cargar cuando lleva más de app.cache.ttl-seconds
+ * en memoria.
+ */
+@Component
+public class ScheduleTemplateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleTemplateCache.class);
+
+    private final HorarioRepository horarioRepository;
+    private final long ttlNanos;
+    private final Map<Long, WeekTemplate> templates = new ConcurrentHashMap<>();
+    // Cambia con cada sustitución: una carga iniciada antes no se publica
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder swaps = new LongAdder();
+
+    public ScheduleTemplateCache(HorarioRepository horarioRepository,
+            @Value("${app.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.horarioRepository = horarioRepository;
+        this.ttlNanos = Math.max(0, ttlSeconds) * 1_000_000_000L;
+    }
+
+    /**
+     * Plantilla de un médico, cargándola si no está en memoria
+     */
+    public WeekTemplate get(Long doctorId) {
+        return getAll(Collections.singletonList(doctorId)).get(doctorId);
+    }
+
+    /**
+     * Plantillas de varios médicos; las que faltan se cargan en una sola
+     * consulta
+     */
+    public Map<Long, WeekTemplate> getAll(Collection<Long> doctorIds) {
+        Map<Long, WeekTemplate> result = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long doctorId : doctorIds) {
+            WeekTemplate template = templates.get(doctorId);
+            if (template != null && !expired(template)) {
+                hits.increment();
+                result.put(doctorId, template);
+            } else {
+                misses.increment();
+                missing.add(doctorId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(missing).forEach((doctorId, template) -> result.put(doctorId, template));
+        }
+        return result;
+    }
+
+    /**
+     * Sustituye tras el commit la plantilla del médico por la de los horarios
+     * indicados (se ignoran los inactivos)
+     */
+    public void replace(Long doctorId, List<Horario> horarios) {
+        if (doctorId == null) {
+            return;
+        }
+        List<Horario> snapshot = horarios != null ? new ArrayList<>(horarios) : Collections.emptyList();
+        TransactionUtils.afterCommit(() -> {
+            generation.incrementAndGet();
+            List<Horario> activos = new ArrayList<>(snapshot.size());
+            for (Horario horario : snapshot) {
+                if (Boolean.TRUE.equals(horario.getActivo())) {
+                    if (horario.getId() == null) {
+                        // Sin id no se puede enlazar la cita: mejor recargar
+                        templates.remove(doctorId);
+                        return;
+                    }
+                    activos.add(copyOf(horario));
+                }
+            }
+            templates.put(doctorId, new WeekTemplate(doctorId, activos));
+            swaps.increment();
+        });
+    }
+
+    /**
+     * Descarta la plantilla de un médico; se recarga en la siguiente lectura
+     */
+    public void invalidate(Long doctorId) {
+        TransactionUtils.afterCommit(() -> {
+            generation.incrementAndGet();
+            templates.remove(doctorId);
+        });
+    }
+
+    public Map<String, Long> getMetrics() {
+        long blocks = 0;
+        for (WeekTemplate template : templates.values()) {
+            blocks += template.blockCount();
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("aciertos", hitCount);
+        metrics.put("fallos", missCount);
+        metrics.put("porcentajeAciertos", hitCount + missCount > 0 ? hitCount * 100 / (hitCount + missCount) : 0);
+        metrics.put("medicos", (long) templates.size());
+        metrics.put("tramos", blocks);
+        metrics.put("sustituciones", swaps.sum());
+        return metrics;
+    }
+
+    private Map<Long, WeekTemplate> load(List<Long> doctorIds) {
+        long startGeneration = generation.get();
+
+        Map<Long, List<Horario>> byDoctor = new HashMap<>();
+        for (Long doctorId : doctorIds) {
+            byDoctor.put(doctorId, new ArrayList<>());
+        }
+        for (Object[] row : horarioRepository.findTramosActivosByDoctorIdIn(doctorIds)) {
+            byDoctor.get((Long) row[0]).add(Horario.builder()
+                    .id((Long) row[1])
+                    .diaSemana((DayOfWeek) row[2])
+                    .horaInicio((LocalTime) row[3])
+                    .horaFin((LocalTime) row[4])
+                    .duracionCita((Integer) row[5])
+                    .intervaloEntreCitas((Integer) row[6])
+                    .activo(true)
+                    .build());
+        }
+
+        Map<Long, WeekTemplate> loaded = new HashMap<>();
+        boolean publish = generation.get() == startGeneration;
+        for (Map.Entry<Long, List<Horario>> entry : byDoctor.entrySet()) {
+            WeekTemplate template = new WeekTemplate(entry.getKey(), entry.getValue());
+            if (publish) {
+                WeekTemplate loadedTemplate = template;
+                template = templates.compute(entry.getKey(),
+                        (k, current) -> current != null && !expired(current) ? current : loadedTemplate);
+            }
+            loaded.put(entry.getKey(), template);
+        }
+        log.debug("Plantillas de horario cargadas: {} médicos", loaded.size());
+        return loaded;
+    }
+
+    private boolean expired(WeekTemplate template) {
+        return ttlNanos > 0 && System.nanoTime() - template.loadedAt >= ttlNanos;
+    }
+
+    /**
+     * Copia con solo los campos del tramo, sin el médico ni sus citas
+     */
+    private static Horario copyOf(Horario horario) {
+        return Horario.builder()
+                .id(horario.getId())
+                .diaSemana(horario.getDiaSemana())
+                .horaInicio(horario.getHoraInicio())
+                .horaFin(horario.getHoraFin())
+                .duracionCita(horario.getDuracionCita())
+                .intervaloEntreCitas(horario.getIntervaloEntreCitas())
+                .activo(horario.getActivo())
+                .build();
+    }
+
+    /**
+     * Tramos activos de un médico indexados por DayOfWeek.ordinal()
+     */
+    public static final class WeekTemplate {
+        private final Long doctorId;
+        private final List<SlotCalculator.Block>[] days;
+        private final int blockCount;
+        private final long loadedAt = System.nanoTime();
+
+        private WeekTemplate(Long doctorId, List<Horario> horarios) {
+            this.doctorId = doctorId;
+            this.days = SlotCalculator.weekOf(horarios);
+            int count = 0;
+            for (int i = 0; i < days.length; i++) {
+                days[i] = Collections.unmodifiableList(days[i]);
+                count += days[i].size();
+            }
+            this.blockCount = count;
+        }
+
+        public Long getDoctorId() {
+            return doctorId;
+        }
+
+        /**
+         * Tramos del día ordenados por hora de inicio
+         */
+        public List<SlotCalculator.Block> day(DayOfWeek dayOfWeek) {
+            return days[dayOfWeek.ordinal()];
+        }
+
+        public boolean isEmpty() {
+            return blockCount == 0;
+        }
+
+        public int blockCount() {
+            return blockCount;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.proyectocitas.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+import com.example.proyectocitas.dto.SlotGenerationJobDTO;
+import com.example.proyectocitas.dto.SlotGenerationResult;
+import com.example.proyectocitas.repositories.DoctorRepository;
+import com.example.proyectocitas.utils.Constants;
+
+/**
+ * Ejecuta la generación de citas para todos los médicos aprobados como un
+ * trabajo asíncrono. Los médicos se reparten en bloques que se procesan en
+ * paralelo sobre un ejecutor acotado, con una transacción por médico.
+ *
+ * Solo hay un trabajo en curso a la vez, para que dos no inserten slots de
+ * los mismos médicos. Si el ejecutor rechaza un bloque (cola llena o
+ * aplicación deteniéndose) sus médicos cuentan como fallos y el trabajo
+ * termina igualmente.
+ */
+@Service
+public class SlotGenerationJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotGenerationJobService.class);
+
+    private static final int MAX_ERRORS_PER_JOB = 100;
+    private static final int MAX_RETAINED_JOBS = 50;
+
+    private final DoctorRepository doctorRepository;
+    private final AppointmentService appointmentService;
+    private final TaskExecutor executor;
+    private final int chunkSize;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicReference<Job> currentJob = new AtomicReference<>();
+
+    public SlotGenerationJobService(DoctorRepository doctorRepository, AppointmentService appointmentService,
+            @Qualifier("slotGenerationExecutor") TaskExecutor executor,
+            @Value("${app.slots.generation.chunk-size:20}") int chunkSize) {
+        this.doctorRepository = doctorRepository;
+        this.appointmentService = appointmentService;
+        this.executor = executor;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Lanza la generación para todos los médicos aprobados y devuelve el
+     * estado inicial del trabajo sin esperar a que termine
+     *
+     * @throws IllegalStateException si ya hay un trabajo en curso
+     */
+    public SlotGenerationJobDTO startGenerateAll(int weeksInAdvance) {
+        Job active = currentJob.get();
+        if (active != null && active.finishedAt == null) {
+            throw new IllegalStateException("Ya hay un trabajo de generación en curso: " + active.id);
+        }
+        List<Long> doctorIds = doctorRepository.findIdsByStatus(Constants.DOCTOR_STATUS_APPROVED);
+
+        Job job = new Job(UUID.randomUUID().toString(), weeksInAdvance, doctorIds.size());
+        if (!currentJob.compareAndSet(active, job)) {
+            throw new IllegalStateException("Ya hay un trabajo de generación en curso");
+        }
+        purgeFinishedJobs();
+        jobs.put(job.id, job);
+        log.info("Trabajo de generación {} iniciado: {} médicos en bloques de {}", job.id, doctorIds.size(), chunkSize);
+
+        if (doctorIds.isEmpty()) {
+            job.finish();
+            return job.toDTO();
+        }
+
+        AtomicInteger pendingChunks = new AtomicInteger((doctorIds.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < doctorIds.size(); from += chunkSize) {
+            List<Long> chunk = new ArrayList<>(doctorIds.subList(from, Math.min(from + chunkSize, doctorIds.size())));
+            try {
+                executor.execute(() -> {
+                    try {
+                        processChunk(job, chunk);
+                    } finally {
+                        chunkDone(job, pendingChunks);
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                job.failures.addAndGet(chunk.size());
+                job.doctorsProcessed.addAndGet(chunk.size());
+                job.addError("Médicos " + chunk.get(0) + " a " + chunk.get(chunk.size() - 1)
+                        + ": generación rechazada por el ejecutor (" + e.getMessage() + ")");
+                log.warn("Trabajo de generación {}: bloque de {} médicos rechazado: {}", job.id, chunk.size(),
+                        e.getMessage());
+                chunkDone(job, pendingChunks);
+            }
+        }
+        return job.toDTO();
+    }
+
+    private void chunkDone(Job job, AtomicInteger pendingChunks) {
+        if (pendingChunks.decrementAndGet() == 0) {
+            job.finish();
+            log.info("Trabajo de generación {} completado: {} médicos, {} slots, {} fallos",
+                    job.id, job.doctorsProcessed.get(), job.slotsInserted.get(), job.failures.get());
+        }
+    }
+
+    /**
+     * Obtiene el progreso de un trabajo
+     */
+    public Optional<SlotGenerationJobDTO> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::toDTO);
+    }
+
+    private void processChunk(Job job, List<Long> doctorIds) {
+        for (Long doctorId : doctorIds) {
+            try {
+                // Cada llamada abre y confirma su propia transacción
+                SlotGenerationResult result = appointmentService.generateInitialAppointmentsForDoctor(doctorId, job.weeksInAdvance);
+                job.slotsInserted.addAndGet(result.getSlotsInserted());
+            } catch (Exception e) {
+                job.failures.incrementAndGet();
+                job.addError("Médico ID " + doctorId + ": " + e.getMessage());
+                log.warn("Error generando citas para el médico {} en el trabajo {}: {}", doctorId, job.id, e.getMessage());
+            } finally {
+                job.doctorsProcessed.incrementAndGet();
+            }
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        if (jobs.size() < MAX_RETAINED_JOBS) {
+            return;
+        }
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (iterator.hasNext() && jobs.size() >= MAX_RETAINED_JOBS) {
+            if (iterator.next().finishedAt != null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Job {
+        private final String id;
+        private final int weeksInAdvance;
+        private final int totalDoctors;
+        private final long startNanos = System.nanoTime();
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicInteger doctorsProcessed = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicLong slotsInserted = new AtomicLong();
+        private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        private volatile long finishedNanos;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(String id, int weeksInAdvance, int totalDoctors) {
+            this.id = id;
+            this.weeksInAdvance = weeksInAdvance;
+            this.totalDoctors = totalDoctors;
+        }
+
+        private void addError(String error) {
+            if (errors.size() < MAX_ERRORS_PER_JOB) {
+                errors.add(error);
+            }
+        }
+
+        private void finish() {
+            finishedNanos = System.nanoTime();
+            finishedAt = LocalDateTime.now();
+        }
+
+        private SlotGenerationJobDTO toDTO() {
+            long endNanos = finishedAt != null ? finishedNanos : System.nanoTime();
+            double seconds = Math.max((endNanos - startNanos) / 1_000_000_000.0, 0.001);
+            return SlotGenerationJobDTO.builder()
+                    .jobId(id)
+                    .status(finishedAt != null ? "COMPLETADO" : "EN_PROCESO")
+                    .weeksInAdvance(weeksInAdvance)
+                    .totalDoctors(totalDoctors)
+                    .doctorsProcessed(doctorsProcessed.get())
+                    .failures(failures.get())
+                    .slotsInserted(slotsInserted.get())
+                    .doctorsPerSecond(doctorsProcessed.get() / seconds)
+                    .slotsPerSecond(slotsInserted.get() / seconds)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .errors(new ArrayList<>(errors))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.proyectocitas.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.proyectocitas.repositories.AppointmentBatchRepository;
+import com.example.proyectocitas.repositories.DoctorRepository;
+import com.example.proyectocitas.utils.Constants;
+
+/**
+ * Mantenimiento nocturno del horizonte de slots.
+ *
+ * Cada noche (app.slots.maintenance.cron) elimina por lotes los slots
+ * DISPONIBLE sin paciente ya vencidos y encola en la cola de generación una
+ * orden por médico aprobado, de modo que sus slots lleguen siempre hasta
+ * app.slots.maintenance.horizon-weeks. Como la generación solo inserta los
+ * slots que faltan, cada noche se añade el día nuevo del horizonte. Las
+ * órdenes se reparten a lo largo de app.slots.maintenance.window-minutes y
+ * nunca a más de max-doctors-per-minute, para no competir con el tráfico.
+ *
+ * Con slots virtuales no hay filas que generar: solo se purgan las vencidas.
+ * Los slots DISPONIBLE sin paciente que queden del modo pregenerado solo se
+ * eliminan cuando un administrador lo pide tras activar
+ * app.slots.virtual.enabled (removePregeneratedSlots); nunca al arrancar.
+ *
+ * Ambas pasadas toman el bloqueo de tarea "mantenimiento-slots": con varias
+ * instancias de la aplicación solo una purga y encola cada noche.
+ */
+@Service
+public class SlotMaintenanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotMaintenanceService.class);
+
+    private static final long PURGE_PAUSE_MILLIS = 200;
+    private static final String LOCK_NAME = "mantenimiento-slots";
+    // Margen sobre la ventana para la purga y los reintentos
+    private static final Duration LOCK_MARGIN = Duration.ofHours(1);
+
+    private final DoctorRepository doctorRepository;
+    private final AppointmentBatchRepository appointmentBatchRepository;
+    private final AppointmentStatsService appointmentStatsService;
+    private final AvailabilityIndex availabilityIndex;
+    private final SlotOutboxService slotOutboxService;
+    private final VirtualSlotService virtualSlotService;
+    private final TaskLockService taskLockService;
+    private final SimpleAsyncTaskExecutor runner = new SimpleAsyncTaskExecutor("slot-maintenance-");
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final boolean enabled;
+    private final int horizonWeeks;
+    private final long windowMillis;
+    private final long minPauseMillis;
+    private final int purgeBatchSize;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public SlotMaintenanceService(DoctorRepository doctorRepository,
+            AppointmentBatchRepository appointmentBatchRepository, AppointmentStatsService appointmentStatsService,
+            AvailabilityIndex availabilityIndex, SlotOutboxService slotOutboxService, VirtualSlotService virtualSlotService,
+            TaskLockService taskLockService,
+            @Value("${app.slots.maintenance.enabled:true}") boolean enabled,
+            @Value("${app.slots.maintenance.horizon-weeks:4}") int horizonWeeks,
+            @Value("${app.slots.maintenance.window-minutes:240}") long windowMinutes,
+            @Value("${app.slots.maintenance.max-doctors-per-minute:60}") int maxDoctorsPerMinute,
+            @Value("${app.slots.maintenance.purge-batch-size:1000}") int purgeBatchSize) {
+        this.doctorRepository = doctorRepository;
+        this.appointmentBatchRepository = appointmentBatchRepository;
+        this.appointmentStatsService = appointmentStatsService;
+        this.availabilityIndex = availabilityIndex;
+        this.slotOutboxService = slotOutboxService;
+        this.virtualSlotService = virtualSlotService;
+        this.taskLockService = taskLockService;
+        this.enabled = enabled;
+        this.horizonWeeks = Math.max(1, horizonWeeks);
+        this.windowMillis = Math.max(0, windowMinutes) * 60_000;
+        this.minPauseMillis = 60_000 / Math.max(1, maxDoctorsPerMinute);
+        this.purgeBatchSize = Math.max(1, purgeBatchSize);
+        // Un hilo dormido entre médicos no debe impedir que la aplicación se detenga
+        this.runner.setDaemon(true);
+    }
+
+    /**
+     * Lanza la pasada nocturna en su propio hilo para no ocupar el del
+     * planificador durante toda la ventana
+     */
+    @Scheduled(cron = "${app.slots.maintenance.cron:0 0 1 * * *}")
+    public void nightlyRun() {
+        if (!enabled) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Mantenimiento de slots: la pasada anterior aún no ha terminado");
+            return;
+        }
+        runner.execute(() -> {
+            try {
+                if (lock()) {
+                    try {
+                        runMaintenance();
+                    } finally {
+                        taskLockService.unlock(LOCK_NAME);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Error en el mantenimiento de slots: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Elimina en segundo plano los slots libres pregenerados que sigan en la
+     * tabla cita. Solo con slots virtuales activados; devuelve false si ya
+     * hay una pasada en curso
+     */
+    public boolean removePregeneratedSlots() {
+        if (!virtualSlotService.isEnabled()) {
+            throw new IllegalStateException(
+                    "Los slots pregenerados solo se eliminan con app.slots.virtual.enabled=true");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                if (lock()) {
+                    try {
+                        LocalDateTime startedAt = LocalDateTime.now();
+                        int removed = purgeAvailable();
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("inicio", startedAt.toString());
+                        result.put("slotsPregeneradosEliminados", removed);
+                        lastRun = result;
+                        log.info("Slots virtuales: {} slots DISPONIBLE pregenerados eliminados", removed);
+                    } finally {
+                        taskLockService.unlock(LOCK_NAME);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Error eliminando los slots pregenerados: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Resultado de la última pasada
+     */
+    public Map<String, Object> getLastRun() {
+        Map<String, Object> status = new LinkedHashMap<>(lastRun);
+        status.put("enCurso", running.get());
+        return status;
+    }
+
+    private boolean lock() {
+        return taskLockService.tryLock(LOCK_NAME, Duration.ofMillis(windowMillis).plus(LOCK_MARGIN));
+    }
+
+    private void runMaintenance() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long startNanos = System.nanoTime();
+
+        int purged = purgeExpired(startedAt.toLocalDate());
+
+        int enqueued = 0;
+        int failed = 0;
+        if (!virtualSlotService.isEnabled()) {
+            List<Long> doctorIds = doctorRepository.findIdsByStatus(Constants.DOCTOR_STATUS_APPROVED);
+            long pause = doctorIds.isEmpty() ? 0 : Math.max(minPauseMillis, windowMillis / doctorIds.size());
+            log.info("Mantenimiento de slots: {} médicos, una orden cada {} ms", doctorIds.size(), pause);
+
+            for (int i = 0; i < doctorIds.size(); i++) {
+                if (i > 0 && !pause(pause)) {
+                    break;
+                }
+                try {
+                    slotOutboxService.enqueue(doctorIds.get(i), horizonWeeks, null, null);
+                    enqueued++;
+                } catch (RuntimeException e) {
+                    failed++;
+                    log.warn("Mantenimiento de slots: no se pudo encolar el médico {}: {}",
+                            doctorIds.get(i), e.getMessage());
+                }
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("inicio", startedAt.toString());
+        result.put("duracionMs", elapsedMillis);
+        result.put("slotsPurgados", purged);
+        result.put("medicosEncolados", enqueued);
+        result.put("fallos", failed);
+        lastRun = result;
+        log.info("Mantenimiento de slots completado en {} ms: {} slots vencidos eliminados, {} médicos encolados",
+                elapsedMillis, purged, enqueued);
+    }
+
+    /**
+     * Elimina por lotes, con una pausa entre ellos, los slots libres de días
+     * anteriores a hoy
+     */
+    private int purgeExpired(LocalDate today) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = appointmentBatchRepository.deleteExpiredAvailable(today, purgeBatchSize);
+            total += deleted;
+        } while (deleted == purgeBatchSize && pause(PURGE_PAUSE_MILLIS));
+
+        if (total > 0) {
+            availabilityIndex.invalidateBefore(today);
+            appointmentStatsService.refresh();
+        }
+        return total;
+    }
+
+    /**
+     * Elimina por lotes todos los slots libres sin paciente
+     */
+    private int purgeAvailable() {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = appointmentBatchRepository.deleteAvailable(purgeBatchSize);
+            total += deleted;
+        } while (deleted == purgeBatchSize && pause(PURGE_PAUSE_MILLIS));
+
+        if (total > 0) {
+            availabilityIndex.invalidateAll();
+            appointmentStatsService.refresh();
+        }
+        return total;
+    }
+
+    private static boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
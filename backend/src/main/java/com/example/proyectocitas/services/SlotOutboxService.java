@@ -0,0 +1,235 @@
+package com.example.proyectocitas.services;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.proyectocitas.exceptions.DoctorNotFoundException;
+import com.example.proyectocitas.repositories.DoctorRepository;
+import com.example.proyectocitas.repositories.SlotOutboxRepository;
+import com.example.proyectocitas.utils.TransactionUtils;
+
+/**
+ * Generación de slots a través de una cola en base de datos (outbox).
+ *
+ * Las órdenes se escriben en la misma transacción que el cambio que las
+ * provoca, de modo que no se pierden si la aplicación se detiene y no se
+ * ejecutan si la transacción se revierte. Un coordinador reclama lotes de
+ * la cola, agrupa las órdenes de cada médico en una sola (unión de días y
+ * de tramos retirados, horizonte máximo) y las reparte entre los hilos de
+ * slotGenerationExecutor. Se despierta tras cada commit y, por si acaso,
+ * cada app.slots.outbox.poll-interval-ms.
+ */
+@Service
+public class SlotOutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotOutboxService.class);
+
+    private final SlotOutboxRepository slotOutboxRepository;
+    private final DoctorRepository doctorRepository;
+    private final AppointmentService appointmentService;
+    private final TaskExecutor workers;
+    private final SimpleAsyncTaskExecutor coordinator = new SimpleAsyncTaskExecutor("slot-outbox-");
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryDelaySeconds;
+    private final long staleAfterMinutes;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public SlotOutboxService(SlotOutboxRepository slotOutboxRepository, DoctorRepository doctorRepository,
+            AppointmentService appointmentService,
+            @Qualifier("slotGenerationExecutor") TaskExecutor workers,
+            @Value("${app.slots.outbox.batch-size:100}") int batchSize,
+            @Value("${app.slots.outbox.max-attempts:5}") int maxAttempts,
+            @Value("${app.slots.outbox.retry-delay-seconds:30}") long retryDelaySeconds,
+            @Value("${app.slots.outbox.stale-after-minutes:15}") long staleAfterMinutes) {
+        this.slotOutboxRepository = slotOutboxRepository;
+        this.doctorRepository = doctorRepository;
+        this.appointmentService = appointmentService;
+        this.workers = workers;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelaySeconds = Math.max(0, retryDelaySeconds);
+        this.staleAfterMinutes = Math.max(1, staleAfterMinutes);
+    }
+
+    /**
+     * Encola la regeneración de slots de un médico en la transacción actual
+     *
+     * @param days días de la semana a regenerar, o null para todos
+     * @param retiredHorarioIds tramos cuyos slots libres hay que retirar
+     */
+    public void enqueue(Long doctorId, int weeksInAdvance, Set<DayOfWeek> days, Collection<Long> retiredHorarioIds) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new DoctorNotFoundException("Doctor no encontrado con ID: " + doctorId);
+        }
+        String dias = days == null ? null
+                : days.stream().map(DayOfWeek::name).collect(Collectors.joining(","));
+        String retirados = retiredHorarioIds == null || retiredHorarioIds.isEmpty() ? null
+                : retiredHorarioIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+
+        slotOutboxRepository.insert(doctorId, weeksInAdvance, dias, retirados, LocalDateTime.now());
+        enqueued.increment();
+        TransactionUtils.afterCommit(this::wakeUp);
+    }
+
+    /**
+     * Revisión periódica de la cola (órdenes de otras instancias, reintentos
+     * y órdenes abandonadas)
+     */
+    @Scheduled(fixedDelayString = "${app.slots.outbox.poll-interval-ms:5000}",
+            initialDelayString = "${app.slots.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /**
+     * Lanza el coordinador si no está ya vaciando la cola
+     */
+    public void wakeUp() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        coordinator.execute(() -> {
+            try {
+                int claimed;
+                do {
+                    claimed = drainBatch();
+                } while (claimed > 0);
+            } catch (RuntimeException e) {
+                log.error("Error procesando la cola de generación de slots: {}", e.getMessage(), e);
+            } finally {
+                draining.set(false);
+            }
+        });
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        slotOutboxRepository.countByEstado().forEach((estado, count) -> metrics.put(estado.toLowerCase(), count));
+        metrics.put("encoladas", enqueued.sum());
+        metrics.put("procesadas", processed.sum());
+        metrics.put("agrupadas", coalesced.sum());
+        metrics.put("fallos", failures.sum());
+        return metrics;
+    }
+
+    /**
+     * Reclama y procesa un lote; devuelve el número de órdenes reclamadas
+     */
+    private int drainBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = slotOutboxRepository.releaseStale(now.minusMinutes(staleAfterMinutes));
+        if (released > 0) {
+            log.warn("Cola de generación de slots: {} órdenes abandonadas devueltas a la cola", released);
+        }
+
+        String lote = UUID.randomUUID().toString();
+        int claimed = slotOutboxRepository.claim(lote, batchSize, now);
+        if (claimed == 0) {
+            return 0;
+        }
+
+        Map<Long, Merged> byDoctor = new LinkedHashMap<>();
+        for (SlotOutboxRepository.Command command : slotOutboxRepository.findByLote(lote)) {
+            byDoctor.computeIfAbsent(command.doctorId(), Merged::new).add(command);
+        }
+        coalesced.add(claimed - byDoctor.size());
+
+        List<CompletableFuture<Void>> running = new ArrayList<>(byDoctor.size());
+        for (Merged merged : byDoctor.values()) {
+            try {
+                running.add(CompletableFuture.runAsync(() -> process(merged), workers));
+            } catch (TaskRejectedException e) {
+                reschedule(merged, "Cola de workers llena");
+            }
+        }
+        CompletableFuture.allOf(running.toArray(new CompletableFuture[0])).join();
+
+        log.info("Cola de generación de slots: {} órdenes procesadas como {} regeneraciones", claimed, byDoctor.size());
+        return claimed;
+    }
+
+    private void process(Merged merged) {
+        try {
+            appointmentService.regenerateSlotsForDays(merged.doctorId, merged.weeks, merged.days,
+                    merged.retiredHorarioIds);
+            slotOutboxRepository.deleteByIds(merged.ids);
+            processed.add(merged.ids.size());
+        } catch (Exception e) {
+            log.warn("Error regenerando los slots del médico {}: {}", merged.doctorId, e.getMessage());
+            reschedule(merged, e.getMessage());
+        }
+    }
+
+    private void reschedule(Merged merged, String error) {
+        failures.increment();
+        slotOutboxRepository.reschedule(merged.ids, error,
+                LocalDateTime.now().plusSeconds(retryDelaySeconds * (merged.attempts + 1)), maxAttempts);
+    }
+
+    /**
+     * Órdenes de un mismo médico agrupadas en una sola regeneración
+     */
+    private static final class Merged {
+        private final Long doctorId;
+        private final List<Long> ids = new ArrayList<>();
+        private final Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        private final Set<Long> retiredHorarioIds = new LinkedHashSet<>();
+        private int weeks;
+        private int attempts;
+
+        private Merged(Long doctorId) {
+            this.doctorId = doctorId;
+        }
+
+        private void add(SlotOutboxRepository.Command command) {
+            ids.add(command.id());
+            weeks = Math.max(weeks, command.semanas());
+            attempts = Math.max(attempts, command.intentos());
+            if (command.dias() == null) {
+                days.addAll(EnumSet.allOf(DayOfWeek.class));
+            } else {
+                for (String dia : command.dias().split(",")) {
+                    if (!dia.isBlank()) {
+                        days.add(DayOfWeek.valueOf(dia.trim()));
+                    }
+                }
+            }
+            if (command.horariosRetirados() != null) {
+                for (String id : command.horariosRetirados().split(",")) {
+                    if (!id.isBlank()) {
+                        retiredHorarioIds.add(Long.valueOf(id.trim()));
+                    }
+                }
+            }
+        }
+    }
+}
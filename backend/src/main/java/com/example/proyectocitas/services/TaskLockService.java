@@ -0,0 +1,59 @@
+package com.example.proyectocitas.services;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.proyectocitas.repositories.TaskLockRepository;
+
+/**
+ * Bloqueo de tareas programadas compartido entre instancias de la
+ * aplicación, sobre la tabla bloqueo_tarea.
+ *
+ * Cada instancia lanza los mismos @Scheduled; solo la que obtiene el bloqueo
+ * ejecuta la pasada. El bloqueo caduca tras la duración máxima que indica la
+ * tarea, por si la instancia se detiene sin liberarlo, y al liberarlo se
+ * conserva al menos app.tasks.lock.min-hold-seconds desde que se obtuvo,
+ * para que una instancia con el reloj algo retrasado no repita la pasada.
+ */
+@Service
+public class TaskLockService {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskLockService.class);
+
+    private final TaskLockRepository taskLockRepository;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName();
+    private final long minHoldSeconds;
+
+    public TaskLockService(TaskLockRepository taskLockRepository,
+            @Value("${app.tasks.lock.min-hold-seconds:300}") long minHoldSeconds) {
+        this.taskLockRepository = taskLockRepository;
+        this.minHoldSeconds = Math.max(0, minHoldSeconds);
+    }
+
+    /**
+     * Intenta obtener el bloqueo de la tarea durante como mucho maxDuration
+     */
+    public boolean tryLock(String name, Duration maxDuration) {
+        boolean acquired = taskLockRepository.tryAcquire(name, owner, Math.max(1, maxDuration.toSeconds()));
+        if (!acquired) {
+            log.info("Tarea {}: la ejecuta otra instancia", name);
+        }
+        return acquired;
+    }
+
+    public void unlock(String name) {
+        try {
+            if (!taskLockRepository.release(name, owner, minHoldSeconds)) {
+                log.warn("Tarea {}: el bloqueo caducó antes de terminar la pasada", name);
+            }
+        } catch (RuntimeException e) {
+            // Caduca solo al llegar a su duración máxima
+            log.warn("Tarea {}: no se pudo liberar el bloqueo: {}", name, e.getMessage());
+        }
+    }
+}
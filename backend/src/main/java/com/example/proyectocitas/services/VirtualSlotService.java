@@ -0,0 +1,287 @@
+package com.example.proyectocitas.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.dto.AppointmentPageDTO;
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.models.Doctor;
+import com.example.proyectocitas.repositories.AppointmentRepository;
+import com.example.proyectocitas.repositories.DoctorRepository;
+import com.example.proyectocitas.utils.Constants;
+import com.example.proyectocitas.utils.SlotCalculator;
+
+/**
+ * Disponibilidad calculada a partir de los horarios ("slots virtuales").
+ *
+ * Con app.slots.virtual.enabled los slots libres no se guardan en la tabla
+ * cita: se obtienen de la plantilla semanal del médico (ScheduleTemplateCache)
+ * con SlotCalculator descontando las citas existentes, y solo se escribe una
+ * fila cuando un paciente reserva.
+ *
+ * Los listados de todos los médicos se calculan por lotes de DOCTOR_BATCH
+ * médicos (plantillas y una consulta de ocupación por lote), de modo que
+ * la página y el streaming no dependen del total de slots en memoria.
+ */
+@Service
+public class VirtualSlotService {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualSlotService.class);
+
+    /**
+     * Máximo de slots que devuelve el listado sin paginar de todos los médicos
+     */
+    public static final int MAX_UNPAGED_SLOTS = 5000;
+
+    private static final int DOCTOR_BATCH = 50;
+
+    private final DoctorRepository doctorRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final ScheduleTemplateCache scheduleTemplateCache;
+    private final boolean enabled;
+    private final int horizonWeeks;
+
+    public VirtualSlotService(DoctorRepository doctorRepository, AppointmentRepository appointmentRepository,
+            ScheduleTemplateCache scheduleTemplateCache,
+            @Value("${app.slots.virtual.enabled:false}") boolean enabled,
+            @Value("${app.slots.virtual.horizon-weeks:4}") int horizonWeeks) {
+        this.doctorRepository = doctorRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.scheduleTemplateCache = scheduleTemplateCache;
+        this.enabled = enabled;
+        this.horizonWeeks = Math.max(1, horizonWeeks);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Último día que se ofrece cuando no se indica un rango
+     */
+    public LocalDate horizonEnd() {
+        return LocalDate.now().plusWeeks(horizonWeeks);
+    }
+
+    /**
+     * Slots libres de un médico entre dos fechas (ambas incluidas), sin pasar
+     * del horizonte
+     */
+    @Transactional(readOnly = true)
+    public List<AppointmentDTO> getAvailableSlots(Long doctorId, LocalDate from, LocalDate to) {
+        LocalDate end = to.isAfter(horizonEnd()) ? horizonEnd() : to;
+        List<AppointmentDTO> slots = new ArrayList<>();
+        doctorRepository.findById(doctorId)
+                .ifPresent(doctor -> computeSlots(List.of(doctor), from, end, null, slots::add));
+        return slots;
+    }
+
+    /**
+     * Slots libres de todos los médicos aprobados entre dos fechas, como
+     * mucho MAX_UNPAGED_SLOTS; el listado completo se recorre con
+     * getAvailablePage o forEachAvailableSlot
+     */
+    @Transactional(readOnly = true)
+    public List<AppointmentDTO> getAvailableSlots(LocalDate from, LocalDate to) {
+        List<AppointmentDTO> slots = new ArrayList<>();
+        forEachSlot(from, to, null, slot -> {
+            slots.add(slot);
+            return slots.size() < MAX_UNPAGED_SLOTS;
+        });
+        if (slots.size() >= MAX_UNPAGED_SLOTS) {
+            log.warn("Slots disponibles truncados a {}; usar /available/page o /available/stream", MAX_UNPAGED_SLOTS);
+        }
+        return slots;
+    }
+
+    /**
+     * Página de slots libres de los médicos aprobados hasta el horizonte, en
+     * orden (médico, fecha, hora) a partir del cursor de la página anterior
+     *
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    @Transactional(readOnly = true)
+    public AppointmentPageDTO getAvailablePage(String cursor, int pageSize) {
+        SlotKey after = cursor == null || cursor.isBlank() ? null : SlotKey.parse(cursor);
+        // Uno de más para saber si existe una página siguiente
+        List<AppointmentDTO> rows = new ArrayList<>(pageSize + 1);
+        forEachSlot(LocalDate.now(), horizonEnd(), after, slot -> {
+            rows.add(slot);
+            return rows.size() <= pageSize;
+        });
+
+        boolean hasMore = rows.size() > pageSize;
+        List<AppointmentDTO> items = hasMore ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        return AppointmentPageDTO.builder()
+                .items(items)
+                .size(items.size())
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? SlotKey.of(items.get(items.size() - 1)).format() : null)
+                .build();
+    }
+
+    /**
+     * Entrega uno a uno los slots libres de los médicos aprobados hasta el
+     * horizonte, en orden (médico, fecha, hora), calculándolos por lotes de
+     * médicos
+     */
+    @Transactional(readOnly = true)
+    public void forEachAvailableSlot(Consumer<AppointmentDTO> action) {
+        forEachSlot(LocalDate.now(), horizonEnd(), null, slot -> {
+            action.accept(slot);
+            return true;
+        });
+    }
+
+    /**
+     * Recorre los médicos aprobados por lotes de DOCTOR_BATCH en orden de id,
+     * desde el de la clave after, hasta que sink devuelve false
+     */
+    private void forEachSlot(LocalDate from, LocalDate to, SlotKey after, Predicate<AppointmentDTO> sink) {
+        long fromId = after != null ? after.doctorId() : 0;
+        while (true) {
+            List<Doctor> doctors = doctorRepository.findByStatusFromId(Constants.DOCTOR_STATUS_APPROVED, fromId,
+                    PageRequest.of(0, DOCTOR_BATCH));
+            if (doctors.isEmpty() || !computeSlots(doctors, from, to, after, sink)
+                    || doctors.size() < DOCTOR_BATCH) {
+                return;
+            }
+            fromId = doctors.get(doctors.size() - 1).getId() + 1;
+        }
+    }
+
+    /**
+     * Entrega a sink los slots libres de los médicos indicados, en su orden,
+     * posteriores a la clave after; devuelve false si sink pidió parar
+     */
+    private boolean computeSlots(List<Doctor> doctors, LocalDate from, LocalDate to, SlotKey after,
+            Predicate<AppointmentDTO> sink) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate start = from.isBefore(now.toLocalDate()) ? now.toLocalDate() : from;
+        if (doctors.isEmpty() || start.isAfter(to)) {
+            return true;
+        }
+
+        // Plantillas semanales desde memoria; solo se consultan las que faltan
+        Map<Long, Doctor> doctorsById = new LinkedHashMap<>();
+        for (Doctor doctor : doctors) {
+            doctorsById.put(doctor.getId(), doctor);
+        }
+        Map<Long, ScheduleTemplateCache.WeekTemplate> templates = scheduleTemplateCache.getAll(doctorsById.keySet());
+        templates.values().removeIf(ScheduleTemplateCache.WeekTemplate::isEmpty);
+        if (templates.isEmpty()) {
+            return true;
+        }
+
+        // Citas no canceladas del rango en una sola consulta
+        Map<DoctorDay, List<Occupied>> occupancy = new HashMap<>();
+        for (Object[] row : appointmentRepository.findOcupacionByMedicoIdInAndFechaBetween(
+                templates.keySet(), start, to)) {
+            Appointment.Status estado = (Appointment.Status) row[4];
+            occupancy.computeIfAbsent(new DoctorDay((Long) row[0], (LocalDate) row[1]), k -> new ArrayList<>())
+                    .add(new Occupied(SlotCalculator.toMinute((LocalTime) row[2]),
+                            SlotCalculator.toMinute((LocalTime) row[3]),
+                            estado != Appointment.Status.DISPONIBLE));
+        }
+
+        boolean[] stopped = {false};
+        for (Doctor doctor : doctorsById.values()) {
+            ScheduleTemplateCache.WeekTemplate template = templates.get(doctor.getId());
+            if (template == null || after != null && doctor.getId() < after.doctorId()) {
+                continue;
+            }
+            String doctorName = doctor.getUser() != null ? doctor.getUser().getName() : null;
+            boolean resume = after != null && doctor.getId().equals(after.doctorId());
+            LocalDate first = resume && after.fecha().isAfter(start) ? after.fecha() : start;
+
+            for (LocalDate date = first; !date.isAfter(to); date = date.plusDays(1)) {
+                List<SlotCalculator.Block> blocks = template.day(date.getDayOfWeek());
+                if (blocks.isEmpty()) {
+                    continue;
+                }
+                List<Occupied> taken = occupancy.getOrDefault(new DoctorDay(doctor.getId(), date), Collections.emptyList());
+                int notBefore = SlotCalculator.notBefore(date, now);
+                if (resume && date.equals(after.fecha())) {
+                    notBefore = Math.max(notBefore, after.minute() + 1);
+                }
+                LocalDate fecha = date;
+
+                SlotCalculator.forEachSlot(blocks, notBefore, (slotStart, slotEnd, block) -> {
+                    if (!stopped[0] && isFree(taken, slotStart, slotEnd)) {
+                        stopped[0] = !sink.test(new AppointmentDTO(null, doctor.getId(), doctorName, null, null,
+                                block.horario().getId(), fecha, SlotCalculator.toTime(slotStart),
+                                SlotCalculator.toTime(slotEnd), Appointment.Status.DISPONIBLE,
+                                null, null, null, null));
+                    }
+                });
+                if (stopped[0]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Un slot está ocupado si se solapa con una cita reservada. Las canceladas
+     * no se cargan y un slot DISPONIBLE que quede del modo pregenerado no
+     * ocupa: la reserva lo reclama.
+     */
+    private static boolean isFree(List<Occupied> taken, int start, int end) {
+        for (int i = 0; i < taken.size(); i++) {
+            Occupied occupied = taken.get(i);
+            if (occupied.blocking() && occupied.start() < end && start < occupied.end()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record DoctorDay(Long doctorId, LocalDate fecha) {
+    }
+
+    /**
+     * Posición de un slot en el recorrido; el cursor es "médico_fecha_hora"
+     */
+    private record SlotKey(long doctorId, LocalDate fecha, int minute) {
+
+        private static SlotKey of(AppointmentDTO slot) {
+            return new SlotKey(slot.getDoctorId(), slot.getDate(), SlotCalculator.toMinute(slot.getHoraInicio()));
+        }
+
+        private static SlotKey parse(String cursor) {
+            String[] parts = cursor.split("_", 3);
+            try {
+                return new SlotKey(Long.parseLong(parts[0]), LocalDate.parse(parts[1]),
+                        SlotCalculator.toMinute(LocalTime.parse(parts[2])));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+
+        private String format() {
+            return doctorId + "_" + fecha + "_" + SlotCalculator.toTime(minute);
+        }
+    }
+
+    private record Occupied(int start, int end, boolean blocking) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.proyectocitas.utils;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.example.proyectocitas.models.Horario;
+
+/**
+ * Diferencia entre los tramos horarios guardados de un médico y los
+ * solicitados.
+ *
+ * Los tramos se identifican por día, hora de inicio y hora de fin. Un tramo
+ * que coincide pero con otra duración o intervalo se considera modificado;
+ * los que faltan se desactivan en lugar de borrarse, porque las citas
+ * existentes los siguen referenciando.
+ */
+public final class ScheduleDiff {
+
+    private final List<Horario> added = new ArrayList<>();
+    private final List<Horario> reactivated = new ArrayList<>();
+    private final List<Horario> changed = new ArrayList<>();
+    private final List<Horario> removed = new ArrayList<>();
+    private final Map<Horario, Horario> changes = new IdentityHashMap<>();
+
+    private ScheduleDiff() {
+    }
+
+    /**
+     * Compara los horarios actuales con los deseados sin modificar ninguno
+     */
+    public static ScheduleDiff compute(List<Horario> current, List<Horario> desired) {
+        ScheduleDiff diff = new ScheduleDiff();
+
+        Map<Key, List<Horario>> byKey = new HashMap<>();
+        for (Horario horario : current) {
+            byKey.computeIfAbsent(Key.of(horario), k -> new ArrayList<>()).add(horario);
+        }
+
+        List<Horario> matched = new ArrayList<>();
+        for (Horario wanted : desired) {
+            List<Horario> candidates = byKey.getOrDefault(Key.of(wanted), Collections.emptyList());
+            // Preferir un tramo activo; si no, reutilizar uno desactivado
+            Horario existing = null;
+            for (Horario candidate : candidates) {
+                if (!containsSame(matched, candidate)
+                        && (existing == null || Boolean.TRUE.equals(candidate.getActivo()))) {
+                    existing = candidate;
+                }
+            }
+            if (existing == null) {
+                diff.added.add(wanted);
+                continue;
+            }
+            matched.add(existing);
+            if (!Boolean.TRUE.equals(existing.getActivo())) {
+                diff.reactivated.add(existing);
+                diff.changes.put(existing, wanted);
+            } else if (!Objects.equals(existing.getDuracionCita(), wanted.getDuracionCita())
+                    || !Objects.equals(existing.getIntervaloEntreCitas(), wanted.getIntervaloEntreCitas())) {
+                diff.changed.add(existing);
+                diff.changes.put(existing, wanted);
+            }
+        }
+
+        for (Horario horario : current) {
+            if (Boolean.TRUE.equals(horario.getActivo()) && !containsSame(matched, horario)) {
+                diff.removed.add(horario);
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Aplica la diferencia sobre la colección de horarios del médico
+     */
+    public void applyTo(List<Horario> horarios) {
+        for (Horario horario : removed) {
+            horario.setActivo(false);
+        }
+        for (Horario horario : reactivated) {
+            copyTimings(changes.get(horario), horario);
+            horario.setActivo(true);
+        }
+        for (Horario horario : changed) {
+            copyTimings(changes.get(horario), horario);
+        }
+        for (Horario horario : added) {
+            horario.setActivo(true);
+            horarios.add(horario);
+        }
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && reactivated.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Días de la semana cuyos slots hay que regenerar
+     */
+    public Set<DayOfWeek> affectedDays() {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (List<Horario> list : List.of(added, reactivated, changed, removed)) {
+            for (Horario horario : list) {
+                days.add(horario.getDiaSemana());
+            }
+        }
+        return days;
+    }
+
+    /**
+     * Tramos cuyos slots libres ya no son válidos (eliminados o modificados)
+     */
+    public List<Long> retiredHorarioIds() {
+        List<Long> ids = new ArrayList<>(removed.size() + changed.size());
+        for (Horario horario : removed) {
+            ids.add(horario.getId());
+        }
+        for (Horario horario : changed) {
+            ids.add(horario.getId());
+        }
+        ids.removeIf(Objects::isNull);
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return "añadidos=" + (added.size() + reactivated.size()) + ", modificados=" + changed.size()
+                + ", eliminados=" + removed.size();
+    }
+
+    private static void copyTimings(Horario from, Horario to) {
+        to.setDuracionCita(from.getDuracionCita());
+        to.setIntervaloEntreCitas(from.getIntervaloEntreCitas());
+    }
+
+    // Identidad de entidad: Horario redefine equals con todos sus campos
+    private static boolean containsSame(List<Horario> list, Horario horario) {
+        for (Horario element : list) {
+            if (element == horario) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Key(DayOfWeek dia, LocalTime inicio, LocalTime fin) {
+        static Key of(Horario horario) {
+            return new Key(horario.getDiaSemana(), horario.getHoraInicio(), horario.getHoraFin());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.proyectocitas.utils;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.example.proyectocitas.models.Horario;
+
+/**
+ * Cálculo de slots de un día a partir de los tramos horarios del médico.
+ *
+ * Trabaja con minutos del día (0-1439) en lugar de LocalTime. Cada tramo
+ * genera inicios en inicio, inicio + duración + intervalo, ... mientras la
+ * cita termine dentro del tramo. Con varios tramos en el mismo día se
+ * recorren por hora de inicio y se descartan los slots que se solaparían
+ * con uno ya generado por un tramo anterior.
+ */
+public final class SlotCalculator {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private SlotCalculator() {
+    }
+
+    /**
+     * Tramo horario en minutos del día
+     *
+     * @param start minuto de inicio del tramo
+     * @param end minuto de fin del tramo (exclusivo para el fin de las citas)
+     * @param duration duración de cada cita
+     * @param interval pausa tras cada cita
+     * @param horario horario del que procede el tramo
+     */
+    public record Block(int start, int end, int duration, int interval, Horario horario) {
+
+        public int step() {
+            return duration + interval;
+        }
+    }
+
+    @FunctionalInterface
+    public interface SlotConsumer {
+        void accept(int start, int end, Block block);
+    }
+
+    /**
+     * Convierte los horarios en tramos ordenados por hora de inicio,
+     * ignorando los que no tienen horas o duración válidas
+     */
+    public static List<Block> blocksOf(List<Horario> horarios) {
+        List<Block> blocks = new ArrayList<>(horarios.size());
+        for (Horario horario : horarios) {
+            Block block = blockOf(horario);
+            if (block != null) {
+                blocks.add(block);
+            }
+        }
+        if (blocks.size() > 1) {
+            blocks.sort(Comparator.comparingInt(Block::start));
+        }
+        return blocks;
+    }
+
+    /**
+     * Tramos de toda la semana indexados por DayOfWeek.ordinal() (0 = lunes)
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Block>[] weekOf(List<Horario> horarios) {
+        List<Horario>[] byDay = new List[DayOfWeek.values().length];
+        for (int i = 0; i < byDay.length; i++) {
+            byDay[i] = new ArrayList<>();
+        }
+        for (Horario horario : horarios) {
+            if (horario.getDiaSemana() != null) {
+                byDay[horario.getDiaSemana().ordinal()].add(horario);
+            }
+        }
+        List<Block>[] week = new List[byDay.length];
+        for (int i = 0; i < byDay.length; i++) {
+            week[i] = blocksOf(byDay[i]);
+        }
+        return week;
+    }
+
+    public static Block blockOf(Horario horario) {
+        if (horario.getHoraInicio() == null || horario.getHoraFin() == null
+                || horario.getDuracionCita() == null || horario.getDuracionCita() <= 0) {
+            return null;
+        }
+        Integer interval = horario.getIntervaloEntreCitas();
+        return new Block(toMinute(horario.getHoraInicio()), toMinute(horario.getHoraFin()),
+                horario.getDuracionCita(), interval != null ? Math.max(0, interval) : 0, horario);
+    }
+
+    /**
+     * Recorre los slots de un día en orden, empezando en notBefore o después
+     *
+     * @param blocks tramos del día ordenados por inicio (ver {@link #blocksOf})
+     */
+    public static void forEachSlot(List<Block> blocks, int notBefore, SlotConsumer consumer) {
+        int lastEnd = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            int step = block.step();
+            for (int start = block.start(); start + block.duration() <= block.end(); start += step) {
+                if (start < lastEnd) {
+                    continue;
+                }
+                int end = start + block.duration();
+                lastEnd = end;
+                if (start >= notBefore) {
+                    consumer.accept(start, end, block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tramo del que procede el slot que empieza en el minuto indicado, o null
+     * si ningún slot del día empieza a esa hora
+     */
+    public static Block findSlot(List<Block> blocks, int minute) {
+        Block[] found = new Block[1];
+        forEachSlot(blocks, minute, (start, end, block) -> {
+            if (start == minute && found[0] == null) {
+                found[0] = block;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * Primer minuto que se ofrece en una fecha: ninguno si ya pasó, el
+     * minuto actual si es hoy y cualquiera si es futura
+     */
+    public static int notBefore(LocalDate fecha, LocalDateTime now) {
+        LocalDate today = now.toLocalDate();
+        if (fecha.isBefore(today)) {
+            return MINUTES_PER_DAY;
+        }
+        return fecha.equals(today) ? toMinute(now.toLocalTime()) : 0;
+    }
+
+    public static int toMinute(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    public static LocalTime toTime(int minute) {
+        return LocalTime.of(minute / 60, minute % 60);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.proyectocitas.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtils {
+
+    /**
+     * Ejecuta la acción después del commit de la transacción actual, o de
+     * inmediato si no hay ninguna activa. Se usa para actualizar cachés en
+     * memoria sin publicar cambios que luego se revierten.
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Ejecuta la acción al terminar la transacción actual (commit o
+     * rollback), o de inmediato si no hay ninguna activa
+     */
+    public static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private TransactionUtils() {
+        // Clase de utilidad - constructor privado
+    }
+}
@@ -0,0 +1,103 @@
+-- Esquema base, equivalente al que generaba Hibernate con ddl-auto=update.
+-- En bases de datos existentes no se ejecuta: Flyway las marca con esta
+-- versión como línea base (spring.flyway.baseline-on-migrate).
+
+CREATE TABLE roles (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    username VARCHAR(255),
+    password VARCHAR(255),
+    name VARCHAR(255),
+    email VARCHAR(255),
+    enabled BIT NOT NULL,
+    role_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT fk_users_role FOREIGN KEY (role_id) REFERENCES roles (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE doctors (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT,
+    especialidad VARCHAR(255) NOT NULL,
+    cedula_profesional VARCHAR(255),
+    descripcion TEXT,
+    costo_consulta DECIMAL(10,2) DEFAULT 0.00 NOT NULL,
+    calificacion DECIMAL(3,2) DEFAULT 0.00,
+    activo TINYINT(1) DEFAULT 1 NOT NULL,
+    status VARCHAR(255),
+    location VARCHAR(255),
+    appointment_duration INTEGER,
+    presentation VARCHAR(255),
+    photo_url VARCHAR(255),
+    profile_configured BIT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_doctors_user UNIQUE (user_id),
+    CONSTRAINT uk_doctors_cedula UNIQUE (cedula_profesional),
+    CONSTRAINT fk_doctors_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE paciente (
+    id_paciente BIGINT NOT NULL AUTO_INCREMENT,
+    nombre VARCHAR(255) NOT NULL,
+    user_id BIGINT,
+    medical_history VARCHAR(255),
+    allergies VARCHAR(255),
+    contact_information VARCHAR(255),
+    PRIMARY KEY (id_paciente),
+    CONSTRAINT uk_paciente_user UNIQUE (user_id),
+    CONSTRAINT fk_paciente_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE horario (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    doctor_id BIGINT NOT NULL,
+    dia_semana ENUM('MONDAY','TUESDAY','WEDNESDAY','THURSDAY','FRIDAY','SATURDAY','SUNDAY') NOT NULL,
+    hora_inicio TIME(6) NOT NULL,
+    hora_fin TIME(6) NOT NULL,
+    duracion_cita INTEGER NOT NULL,
+    intervalo_entre_citas INTEGER,
+    activo BIT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_horario_doctor FOREIGN KEY (doctor_id) REFERENCES doctors (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE cita (
+    id_cita BIGINT NOT NULL AUTO_INCREMENT,
+    id_paciente BIGINT,
+    id_medico BIGINT NOT NULL,
+    id_horario BIGINT,
+    fecha DATE NOT NULL,
+    hora_inicio TIME(6) NOT NULL,
+    hora_fin TIME(6) NOT NULL,
+    estado VARCHAR(20) DEFAULT 'DISPONIBLE' NOT NULL,
+    motivo_consulta VARCHAR(255),
+    motivo_cancelacion VARCHAR(255),
+    notas VARCHAR(255),
+    fecha_creacion DATETIME(6),
+    fecha_actualizacion DATETIME(6),
+    version BIGINT DEFAULT 0 NOT NULL,
+    -- 1 mientras la cita ocupa su hora; NULL si está cancelada, para que la
+    -- clave única no impida volver a reservar esa hora
+    slot_activo TINYINT GENERATED ALWAYS AS (IF(estado = 'CANCELADA', NULL, 1)) VIRTUAL,
+    PRIMARY KEY (id_cita),
+    CONSTRAINT uk_cita_slot_activo UNIQUE (id_medico, fecha, hora_inicio, slot_activo),
+    CONSTRAINT fk_cita_paciente FOREIGN KEY (id_paciente) REFERENCES paciente (id_paciente),
+    CONSTRAINT fk_cita_medico FOREIGN KEY (id_medico) REFERENCES doctors (id),
+    CONSTRAINT fk_cita_horario FOREIGN KEY (id_horario) REFERENCES horario (id)
+) ENGINE=InnoDB;
+
+CREATE TABLE schedules (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    day VARCHAR(255),
+    start_time VARCHAR(255),
+    end_time VARCHAR(255),
+    doctor_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_schedules_doctor FOREIGN KEY (doctor_id) REFERENCES doctors (id)
+) ENGINE=InnoDB;
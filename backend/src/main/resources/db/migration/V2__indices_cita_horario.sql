@@ -0,0 +1,94 @@
+-- Índices compuestos para las consultas frecuentes sobre cita y horario.
+-- Las bases de datos creadas con ddl-auto=update pueden tener ya alguno
+-- (p. ej. uk_cita_medico_fecha_hora), así que cada índice se crea solo si
+-- no existe. Antes de la clave única se resuelven las citas activas
+-- duplicadas para el mismo médico, fecha y hora.
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND index_name = 'idx_cita_medico_fecha_estado_hora') = 0,
+    'CREATE INDEX idx_cita_medico_fecha_estado_hora ON cita (id_medico, fecha, estado, hora_inicio)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND index_name = 'idx_cita_paciente_fecha') = 0,
+    'CREATE INDEX idx_cita_paciente_fecha ON cita (id_paciente, fecha)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND index_name = 'idx_cita_estado_fecha') = 0,
+    'CREATE INDEX idx_cita_estado_fecha ON cita (estado, fecha)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Un médico no puede tener dos citas activas a la misma hora. Las canceladas
+-- no cuentan (slot_activo es NULL y MySQL admite varios NULL en un índice
+-- único), así que una hora cancelada se puede volver a reservar. La clave
+-- antigua sobre (id_medico, fecha, hora_inicio) lo impedía y se elimina;
+-- idx_cita_medico_fecha_estado_hora sigue sirviendo a fk_cita_medico.
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND index_name = 'uk_cita_medico_fecha_hora') > 0,
+    'ALTER TABLE cita DROP INDEX uk_cita_medico_fecha_hora',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.columns
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND column_name = 'slot_activo') = 0,
+    'ALTER TABLE cita ADD COLUMN slot_activo TINYINT GENERATED ALWAYS AS (IF(estado = ''CANCELADA'', NULL, 1)) VIRTUAL',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Citas activas duplicadas (mismo médico, fecha y hora), que sin clave única
+-- pudieron crearse con ddl-auto=update. Primero se eliminan los slots
+-- DISPONIBLE sin paciente que repiten una cita reservada o un slot libre
+-- anterior; después, de las reservas que siguen repetidas se conserva la de
+-- menor id y las demás se marcan como canceladas, sin borrar datos de
+-- pacientes. En una base de datos sin duplicados no modifica nada.
+DELETE d FROM cita d
+JOIN cita o ON o.id_medico = d.id_medico AND o.fecha = d.fecha AND o.hora_inicio = d.hora_inicio
+    AND o.id_cita <> d.id_cita AND o.estado <> 'CANCELADA'
+WHERE d.estado = 'DISPONIBLE' AND d.id_paciente IS NULL
+  AND (o.estado <> 'DISPONIBLE' OR o.id_paciente IS NOT NULL OR o.id_cita < d.id_cita);
+
+UPDATE cita c
+JOIN (SELECT id_medico, fecha, hora_inicio, MIN(id_cita) AS id_conservado
+      FROM cita
+      WHERE estado <> 'CANCELADA'
+      GROUP BY id_medico, fecha, hora_inicio
+      HAVING COUNT(*) > 1) d ON d.id_medico = c.id_medico AND d.fecha = c.fecha AND d.hora_inicio = c.hora_inicio
+SET c.estado = 'CANCELADA', c.motivo_cancelacion = 'Duplicada (migración V2)'
+WHERE c.estado <> 'CANCELADA' AND c.id_cita <> d.id_conservado;
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND index_name = 'uk_cita_slot_activo') = 0,
+    'CREATE UNIQUE INDEX uk_cita_slot_activo ON cita (id_medico, fecha, hora_inicio, slot_activo)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'horario' AND index_name = 'idx_horario_doctor_dia_activo') = 0,
+    'CREATE INDEX idx_horario_doctor_dia_activo ON horario (doctor_id, dia_semana, activo)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
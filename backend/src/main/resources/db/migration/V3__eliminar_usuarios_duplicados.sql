@@ -0,0 +1,55 @@
+-- Limpieza única de usuarios duplicados (sustituye a la que hacía
+-- DatabaseCleanupService en cada arranque y a cleanup_duplicate_users.sql).
+-- Por cada username se conserva el usuario de menor id; los demás se borran
+-- junto con sus perfiles de médico/paciente, horarios y citas, en el mismo
+-- orden en que los borraba la cascada JPA. En una base de datos sin
+-- duplicados no modifica nada.
+
+CREATE TEMPORARY TABLE tmp_usuarios_duplicados (id BIGINT NOT NULL PRIMARY KEY) ENGINE=InnoDB;
+
+INSERT INTO tmp_usuarios_duplicados (id)
+SELECT u.id
+FROM users u
+JOIN (SELECT username, MIN(id) AS id_conservado
+      FROM users
+      GROUP BY username
+      HAVING COUNT(*) > 1) d ON d.username = u.username
+WHERE u.id <> d.id_conservado;
+
+DELETE c FROM cita c
+JOIN doctors m ON m.id = c.id_medico
+JOIN tmp_usuarios_duplicados t ON t.id = m.user_id;
+
+DELETE c FROM cita c
+JOIN paciente p ON p.id_paciente = c.id_paciente
+JOIN tmp_usuarios_duplicados t ON t.id = p.user_id;
+
+DELETE h FROM horario h
+JOIN doctors m ON m.id = h.doctor_id
+JOIN tmp_usuarios_duplicados t ON t.id = m.user_id;
+
+DELETE s FROM schedules s
+JOIN doctors m ON m.id = s.doctor_id
+JOIN tmp_usuarios_duplicados t ON t.id = m.user_id;
+
+DELETE m FROM doctors m
+JOIN tmp_usuarios_duplicados t ON t.id = m.user_id;
+
+DELETE p FROM paciente p
+JOIN tmp_usuarios_duplicados t ON t.id = p.user_id;
+
+DELETE u FROM users u
+JOIN tmp_usuarios_duplicados t ON t.id = u.id;
+
+DROP TEMPORARY TABLE tmp_usuarios_duplicados;
+
+-- Sin duplicados ya se puede garantizar la unicidad en la base de datos
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.statistics
+     WHERE table_schema = DATABASE() AND table_name = 'users'
+       AND column_name = 'username' AND non_unique = 0 AND seq_in_index = 1) = 0,
+    'ALTER TABLE users ADD CONSTRAINT uk_users_username UNIQUE (username)',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,23 @@
+-- Cola (outbox) de órdenes de regeneración de slots. La fila se escribe en la
+-- misma transacción que el cambio de horario y la procesan después los
+-- workers de SlotOutboxService, que agrupan las órdenes de un mismo médico.
+--   dias: días de la semana separados por comas (NULL = todos)
+--   horarios_retirados: ids de horario cuyos slots libres hay que retirar
+--   estado: PENDIENTE, PROCESANDO o FALLIDO (las procesadas se eliminan)
+CREATE TABLE cola_generacion_slots (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    id_medico BIGINT NOT NULL,
+    semanas INTEGER NOT NULL,
+    dias VARCHAR(80),
+    horarios_retirados TEXT,
+    estado VARCHAR(20) NOT NULL,
+    intentos INTEGER NOT NULL DEFAULT 0,
+    lote VARCHAR(36),
+    disponible_desde DATETIME(6) NOT NULL,
+    reclamado_en DATETIME(6),
+    fecha_creacion DATETIME(6) NOT NULL,
+    ultimo_error VARCHAR(500),
+    PRIMARY KEY (id),
+    INDEX idx_cola_slots_estado_disponible (estado, disponible_desde, id),
+    INDEX idx_cola_slots_lote (lote)
+) ENGINE=InnoDB;
@@ -0,0 +1,27 @@
+-- Histórico de citas cerradas. AppointmentArchiveService mueve aquí por lotes
+-- las citas COMPLETADA, CANCELADA y NO_ASISTIO anteriores a
+-- app.appointments.archive.retention-days, de modo que la tabla cita solo
+-- contenga el conjunto de trabajo actual (los slots DISPONIBLE vencidos los
+-- elimina SlotMaintenanceService). Se conserva el id_cita original. Sin
+-- claves foráneas para no bloquear los borrados de médicos, pacientes u
+-- horarios; la clave única (médico, fecha, hora) tampoco aplica al histórico.
+CREATE TABLE cita_historial (
+    id_cita BIGINT NOT NULL,
+    id_paciente BIGINT,
+    id_medico BIGINT NOT NULL,
+    id_horario BIGINT,
+    fecha DATE NOT NULL,
+    hora_inicio TIME(6) NOT NULL,
+    hora_fin TIME(6) NOT NULL,
+    estado VARCHAR(20) NOT NULL,
+    motivo_consulta VARCHAR(255),
+    motivo_cancelacion VARCHAR(255),
+    notas VARCHAR(255),
+    fecha_creacion DATETIME(6),
+    fecha_actualizacion DATETIME(6),
+    version BIGINT NOT NULL,
+    archivado_en DATETIME(6) NOT NULL,
+    PRIMARY KEY (id_cita),
+    INDEX idx_cita_historial_paciente_fecha (id_paciente, fecha),
+    INDEX idx_cita_historial_medico_fecha (id_medico, fecha)
+) ENGINE=InnoDB;
@@ -0,0 +1,5 @@
+-- Versión de los tokens con roles embebidos (app.security.jwt.stateless).
+-- Aumenta cuando cambia el rol o el estado de la cuenta; los tokens emitidos
+-- con una versión anterior dejan de aceptarse, también tras un reinicio y en
+-- cualquier instancia.
+ALTER TABLE users ADD COLUMN token_version BIGINT DEFAULT 0 NOT NULL;
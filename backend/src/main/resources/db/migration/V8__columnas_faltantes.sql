@@ -0,0 +1,29 @@
+-- Columnas que V1 declara pero que pueden faltar en las bases de datos
+-- creadas con ddl-auto=update: en ellas Flyway crea la línea base en la
+-- versión 1 (spring.flyway.baseline-version) y V1 no se ejecuta. Sin esta
+-- migración la validación del esquema falla al arrancar. En una base de
+-- datos creada por V1 no modifica nada.
+
+-- cita.version: control optimista de concurrencia de Appointment
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.columns
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND column_name = 'version') = 0,
+    'ALTER TABLE cita ADD COLUMN version BIGINT DEFAULT 0 NOT NULL',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Si la creó ddl-auto=update puede admitir NULL, y Hibernate no incrementa
+-- una versión nula
+UPDATE cita SET version = 0 WHERE version IS NULL;
+
+SET @ddl := IF(
+    (SELECT COUNT(*) FROM information_schema.columns
+     WHERE table_schema = DATABASE() AND table_name = 'cita' AND column_name = 'version'
+       AND (is_nullable = 'YES' OR column_default IS NULL)) > 0,
+    'ALTER TABLE cita MODIFY COLUMN version BIGINT DEFAULT 0 NOT NULL',
+    'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
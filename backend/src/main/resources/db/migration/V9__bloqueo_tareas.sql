@@ -0,0 +1,13 @@
+-- Bloqueos de las tareas programadas entre instancias de la aplicación.
+-- TaskLockService reclama la fila de una tarea con un UPDATE condicionado a
+-- que bloqueado_hasta haya pasado, así que solo una instancia ejecuta cada
+-- pasada; si la que la tiene se detiene, el bloqueo caduca solo.
+--   bloqueado_hasta: fin del bloqueo según el reloj de MySQL
+--   bloqueado_por: instancia que lo tiene (pid@host)
+CREATE TABLE bloqueo_tarea (
+    nombre VARCHAR(64) NOT NULL,
+    bloqueado_hasta DATETIME(6) NOT NULL,
+    bloqueado_en DATETIME(6) NOT NULL,
+    bloqueado_por VARCHAR(255) NOT NULL,
+    PRIMARY KEY (nombre)
+) ENGINE=InnoDB;
@@ -0,0 +1,38 @@
+package com.example.proyectocitas;
+
+import java.util.UUID;
+
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base de los tests que necesitan un MySQL real. El contenedor se arranca
+ * una sola vez y lo comparten todas las clases (y sus contextos de Spring
+ * cacheados); las migraciones Flyway crean el esquema. Sin Docker los tests
+ * se omiten.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlContainerTest {
+
+    @ServiceConnection
+    protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    static {
+        MYSQL.start();
+    }
+
+    /**
+     * Base de datos vacía en el contenedor compartido, para los tests que
+     * migran el esquema desde cero
+     */
+    protected static DriverManagerDataSource newDatabase() {
+        String database = "migracion_" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        DriverManagerDataSource root = new DriverManagerDataSource(MYSQL.getJdbcUrl(), "root", MYSQL.getPassword());
+        new JdbcTemplate(root).execute("CREATE DATABASE " + database);
+        String url = MYSQL.getJdbcUrl().replace("/" + MYSQL.getDatabaseName(), "/" + database);
+        return new DriverManagerDataSource(url, "root", MYSQL.getPassword());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.proyectocitas;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+/**
+ * Inserta con JDBC los datos mínimos de los tests (roles, usuarios, médicos,
+ * pacientes, horarios y citas) sin pasar por los servicios
+ */
+public class TestData {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TestData(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long role(String name) {
+        return insert("INSERT INTO roles (name) VALUES (?)", name);
+    }
+
+    public long user(String username, long roleId) {
+        return insert("INSERT INTO users (username, password, name, email, enabled, role_id) VALUES (?, ?, ?, ?, 1, ?)",
+                username, "{noop}secret", "Nombre " + username, username + "@example.com", roleId);
+    }
+
+    public long doctor(String username, long roleId) {
+        long userId = user(username, roleId);
+        return insert("INSERT INTO doctors (user_id, especialidad, costo_consulta, activo, status, location) "
+                + "VALUES (?, ?, 0, 1, ?, ?)", userId, "Cardiología", "APPROVED", "Madrid");
+    }
+
+    public long patient(String username, long roleId) {
+        long userId = user(username, roleId);
+        return insert("INSERT INTO paciente (nombre, user_id) VALUES (?, ?)", "Nombre " + username, userId);
+    }
+
+    public long horario(long doctorId, String diaSemana, LocalTime inicio, LocalTime fin, int duracion) {
+        return insert("INSERT INTO horario (doctor_id, dia_semana, hora_inicio, hora_fin, duracion_cita, "
+                + "intervalo_entre_citas, activo) VALUES (?, ?, ?, ?, ?, 0, 1)",
+                doctorId, diaSemana, inicio, fin, duracion);
+    }
+
+    public long cita(long doctorId, Long patientId, Long horarioId, LocalDate fecha, LocalTime inicio,
+            int duracion, String estado) {
+        return insert("INSERT INTO cita (id_paciente, id_medico, id_horario, fecha, hora_inicio, hora_fin, estado, "
+                + "fecha_creacion, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)",
+                patientId, doctorId, horarioId, fecha, inicio, inicio.plusMinutes(duracion), estado,
+                LocalDateTime.now());
+    }
+
+    private long insert(String sql, Object... args) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, keys);
+        return keys.getKey().longValue();
+    }
+}
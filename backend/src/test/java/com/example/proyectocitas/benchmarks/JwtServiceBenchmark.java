@@ -0,0 +1,87 @@
+package com.example.proyectocitas.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.proyectocitas.models.Role;
+import com.example.proyectocitas.models.User;
+import com.example.proyectocitas.security.JwtService;
+import com.example.proyectocitas.security.ParsedToken;
+import com.example.proyectocitas.security.TokenRevocationRegistry;
+
+/**
+ * Throughput de JwtService: generar un token, verificarlo (firma y
+ * expiración) y el camino completo del filtro (verificar, validar contra el
+ * usuario y, en modo stateless, construir el principal desde los claims).
+ *
+ * El registro de revocación se siembra con el estado del usuario y una
+ * caducidad larga, así que no consulta la base de datos. Se ejecuta con el
+ * método main desde el IDE, o con {@code mvn test-compile} y
+ * {@code java -cp target/test-classes:<classpath de test> org.openjdk.jmh.Main JwtServiceBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    @Param({"false", "true"})
+    boolean stateless;
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        TokenRevocationRegistry registry = new TokenRevocationRegistry(null, 3600);
+        registry.userChanged("paciente", 3L, true);
+        jwtService = new JwtService(stateless, registry);
+
+        Role role = Role.builder().id(2L).name("PACIENTE").build();
+        user = new User();
+        user.setId(1L);
+        user.setUsername("paciente");
+        user.setPassword("");
+        user.setRole(role);
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public ParsedToken parse() {
+        return jwtService.parse(token);
+    }
+
+    @Benchmark
+    public void parseAndValidate(Blackhole blackhole) {
+        ParsedToken parsed = jwtService.parse(token);
+        blackhole.consume(jwtService.isTokenValid(parsed, user));
+        blackhole.consume(jwtService.statelessPrincipal(parsed));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.proyectocitas.benchmarks;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.proyectocitas.models.Horario;
+import com.example.proyectocitas.utils.SlotCalculator;
+
+/**
+ * Coste de calcular la disponibilidad de varias semanas para un conjunto de
+ * médicos con dos tramos por día: con SlotCalculator (minutos del día y
+ * plantilla semanal precalculada) frente a recorrer los horarios con
+ * LocalTime en cada día, como hacía la generación anterior.
+ *
+ * Se ejecuta con el método main desde el IDE, o con
+ * {@code mvn test-compile} y {@code java -cp target/test-classes:<classpath de test> org.openjdk.jmh.Main SlotCalculatorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotCalculatorBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int doctors;
+
+    @Param({"4"})
+    int weeks;
+
+    private List<List<Horario>> horarios;
+    private List<List<SlotCalculator.Block>[]> templates;
+    private LocalDate start;
+
+    @Setup
+    public void setUp() {
+        horarios = new ArrayList<>(doctors);
+        templates = new ArrayList<>(doctors);
+        for (int d = 0; d < doctors; d++) {
+            List<Horario> week = new ArrayList<>();
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day == DayOfWeek.SUNDAY) {
+                    continue;
+                }
+                int duration = 15 + 5 * (d % 4);
+                week.add(horario(day, LocalTime.of(8, 0), LocalTime.of(13, 0), duration, 5));
+                week.add(horario(day, LocalTime.of(15, 0), LocalTime.of(19, 0), duration, 5));
+            }
+            horarios.add(week);
+            templates.add(SlotCalculator.weekOf(week));
+        }
+        start = LocalDate.of(2026, 1, 5);
+    }
+
+    @Benchmark
+    public void slotCalculator(Blackhole blackhole) {
+        int[] count = new int[1];
+        for (List<SlotCalculator.Block>[] week : templates) {
+            for (int i = 0; i < weeks * 7; i++) {
+                List<SlotCalculator.Block> blocks = week[start.plusDays(i).getDayOfWeek().ordinal()];
+                SlotCalculator.forEachSlot(blocks, 0, (slotStart, slotEnd, block) -> count[0] += slotStart);
+            }
+        }
+        blackhole.consume(count[0]);
+    }
+
+    @Benchmark
+    public void localTimePorDia(Blackhole blackhole) {
+        int count = 0;
+        for (List<Horario> week : horarios) {
+            for (int i = 0; i < weeks * 7; i++) {
+                DayOfWeek day = start.plusDays(i).getDayOfWeek();
+                for (Horario horario : week) {
+                    if (horario.getDiaSemana() != day) {
+                        continue;
+                    }
+                    LocalTime time = horario.getHoraInicio();
+                    while (!time.plusMinutes(horario.getDuracionCita()).isAfter(horario.getHoraFin())) {
+                        count += time.toSecondOfDay();
+                        time = time.plusMinutes(horario.getDuracionCita() + horario.getIntervaloEntreCitas());
+                    }
+                }
+            }
+        }
+        blackhole.consume(count);
+    }
+
+    @Benchmark
+    public void findSlot(Blackhole blackhole) {
+        for (List<SlotCalculator.Block>[] week : templates) {
+            List<SlotCalculator.Block> blocks = week[DayOfWeek.WEDNESDAY.ordinal()];
+            blackhole.consume(SlotCalculator.findSlot(blocks, 17 * 60));
+        }
+    }
+
+    @Benchmark
+    public void weekOf(Blackhole blackhole) {
+        for (List<Horario> week : horarios) {
+            blackhole.consume(SlotCalculator.weekOf(week));
+        }
+    }
+
+    private static Horario horario(DayOfWeek day, LocalTime inicio, LocalTime fin, int duracion, int intervalo) {
+        return Horario.builder()
+                .diaSemana(day)
+                .horaInicio(inicio)
+                .horaFin(fin)
+                .duracionCita(duracion)
+                .intervaloEntreCitas(intervalo)
+                .activo(true)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SlotCalculatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
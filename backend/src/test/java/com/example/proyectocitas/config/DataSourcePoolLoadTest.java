@@ -0,0 +1,171 @@
+package com.example.proyectocitas.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.TestData;
+import com.example.proyectocitas.repositories.AppointmentRepository;
+import com.example.proyectocitas.services.AppointmentService;
+
+/**
+ * Carga con la configuración del perfil prod (pool dimensionado por núcleos,
+ * timeout de 3 s, caché de sentencias y lotes reescritos): muchas más tareas
+ * concurrentes que conexiones, mezclando listados, regeneración de slots con
+ * inserción por lotes y reservas dinámicas. El pool no debe crecer por
+ * encima de su máximo ni agotar el tiempo de espera, y las métricas deben
+ * reflejar todas las obtenciones.
+ */
+@SpringBootTest
+@ActiveProfiles("prod")
+class DataSourcePoolLoadTest extends MySqlContainerTest {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourcePoolLoadTest.class);
+
+    private static final String POOL = "citas-pool";
+    private static final int READERS = 24;
+    private static final int QUERIES_PER_READER = 50;
+    private static final int GENERATORS = 4;
+    private static final int GENERATION_WEEKS = 4;
+    private static final int BOOKERS = 8;
+    private static final int BOOKINGS_PER_BOOKER = 6;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private HikariPoolMetrics hikariPoolMetrics;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void elPoolDeProdAtiendeLaCargaSinTimeoutsNiCrecerPorEncimaDelMaximo() throws Exception {
+        TestData data = new TestData(jdbcTemplate);
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        long roleId = data.role("test-" + prefix);
+        String patientUsername = "paciente-" + prefix;
+        long patientId = data.patient(patientUsername, roleId);
+
+        // Médico con citas para los listados
+        long readDoctorId = data.doctor("medico-" + prefix, roleId);
+        long horarioId = data.horario(readDoctorId, "MONDAY", LocalTime.of(8, 0), LocalTime.of(20, 0), 30);
+        LocalDate fecha = LocalDate.now().plusDays(1);
+        for (int i = 0; i < 20; i++) {
+            data.cita(readDoctorId, patientId, horarioId, fecha, LocalTime.of(8, 0).plusMinutes(30L * i), 30,
+                    "AGENDADA");
+        }
+        // Médicos sin slots, con tramos todos los días, para regenerar
+        List<Long> generatorDoctorIds = new ArrayList<>();
+        for (int g = 0; g < GENERATORS; g++) {
+            long doctorId = data.doctor("medico-" + prefix + "-slots-" + g, roleId);
+            for (DayOfWeek day : DayOfWeek.values()) {
+                data.horario(doctorId, day.name(), LocalTime.of(8, 0), LocalTime.of(14, 0), 30);
+            }
+            generatorDoctorIds.add(doctorId);
+        }
+        // Médico para las reservas: cada tarea reserva en su propio día
+        long bookingDoctorId = data.doctor("medico-" + prefix + "-reservas", roleId);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            data.horario(bookingDoctorId, day.name(), LocalTime.of(8, 0), LocalTime.of(20, 0), 30);
+        }
+        long acquiredBefore = (Long) pool().get("obtenciones");
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            tasks.add(() -> {
+                int rows = 0;
+                for (int i = 0; i < QUERIES_PER_READER; i++) {
+                    rows += appointmentRepository.findDTOsByMedicoId(readDoctorId).size();
+                }
+                return rows;
+            });
+        }
+        for (long doctorId : generatorDoctorIds) {
+            tasks.add(() -> appointmentService.regenerateSlotsForDays(doctorId, GENERATION_WEEKS,
+                    EnumSet.allOf(DayOfWeek.class), List.of()).getSlotsInserted());
+        }
+        for (int b = 0; b < BOOKERS; b++) {
+            LocalDate bookingDate = fecha.plusDays(b);
+            tasks.add(() -> {
+                for (int i = 0; i < BOOKINGS_PER_BOOKER; i++) {
+                    appointmentService.createAppointmentDynamically(patientUsername, bookingDoctorId, bookingDate,
+                            LocalTime.of(8, 0).plusMinutes(30L * i), "carga");
+                }
+                return BOOKINGS_PER_BOOKER;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Integer> counts = new ArrayList<>();
+        long startNanos;
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (Callable<Integer> task : tasks) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<Integer> result : results) {
+                counts.add(result.get(120, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+
+        Map<String, Object> pool = pool();
+        log.info("Carga del pool (perfil prod): {} consultas, {} regeneraciones y {} reservas en {} ms, métricas {}",
+                READERS * QUERIES_PER_READER, GENERATORS, BOOKERS * BOOKINGS_PER_BOOKER, elapsedMillis, pool);
+
+        assertThat(counts.subList(0, READERS)).containsOnly(QUERIES_PER_READER * 20);
+        for (int g = 0; g < GENERATORS; g++) {
+            assertThat(counts.get(READERS + g))
+                    .isPositive()
+                    .isEqualTo(jdbcTemplate.queryForObject(
+                            "SELECT COUNT(*) FROM cita WHERE id_medico = ? AND estado = 'DISPONIBLE'", Integer.class,
+                            generatorDoctorIds.get(g)));
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cita WHERE id_medico = ? AND estado = 'AGENDADA'",
+                Integer.class, bookingDoctorId)).isEqualTo(BOOKERS * BOOKINGS_PER_BOOKER);
+
+        assertThat(pool).containsEntry("timeouts", 0L);
+        assertThat((Integer) pool.get("total")).isLessThanOrEqualTo((Integer) pool.get("maximo"));
+        assertThat((Long) pool.get("obtenciones") - acquiredBefore)
+                .isGreaterThanOrEqualTo((long) READERS * QUERIES_PER_READER + GENERATORS + BOOKERS * BOOKINGS_PER_BOOKER);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> pool() {
+        return (Map<String, Object>) hikariPoolMetrics.snapshot().get(POOL);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.proyectocitas.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+class HikariPoolMetricsTest {
+
+    @Test
+    void cadaPoolTieneSusPropiasMetricas() {
+        HikariPoolMetrics metrics = new HikariPoolMetrics();
+        IMetricsTracker principal = metrics.create("principal", stats(3, 10));
+        IMetricsTracker lectura = metrics.create("lectura", stats(1, 4));
+
+        principal.recordConnectionAcquiredNanos(2_000_000);
+        principal.recordConnectionAcquiredNanos(4_000_000);
+        lectura.recordConnectionTimeout();
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        assertThat(snapshot).containsOnlyKeys("lectura", "principal");
+        assertThat(pool(snapshot, "principal"))
+                .containsEntry("activas", 3)
+                .containsEntry("maximo", 10)
+                .containsEntry("obtenciones", 2L)
+                .containsEntry("obtencionMediaMs", 3.0)
+                .containsEntry("timeouts", 0L);
+        assertThat(pool(snapshot, "lectura"))
+                .containsEntry("activas", 1)
+                .containsEntry("obtenciones", 0L)
+                .containsEntry("timeouts", 1L);
+    }
+
+    @Test
+    void unSegundoPoolConElMismoNombreFalla() {
+        HikariPoolMetrics metrics = new HikariPoolMetrics();
+        metrics.create("principal", stats(0, 10));
+
+        assertThatThrownBy(() -> metrics.create("principal", stats(0, 5)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("principal");
+        assertThat(pool(metrics.snapshot(), "principal")).containsEntry("maximo", 10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> pool(Map<String, Object> snapshot, String name) {
+        return (Map<String, Object>) snapshot.get(name);
+    }
+
+    private static PoolStats stats(int active, int max) {
+        return new PoolStats(0) {
+            @Override
+            protected void update() {
+                this.activeConnections = active;
+                this.maxConnections = max;
+            }
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.proyectocitas.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.ProyectoCitasApplication;
+import com.example.proyectocitas.TestData;
+
+/**
+ * Comparación de los dos modos de ejecución con 2000 peticiones concurrentes
+ * de disponibilidad pública: la aplicación arranca con hilos de plataforma
+ * (pool de Tomcat por defecto) y después con el perfil "virtual", sobre el
+ * mismo MySQL. Ambos modos deben atender todas las peticiones; los tiempos se
+ * registran en el log. Necesita JDK 21 y Docker.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadsLoadTest extends MySqlContainerTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsLoadTest.class);
+
+    private static final int CONCURRENT_REQUESTS = 2000;
+    private static final int DOCTORS = 20;
+
+    private static final List<Long> doctorIds = new ArrayList<>();
+
+    @BeforeAll
+    static void seed() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(),
+                MYSQL.getPassword());
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+
+        TestData data = new TestData(new JdbcTemplate(dataSource));
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        long roleId = data.role("test-" + prefix);
+        for (int d = 0; d < DOCTORS; d++) {
+            long doctorId = data.doctor("medico-" + prefix + "-" + d, roleId);
+            for (DayOfWeek day : DayOfWeek.values()) {
+                data.horario(doctorId, day.name(), LocalTime.of(8, 0), LocalTime.of(14, 0), 30);
+                data.horario(doctorId, day.name(), LocalTime.of(16, 0), LocalTime.of(20, 0), 30);
+            }
+            doctorIds.add(doctorId);
+        }
+    }
+
+    @Test
+    void hilosDePlataformaYVirtualesAtiendenLas2000PeticionesConcurrentes() throws Exception {
+        LoadResult platform = run("plataforma");
+        LoadResult virtual = run("virtual", "virtual");
+
+        log.info("Disponibilidad con {} peticiones concurrentes: {} | {}", CONCURRENT_REQUESTS, platform, virtual);
+        assertThat(platform.ok()).isEqualTo(CONCURRENT_REQUESTS);
+        assertThat(virtual.ok()).isEqualTo(CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * Arranca la aplicación con los perfiles indicados, calienta la ruta y
+     * lanza todas las peticiones a la vez
+     */
+    private LoadResult run(String mode, String... profiles) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ProyectoCitasApplication.class)
+                .profiles(profiles)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + MYSQL.getJdbcUrl(),
+                        "spring.datasource.username=" + MYSQL.getUsername(),
+                        "spring.datasource.password=" + MYSQL.getPassword(),
+                        "spring.datasource.hikari.pool-name=" + mode,
+                        "app.slots.maintenance.enabled=false",
+                        "app.appointments.archive.enabled=false")
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            for (long doctorId : doctorIds) {
+                assertThat(client.send(request(port, doctorId), HttpResponse.BodyHandlers.discarding()).statusCode())
+                        .isEqualTo(200);
+            }
+
+            long[] latencies = new long[CONCURRENT_REQUESTS];
+            List<CompletableFuture<Integer>> responses = new ArrayList<>(CONCURRENT_REQUESTS);
+            long startNanos = System.nanoTime();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                int index = i;
+                long sentNanos = System.nanoTime();
+                responses.add(client.sendAsync(request(port, doctorIds.get(i % DOCTORS)),
+                                HttpResponse.BodyHandlers.discarding())
+                        .thenApply(response -> {
+                            latencies[index] = System.nanoTime() - sentNanos;
+                            return response.statusCode();
+                        })
+                        .exceptionally(e -> -1));
+            }
+            CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(5, TimeUnit.MINUTES);
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+
+            int ok = (int) responses.stream().map(CompletableFuture::join).filter(status -> status == 200).count();
+            Arrays.sort(latencies);
+            return new LoadResult(mode, ok, elapsedMillis, CONCURRENT_REQUESTS * 1000L / elapsedMillis,
+                    latencies[CONCURRENT_REQUESTS / 2] / 1_000_000,
+                    latencies[CONCURRENT_REQUESTS * 99 / 100] / 1_000_000);
+        }
+    }
+
+    private static HttpRequest request(int port, long doctorId) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/public/doctors/" + doctorId
+                        + "/availability"))
+                .timeout(Duration.ofSeconds(120))
+                .GET()
+                .build();
+    }
+
+    private record LoadResult(String mode, int ok, long elapsedMillis, long requestsPerSecond, long p50Millis,
+            long p99Millis) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.proyectocitas.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.TestData;
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.listeners.UserCacheInvalidationListener;
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.security.TokenRevocationRegistry;
+import com.example.proyectocitas.security.UserDetailsCache;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Los listados de citas como DTO deben resolverse con una sola sentencia,
+ * sin cargas perezosas de médico, paciente u horario por cada fila
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({UserDetailsCache.class, TokenRevocationRegistry.class, UserCacheInvalidationListener.class})
+class AppointmentRepositoryStatementCountTest extends MySqlContainerTest {
+
+    private static final int CITAS = 25;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private long doctorId;
+    private long patientId;
+
+    @BeforeEach
+    void insertAppointments() {
+        TestData data = new TestData(new JdbcTemplate(dataSource));
+        long roleId = data.role("test");
+        doctorId = data.doctor("medico-dto", roleId);
+        patientId = data.patient("paciente-dto", roleId);
+        long horarioId = data.horario(doctorId, "MONDAY", LocalTime.of(8, 0), LocalTime.of(20, 0), 30);
+
+        LocalDate fecha = LocalDate.now().plusDays(1);
+        for (int i = 0; i < CITAS; i++) {
+            data.cita(doctorId, patientId, horarioId, fecha, LocalTime.of(8, 0).plusMinutes(30L * i), 30,
+                    "PENDIENTE");
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void citasDeUnMedicoEnUnaSolaSentencia() {
+        List<AppointmentDTO> dtos = countingStatements(() -> appointmentRepository.findDTOsByMedicoId(doctorId));
+
+        assertThat(dtos).hasSize(CITAS).allSatisfy(dto -> {
+            assertThat(dto.getDoctorName()).isEqualTo("Nombre medico-dto");
+            assertThat(dto.getPatientName()).isEqualTo("Nombre paciente-dto");
+            assertThat(dto.getHorarioId()).isNotNull();
+        });
+    }
+
+    @Test
+    void citasDeUnPacienteEnUnaSolaSentencia() {
+        List<AppointmentDTO> dtos = countingStatements(() -> appointmentRepository.findDTOsByPacienteId(patientId));
+
+        assertThat(dtos).hasSize(CITAS);
+    }
+
+    @Test
+    void citasPorEstadoEnUnaSolaSentencia() {
+        List<AppointmentDTO> dtos = countingStatements(
+                () -> appointmentRepository.findDTOsByEstado(Appointment.Status.PENDIENTE));
+
+        assertThat(dtos).hasSizeGreaterThanOrEqualTo(CITAS);
+    }
+
+    private List<AppointmentDTO> countingStatements(Supplier<List<AppointmentDTO>> query) {
+        Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<AppointmentDTO> result = query.get();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        return result;
+    }
+}
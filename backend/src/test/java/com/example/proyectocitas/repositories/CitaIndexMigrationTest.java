@@ -0,0 +1,302 @@
+package com.example.proyectocitas.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.SqlCapture;
+import com.example.proyectocitas.TestData;
+import com.example.proyectocitas.listeners.UserCacheInvalidationListener;
+import com.example.proyectocitas.models.Appointment.Status;
+import com.example.proyectocitas.security.TokenRevocationRegistry;
+import com.example.proyectocitas.security.UserDetailsCache;
+
+/**
+ * Migración V2 sobre una base de datos propia: resuelve las citas duplicadas
+ * antes de crear la clave única, y las consultas frecuentes usan los índices
+ * compuestos que declara (comprobado con EXPLAIN). Además, el SQL que genera
+ * Hibernate para las consultas filtradas de AppointmentRepository y
+ * HorarioRepository no recorre ninguna tabla entera.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SqlCapture.class, UserDetailsCache.class, TokenRevocationRegistry.class,
+        UserCacheInvalidationListener.class})
+class CitaIndexMigrationTest extends MySqlContainerTest {
+
+    private static final int DOCTORS = 10;
+    private static final int DAYS = 20;
+    private static final int SLOTS_PER_DAY = 10;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private HorarioRepository horarioRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private SqlCapture sqlCapture;
+
+    @Test
+    void v2ResuelveLosDuplicadosAntesDeCrearLaClaveUnica() {
+        DriverManagerDataSource dataSource = newDatabase();
+        migrate(dataSource, "1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        // Estado de una base de datos creada con ddl-auto=update: sin clave única
+        jdbc.execute("CREATE INDEX idx_cita_medico_fecha_estado_hora ON cita (id_medico, fecha, estado, hora_inicio)");
+        jdbc.execute("ALTER TABLE cita DROP INDEX uk_cita_slot_activo");
+        jdbc.execute("ALTER TABLE cita DROP COLUMN slot_activo");
+
+        TestData data = new TestData(jdbc);
+        long roleId = data.role("test");
+        long doctorId = data.doctor("medico", roleId);
+        long firstPatient = data.patient("paciente-1", roleId);
+        long secondPatient = data.patient("paciente-2", roleId);
+        long horarioId = data.horario(doctorId, "MONDAY", LocalTime.of(9, 0), LocalTime.of(12, 0), 30);
+        LocalDate fecha = LocalDate.now().plusDays(1);
+
+        // 09:00: dos slots libres repetidos y una reserva
+        long libre900 = data.cita(doctorId, null, horarioId, fecha, LocalTime.of(9, 0), 30, "DISPONIBLE");
+        data.cita(doctorId, null, horarioId, fecha, LocalTime.of(9, 0), 30, "DISPONIBLE");
+        long reservada900 = data.cita(doctorId, firstPatient, horarioId, fecha, LocalTime.of(9, 0), 30, "AGENDADA");
+        // 09:30: dos reservas de pacientes distintos
+        long primera930 = data.cita(doctorId, firstPatient, horarioId, fecha, LocalTime.of(9, 30), 30, "AGENDADA");
+        long segunda930 = data.cita(doctorId, secondPatient, horarioId, fecha, LocalTime.of(9, 30), 30, "CONFIRMADA");
+        // 10:00: una cancelada y una reserva, que no chocan
+        long cancelada1000 = data.cita(doctorId, firstPatient, horarioId, fecha, LocalTime.of(10, 0), 30, "CANCELADA");
+        long reservada1000 = data.cita(doctorId, secondPatient, horarioId, fecha, LocalTime.of(10, 0), 30, "AGENDADA");
+        // 10:30: dos slots libres
+        long libre1030 = data.cita(doctorId, null, horarioId, fecha, LocalTime.of(10, 30), 30, "DISPONIBLE");
+        data.cita(doctorId, null, horarioId, fecha, LocalTime.of(10, 30), 30, "DISPONIBLE");
+
+        migrate(dataSource, "2");
+
+        assertThat(jdbc.queryForList("SELECT id_cita FROM cita WHERE estado <> 'CANCELADA' ORDER BY id_cita",
+                Long.class)).containsExactly(reservada900, primera930, reservada1000, libre1030);
+        assertThat(jdbc.queryForList("SELECT id_cita FROM cita WHERE estado = 'CANCELADA' ORDER BY id_cita",
+                Long.class)).containsExactly(segunda930, cancelada1000);
+        assertThat(jdbc.queryForObject("SELECT motivo_cancelacion FROM cita WHERE id_cita = ?", String.class,
+                segunda930)).isEqualTo("Duplicada (migración V2)");
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM cita WHERE id_cita = ?", Integer.class, libre900))
+                .isZero();
+        assertThat(indexes(jdbc, "cita")).contains("uk_cita_slot_activo").doesNotContain("uk_cita_medico_fecha_hora");
+    }
+
+    @Test
+    void lasConsultasFrecuentesUsanLosIndicesCompuestos() {
+        DriverManagerDataSource dataSource = newDatabase();
+        migrate(dataSource, null);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Seed seed = seed(jdbc, "");
+
+        LocalDate fecha = seed.firstDay().plusDays(3);
+        assertThat(key(jdbc, "SELECT * FROM cita WHERE id_medico = ? AND fecha = ? AND estado = 'DISPONIBLE' "
+                + "ORDER BY hora_inicio", seed.doctorIds().get(0), fecha))
+                .isEqualTo("idx_cita_medico_fecha_estado_hora");
+        assertThat(key(jdbc, "SELECT * FROM cita WHERE id_paciente = ? ORDER BY fecha DESC, hora_inicio DESC",
+                seed.patientIds().get(0)))
+                .isEqualTo("idx_cita_paciente_fecha");
+        assertThat(key(jdbc, "SELECT * FROM cita WHERE estado = 'NO_ASISTIO' AND fecha >= ? ORDER BY fecha",
+                seed.firstDay()))
+                .isEqualTo("idx_cita_estado_fecha");
+        assertThat(key(jdbc, "SELECT * FROM horario WHERE doctor_id = ? AND dia_semana = 'MONDAY' AND activo = 1",
+                seed.doctorIds().get(0)))
+                .isEqualTo("idx_horario_doctor_dia_activo");
+    }
+
+    /**
+     * Cada consulta se ejecuta con el repositorio y cada SELECT que llega al
+     * driver (incluidas las cargas de asociaciones) se repite con EXPLAIN y
+     * sus parámetros. Quedan fuera los listados sin filtro (findAll,
+     * recuentos agrupados, primera página sin estado), que leen la tabla
+     * entera por diseño. Los datos se confirman para que ANALYZE TABLE
+     * actualice las estadísticas del optimizador.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void elSqlDeLosRepositoriosNoRecorreTablasEnteras() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        Seed seed = seed(jdbc, UUID.randomUUID().toString().substring(0, 8) + "-");
+        long doctorId = seed.doctorIds().get(0);
+        long patientId = seed.patientIds().get(0);
+        LocalDate fecha = seed.firstDay().plusDays(3);
+        LocalDate fin = fecha.plusDays(6);
+        LocalTime nueve = LocalTime.of(9, 0);
+        LocalTime nueveYMedia = LocalTime.of(9, 30);
+
+        Map<String, Runnable> consultas = new LinkedHashMap<>();
+        consultas.put("findDTOsByEstado", () -> appointmentRepository.findDTOsByEstado(Status.NO_ASISTIO));
+        consultas.put("findDTOsByMedicoId", () -> appointmentRepository.findDTOsByMedicoId(doctorId));
+        consultas.put("findDTOsByMedicoIdAndEstado",
+                () -> appointmentRepository.findDTOsByMedicoIdAndEstado(doctorId, Status.AGENDADA));
+        consultas.put("findDTOsByMedicoIdAndFecha",
+                () -> appointmentRepository.findDTOsByMedicoIdAndFecha(doctorId, fecha));
+        consultas.put("findDTOsByMedicoIdAndEstadoAndFechaBetween",
+                () -> appointmentRepository.findDTOsByMedicoIdAndEstadoAndFechaBetween(doctorId, Status.AGENDADA,
+                        fecha, fin));
+        consultas.put("findDTOsByPacienteId", () -> appointmentRepository.findDTOsByPacienteId(patientId));
+        consultas.put("findDTOsByPacienteIdAndEstado",
+                () -> appointmentRepository.findDTOsByPacienteIdAndEstado(patientId, Status.AGENDADA));
+        consultas.put("findPageFirstByEstado",
+                () -> appointmentRepository.findPageFirstByEstado(Status.NO_ASISTIO, PageRequest.of(0, 20)));
+        consultas.put("findPageAfterByEstado",
+                () -> appointmentRepository.findPageAfterByEstado(Status.NO_ASISTIO, fecha, 0L,
+                        PageRequest.of(0, 20)));
+        consultas.put("existsByMedicoIdAndFechaAndHoraInicioAndEstadoNot",
+                () -> appointmentRepository.existsByMedicoIdAndFechaAndHoraInicioAndEstadoNot(doctorId, fecha,
+                        nueve, Status.CANCELADA));
+        consultas.put("findFirstByMedicoIdAndFechaAndHoraInicioAndEstadoNot",
+                () -> appointmentRepository.findFirstByMedicoIdAndFechaAndHoraInicioAndEstadoNot(doctorId, fecha,
+                        nueve, Status.CANCELADA));
+        consultas.put("countOcupadasSolapadas",
+                () -> appointmentRepository.countOcupadasSolapadas(doctorId, fecha, nueve, nueveYMedia,
+                        Status.CANCELADA));
+        consultas.put("isHorarioDisponible",
+                () -> appointmentRepository.isHorarioDisponible(doctorId, fecha, nueve, nueveYMedia));
+        consultas.put("findByEstado", () -> appointmentRepository.findByEstado(Status.NO_ASISTIO));
+        consultas.put("findAvailableByMedicoIdAndFecha",
+                () -> appointmentRepository.findAvailableByMedicoIdAndFecha(doctorId, fecha));
+        consultas.put("findSlotEstadosByMedicoIdAndFecha",
+                () -> appointmentRepository.findSlotEstadosByMedicoIdAndFecha(doctorId, fecha));
+        consultas.put("findSlotInicioByMedicoIdAndFechaBetween",
+                () -> appointmentRepository.findSlotInicioByMedicoIdAndFechaBetween(doctorId, fecha, fin));
+        consultas.put("findOcupacionByMedicoIdInAndFechaBetween",
+                () -> appointmentRepository.findOcupacionByMedicoIdInAndFechaBetween(List.of(doctorId), fecha, fin));
+        consultas.put("findByMedicoIdAndFecha", () -> appointmentRepository.findByMedicoIdAndFecha(doctorId, fecha));
+        consultas.put("findByPacienteIdAndFecha",
+                () -> appointmentRepository.findByPacienteIdAndFecha(patientId, fecha));
+        consultas.put("findHistorialDTOsByPacienteId",
+                () -> appointmentRepository.findHistorialDTOsByPacienteId(patientId));
+        consultas.put("findByMedicoIdAndEstado",
+                () -> appointmentRepository.findByMedicoIdAndEstado(doctorId, Status.DISPONIBLE));
+        consultas.put("findProximaCitaByPacienteId",
+                () -> appointmentRepository.findProximaCitaByPacienteId(patientId));
+        consultas.put("findSiguienteCitaByPacienteId",
+                () -> appointmentRepository.findSiguienteCitaByPacienteId(patientId));
+        consultas.put("findCitasParaRecordatorio",
+                () -> appointmentRepository.findCitasParaRecordatorio(fecha, nueve, LocalTime.of(12, 0)));
+        consultas.put("findByMedicoIdAndFechaAfter",
+                () -> appointmentRepository.findByMedicoIdAndFechaAfter(doctorId, fin));
+        consultas.put("findDisponiblesByMedicoIdAndFechaBetween",
+                () -> appointmentRepository.findDisponiblesByMedicoIdAndFechaBetween(doctorId, fecha, fin));
+        consultas.put("findByDoctorIdAndDiaSemanaAndActivoTrue",
+                () -> horarioRepository.findByDoctorIdAndDiaSemanaAndActivoTrue(doctorId, DayOfWeek.MONDAY));
+        consultas.put("findAvailableSlots",
+                () -> horarioRepository.findAvailableSlots(doctorId, DayOfWeek.MONDAY, nueve, LocalTime.of(10, 0)));
+        consultas.put("findAvailableSlotAtTime",
+                () -> horarioRepository.findAvailableSlotAtTime(doctorId, DayOfWeek.MONDAY, nueveYMedia));
+        consultas.put("findDiasDisponiblesByDoctorId", () -> horarioRepository.findDiasDisponiblesByDoctorId(doctorId));
+        consultas.put("findByDoctorIdAndActivoTrue", () -> horarioRepository.findByDoctorIdAndActivoTrue(doctorId));
+        consultas.put("findTramosActivosByDoctorIdIn",
+                () -> horarioRepository.findTramosActivosByDoctorIdIn(List.of(doctorId)));
+        consultas.put("findHorariosDisponiblesByDoctorAndDia",
+                () -> horarioRepository.findHorariosDisponiblesByDoctorAndDia(doctorId, DayOfWeek.MONDAY));
+
+        consultas.forEach((nombre, consulta) -> {
+            sqlCapture.clear();
+            consulta.run();
+            List<SqlCapture.Statement> sentencias = sqlCapture.statements();
+            assertThat(sentencias).as(nombre).isNotEmpty();
+            for (SqlCapture.Statement sentencia : sentencias) {
+                List<Map<String, Object>> plan = jdbc.queryForList("EXPLAIN " + sentencia.sql(),
+                        sentencia.parameters().toArray());
+                assertThat(plan).as("%s: %s", nombre, sentencia.sql())
+                        .extracting(fila -> fila.get("type"))
+                        .doesNotContain("ALL");
+            }
+        });
+    }
+
+    /**
+     * Unos 2000 slots de 10 médicos en 20 días: la mayoría libres, un tercio
+     * reservados por 20 pacientes y unos pocos NO_ASISTIO
+     */
+    private static Seed seed(JdbcTemplate jdbc, String prefix) {
+        TestData data = new TestData(jdbc);
+        long roleId = data.role(prefix + "test");
+        List<Long> doctorIds = new ArrayList<>();
+        List<Long> patientIds = new ArrayList<>();
+        List<Long> horarioIds = new ArrayList<>();
+        for (int d = 0; d < DOCTORS; d++) {
+            long doctorId = data.doctor(prefix + "medico-" + d, roleId);
+            doctorIds.add(doctorId);
+            for (String dia : List.of("MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY", "SATURDAY", "SUNDAY")) {
+                long horarioId = data.horario(doctorId, dia, LocalTime.of(9, 0), LocalTime.of(14, 0), 30);
+                if (dia.equals("MONDAY")) {
+                    horarioIds.add(horarioId);
+                }
+                data.horario(doctorId, dia, LocalTime.of(16, 0), LocalTime.of(19, 0), 30);
+            }
+        }
+        for (int p = 0; p < 20; p++) {
+            patientIds.add(data.patient(prefix + "paciente-" + p, roleId));
+        }
+
+        LocalDate firstDay = LocalDate.now().plusDays(1);
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>();
+        int n = 0;
+        for (int d = 0; d < DOCTORS; d++) {
+            for (int day = 0; day < DAYS; day++) {
+                for (int s = 0; s < SLOTS_PER_DAY; s++, n++) {
+                    LocalTime inicio = LocalTime.of(9, 0).plusMinutes(30L * s);
+                    String estado = n % 97 == 0 ? "NO_ASISTIO" : n % 3 == 0 ? "AGENDADA" : "DISPONIBLE";
+                    Long patientId = estado.equals("DISPONIBLE") ? null : patientIds.get(n % patientIds.size());
+                    rows.add(new Object[] {patientId, doctorIds.get(d), horarioIds.get(d), firstDay.plusDays(day),
+                            inicio, inicio.plusMinutes(30), estado, now});
+                }
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO cita (id_paciente, id_medico, id_horario, fecha, hora_inicio, hora_fin, estado, "
+                + "fecha_creacion, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)", rows);
+        jdbc.execute("ANALYZE TABLE cita, horario");
+        return new Seed(doctorIds, patientIds, firstDay);
+    }
+
+    private static String key(JdbcTemplate jdbc, String sql, Object... args) {
+        return (String) jdbc.queryForList("EXPLAIN " + sql, args).get(0).get("key");
+    }
+
+    private static List<String> indexes(JdbcTemplate jdbc, String table) {
+        return jdbc.queryForList("SELECT DISTINCT index_name FROM information_schema.statistics "
+                + "WHERE table_schema = DATABASE() AND table_name = ?", String.class, table);
+    }
+
+    private static void migrate(DriverManagerDataSource dataSource, String target) {
+        var configuration = Flyway.configure().dataSource(dataSource).locations("classpath:db/migration");
+        if (target != null) {
+            configuration.target(target);
+        }
+        configuration.load().migrate();
+    }
+
+    private record Seed(List<Long> doctorIds, List<Long> patientIds, LocalDate firstDay) {
+    }
+}
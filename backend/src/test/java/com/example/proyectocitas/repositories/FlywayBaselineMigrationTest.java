@@ -0,0 +1,50 @@
+package com.example.proyectocitas.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.TestData;
+
+/**
+ * Base de datos creada con ddl-auto=update antes de existir las migraciones:
+ * Flyway la marca con la versión 1 sin ejecutar V1, y las migraciones
+ * posteriores deben añadir las columnas que le faltan.
+ */
+class FlywayBaselineMigrationTest extends MySqlContainerTest {
+
+    @Test
+    void laLineaBaseEnV1RecibeLasColumnasQueFaltan() {
+        DriverManagerDataSource dataSource = newDatabase();
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        // Esquema anterior a cita.version y sin historial de Flyway
+        jdbc.execute("DROP TABLE flyway_schema_history");
+        jdbc.execute("ALTER TABLE cita DROP COLUMN version");
+        TestData data = new TestData(jdbc);
+        long roleId = data.role("test");
+        long doctorId = data.doctor("medico", roleId);
+        long patientId = data.patient("paciente", roleId);
+        jdbc.update("INSERT INTO cita (id_paciente, id_medico, fecha, hora_inicio, hora_fin, estado, fecha_creacion) "
+                + "VALUES (?, ?, ?, ?, ?, 'AGENDADA', ?)", patientId, doctorId, LocalDate.now().plusDays(1),
+                LocalTime.of(9, 0), LocalTime.of(9, 30), LocalDateTime.now());
+
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+        Map<String, Object> column = jdbc.queryForMap("SELECT is_nullable, column_default FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = 'cita' AND column_name = 'version'");
+        assertThat(column.get("is_nullable")).isEqualTo("NO");
+        assertThat(String.valueOf(column.get("column_default"))).isEqualTo("0");
+        assertThat(jdbc.queryForObject("SELECT version FROM cita", Long.class)).isZero();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.proyectocitas.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.proyectocitas.MySqlContainerTest;
+
+/**
+ * Bloqueo de tareas entre instancias: solo una lo obtiene hasta que se
+ * libera o caduca.
+ */
+class TaskLockRepositoryTest extends MySqlContainerTest {
+
+    private JdbcTemplate jdbc;
+    private TaskLockRepository repository;
+
+    @BeforeEach
+    void migrate() {
+        DriverManagerDataSource dataSource = newDatabase();
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbc = new JdbcTemplate(dataSource);
+        repository = new TaskLockRepository(jdbc);
+    }
+
+    @Test
+    void soloUnaInstanciaObtieneElBloqueo() {
+        assertThat(repository.tryAcquire("tarea", "instancia-a", 600)).isTrue();
+        assertThat(repository.tryAcquire("tarea", "instancia-b", 600)).isFalse();
+        assertThat(repository.tryAcquire("otra-tarea", "instancia-b", 600)).isTrue();
+    }
+
+    @Test
+    void trasLiberarloOtraInstanciaLoObtiene() {
+        repository.tryAcquire("tarea", "instancia-a", 600);
+
+        assertThat(repository.release("tarea", "instancia-b", 0)).isFalse();
+        assertThat(repository.release("tarea", "instancia-a", 0)).isTrue();
+        assertThat(repository.tryAcquire("tarea", "instancia-b", 600)).isTrue();
+    }
+
+    @Test
+    void alLiberarloSeConservaElTiempoMinimo() {
+        repository.tryAcquire("tarea", "instancia-a", 600);
+        repository.release("tarea", "instancia-a", 300);
+
+        assertThat(repository.tryAcquire("tarea", "instancia-b", 600)).isFalse();
+    }
+
+    @Test
+    void unBloqueoCaducadoSePuedeReclamar() {
+        repository.tryAcquire("tarea", "instancia-a", 600);
+        // Instancia detenida sin liberarlo
+        jdbc.update("UPDATE bloqueo_tarea SET bloqueado_hasta = NOW(6) - INTERVAL 1 SECOND WHERE nombre = 'tarea'");
+
+        assertThat(repository.tryAcquire("tarea", "instancia-b", 600)).isTrue();
+        assertThat(jdbc.queryForObject("SELECT bloqueado_por FROM bloqueo_tarea WHERE nombre = 'tarea'", String.class))
+                .isEqualTo("instancia-b");
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.TestData;
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.exceptions.AppointmentNotAvailableException;
+
+/**
+ * Reservas simultáneas de la misma hora: gana exactamente una. Una cita
+ * cancelada no ocupa su hora y se puede volver a reservar.
+ */
+@SpringBootTest
+class AppointmentBookingConcurrencyTest extends MySqlContainerTest {
+
+    private static final int PATIENTS = 16;
+    private static final LocalTime HORA = LocalTime.of(10, 0);
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TestData data;
+    private String prefix;
+    private long doctorId;
+    private long horarioId;
+    private LocalDate fecha;
+
+    @BeforeEach
+    void insertDoctor() {
+        data = new TestData(jdbcTemplate);
+        prefix = UUID.randomUUID().toString().substring(0, 8);
+        long roleId = data.role("test-" + prefix);
+        doctorId = data.doctor("medico-" + prefix, roleId);
+        horarioId = data.horario(doctorId, "MONDAY", LocalTime.of(9, 0), LocalTime.of(12, 0), 30);
+        fecha = LocalDate.now().plusDays(1).with(TemporalAdjusters.nextOrSame(DayOfWeek.MONDAY));
+    }
+
+    @Test
+    void reservasSimultaneasDeLaMismaHoraTienenUnSoloGanador() throws Exception {
+        long roleId = data.role("paciente-" + prefix);
+        List<String> patients = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            String username = "paciente-" + prefix + "-" + i;
+            data.patient(username, roleId);
+            patients.add(username);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(PATIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (String patient : patients) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        appointmentService.createAppointmentDynamically(patient, doctorId, fecha, HORA, "Revisión");
+                        return true;
+                    } catch (AppointmentNotAvailableException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int booked = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    booked++;
+                }
+            }
+            assertThat(booked).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(activeCitas()).isEqualTo(1);
+    }
+
+    @Test
+    void unaCitaCanceladaSePuedeVolverAReservar() {
+        long roleId = data.role("paciente-" + prefix);
+        String first = "paciente-" + prefix + "-a";
+        String second = "paciente-" + prefix + "-b";
+        data.patient(first, roleId);
+        data.patient(second, roleId);
+
+        AppointmentDTO booked = appointmentService.createAppointmentDynamically(first, doctorId, fecha, HORA, null);
+        assertThatThrownBy(() -> appointmentService.createAppointmentDynamically(second, doctorId, fecha, HORA, null))
+                .isInstanceOf(AppointmentNotAvailableException.class);
+
+        appointmentService.cancelAppointment(booked.getId(), first, "No puedo asistir");
+        AppointmentDTO rebooked = appointmentService.createAppointmentDynamically(second, doctorId, fecha, HORA, null);
+
+        assertThat(rebooked.getId()).isNotEqualTo(booked.getId());
+        assertThat(activeCitas()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT estado FROM cita WHERE id_cita = ?", String.class,
+                booked.getId())).isEqualTo("CANCELADA");
+    }
+
+    @Test
+    void laClaveUnicaSoloCuentaLasCitasActivas() {
+        long roleId = data.role("paciente-" + prefix);
+        long patientId = data.patient("paciente-" + prefix + "-x", roleId);
+
+        // Sin pasar por el servicio, como haría otra instancia de la aplicación
+        data.cita(doctorId, patientId, horarioId, fecha, HORA, 30, "CANCELADA");
+        data.cita(doctorId, patientId, horarioId, fecha, HORA, 30, "CANCELADA");
+        data.cita(doctorId, patientId, horarioId, fecha, HORA, 30, "AGENDADA");
+
+        assertThatThrownBy(() -> data.cita(doctorId, patientId, horarioId, fecha, HORA, 30, "DISPONIBLE"))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(activeCitas()).isEqualTo(1);
+    }
+
+    private Integer activeCitas() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cita WHERE id_medico = ? AND fecha = ? "
+                + "AND hora_inicio = ? AND estado <> 'CANCELADA'", Integer.class, doctorId, fecha, HORA);
+    }
+}
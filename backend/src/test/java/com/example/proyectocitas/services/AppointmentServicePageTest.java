@@ -0,0 +1,57 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.dto.AppointmentPageDTO;
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.repositories.AppointmentRepository;
+
+class AppointmentServicePageTest {
+
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final AppointmentService service = new AppointmentService(appointmentRepository, null, null, null, null,
+            null, null, null, null, null, null, null);
+
+    @Test
+    void unCursorMalFormadoEsUnErrorDelCliente() {
+        assertThatThrownBy(() -> service.getAppointmentsPage(null, "ayer_1", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Cursor inválido");
+        assertThatThrownBy(() -> service.getAppointmentsPage(null, "2026-03-10", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void losFallosDeLaConsultaNoSeConviertenEnCursorInvalido() {
+        when(appointmentRepository.findPageAfter(any(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("sin conexión"));
+
+        assertThatThrownBy(() -> service.getAppointmentsPage(null, "2026-03-10_42", 10))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void elCursorSiguienteApuntaALaUltimaCitaDeLaPagina() {
+        AppointmentDTO first = AppointmentDTO.builder().id(43L).date(LocalDate.of(2026, 3, 10)).build();
+        AppointmentDTO second = AppointmentDTO.builder().id(44L).date(LocalDate.of(2026, 3, 11)).build();
+        when(appointmentRepository.findPageAfterByEstado(any(), any(), any(), any()))
+                .thenReturn(List.of(first, second));
+
+        AppointmentPageDTO page = service.getAppointmentsPage(Appointment.Status.AGENDADA, "2026-03-10_42", 1);
+
+        assertThat(page.getItems()).containsExactly(first);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(page.getNextCursor()).isEqualTo("2026-03-10_43");
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.TestData;
+import com.example.proyectocitas.repositories.AppointmentArchiveRepository;
+
+/**
+ * Las estadísticas cuentan también las citas archivadas: trasladarlas a
+ * cita_historial no cambia los conteos, ni antes ni después de recargar.
+ */
+@SpringBootTest
+class AppointmentStatsArchiveTest extends MySqlContainerTest {
+
+    @Autowired
+    private AppointmentStatsService appointmentStatsService;
+
+    @Autowired
+    private AppointmentArchiveRepository appointmentArchiveRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void archivarNoCambiaLosConteos() {
+        TestData data = new TestData(jdbcTemplate);
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        long roleId = data.role("test-" + prefix);
+        long doctorId = data.doctor("medico-" + prefix, roleId);
+        long patientId = data.patient("paciente-" + prefix, roleId);
+        long horarioId = data.horario(doctorId, "MONDAY", LocalTime.of(9, 0), LocalTime.of(12, 0), 30);
+        LocalDate fecha = LocalDate.now().minusYears(1);
+        data.cita(doctorId, patientId, horarioId, fecha, LocalTime.of(9, 0), 30, "COMPLETADA");
+        data.cita(doctorId, patientId, horarioId, fecha, LocalTime.of(9, 30), 30, "CANCELADA");
+        data.cita(doctorId, patientId, horarioId, fecha, LocalTime.of(10, 0), 30, "NO_ASISTIO");
+        appointmentStatsService.refresh();
+
+        Map<String, Long> before = appointmentStatsService.getByDoctor().get(doctorId);
+        assertThat(before).containsEntry("COMPLETADA", 1L).containsEntry("CANCELADA", 1L)
+                .containsEntry("NO_ASISTIO", 1L);
+
+        new TransactionTemplate(transactionManager).execute(status ->
+                appointmentArchiveRepository.archiveBatch(fecha.plusDays(1), 100_000, LocalDateTime.now()));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cita WHERE id_medico = ?", Integer.class,
+                doctorId)).isZero();
+
+        assertThat(appointmentStatsService.getByDoctor().get(doctorId)).isEqualTo(before);
+        appointmentStatsService.refresh();
+        assertThat(appointmentStatsService.getByDoctor().get(doctorId)).isEqualTo(before);
+        assertThat(appointmentStatsService.getByDay(fecha, fecha).get(fecha)).containsEntry("COMPLETADA", 1L);
+    }
+}
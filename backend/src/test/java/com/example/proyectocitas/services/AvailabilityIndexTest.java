@@ -0,0 +1,85 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.proyectocitas.models.Appointment;
+import com.example.proyectocitas.models.Doctor;
+import com.example.proyectocitas.repositories.AppointmentRepository;
+
+class AvailabilityIndexTest {
+
+    private static final LocalDate FECHA = LocalDate.of(2026, 3, 10);
+
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final AvailabilityIndex index = new AvailabilityIndex(appointmentRepository, 100, 60);
+
+    @Test
+    void unaReservaMasLargaOcupaLosSlotsConLosQueSeSolapa() {
+        // 09:00-09:45 reservada tras alargar la duración; la rejilla sigue en 30 min
+        rows(new Object[] {LocalTime.of(9, 0), LocalTime.of(9, 45), Appointment.Status.AGENDADA});
+
+        AvailabilityIndex.DaySlots day = index.getDay(1L, FECHA);
+
+        assertThat(day.overlapsBooking(minute(9, 0), minute(9, 30))).isTrue();
+        assertThat(day.overlapsBooking(minute(9, 30), minute(10, 0))).isTrue();
+        assertThat(day.overlapsBooking(minute(10, 0), minute(10, 30))).isFalse();
+    }
+
+    @Test
+    void losSlotsDisponiblesNoOcupan() {
+        rows(new Object[] {LocalTime.of(9, 0), LocalTime.of(9, 30), Appointment.Status.DISPONIBLE});
+
+        AvailabilityIndex.DaySlots day = index.getDay(1L, FECHA);
+
+        assertThat(day.overlapsBooking(minute(9, 0), minute(9, 30))).isFalse();
+        assertThat(day.isFree(LocalTime.of(9, 0))).isTrue();
+    }
+
+    @Test
+    void reservarYCancelarActualizanLosIntervalos() {
+        // Rejilla de 30 min sin reservas
+        rows(new Object[] {LocalTime.of(9, 0), LocalTime.of(9, 30), Appointment.Status.DISPONIBLE},
+                new Object[] {LocalTime.of(9, 30), LocalTime.of(10, 0), Appointment.Status.DISPONIBLE});
+        index.getDay(1L, FECHA);
+
+        Appointment cita = cita(LocalTime.of(10, 0), LocalTime.of(10, 45), Appointment.Status.AGENDADA);
+        index.registerChange(cita, null);
+        assertThat(index.getDay(1L, FECHA).overlapsBooking(minute(10, 30), minute(11, 0))).isTrue();
+
+        cita.setEstado(Appointment.Status.CANCELADA);
+        index.registerChange(cita, Appointment.Status.AGENDADA);
+        assertThat(index.getDay(1L, FECHA).overlapsBooking(minute(10, 0), minute(11, 0))).isFalse();
+    }
+
+    private void rows(Object[]... rows) {
+        when(appointmentRepository.findSlotEstadosByMedicoIdAndFecha(anyLong(), any()))
+                .thenReturn(new ArrayList<>(List.of(rows)));
+    }
+
+    private static Appointment cita(LocalTime inicio, LocalTime fin, Appointment.Status estado) {
+        Doctor doctor = new Doctor();
+        doctor.setId(1L);
+        Appointment cita = new Appointment();
+        cita.setMedico(doctor);
+        cita.setFecha(FECHA);
+        cita.setHoraInicio(inicio);
+        cita.setHoraFin(fin);
+        cita.setEstado(estado);
+        return cita;
+    }
+
+    private static int minute(int hour, int minute) {
+        return hour * 60 + minute;
+    }
+}
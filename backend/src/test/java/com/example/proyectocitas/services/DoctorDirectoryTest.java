@@ -0,0 +1,63 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.proyectocitas.dto.DoctorDTO;
+
+class DoctorDirectoryTest {
+
+    private final DoctorDirectory directory = new DoctorDirectory(60);
+
+    private final List<DoctorDTO> doctors = List.of(
+            doctor(1L, "Cardiología", "San José"),
+            doctor(2L, "Pediatría", "Heredia"),
+            doctor(3L, "cardiologia ", "Heredia"));
+
+    @Test
+    void especialidadSinDistinguirMayusculasNiAcentos() {
+        assertThat(ids(directory.search("CARDIOLOGIA", null, () -> doctors))).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(ids(directory.search("cardiología", null, () -> doctors))).containsExactlyInAnyOrder(1L, 3L);
+    }
+
+    @Test
+    void ambosFiltrosNormalizados() {
+        assertThat(ids(directory.search("Cardiología", "heredia", () -> doctors))).containsExactly(3L);
+        assertThat(ids(directory.search("cardiologia", "san jose", () -> doctors))).containsExactly(1L);
+    }
+
+    @Test
+    void sinCoincidencias() {
+        assertThat(directory.search("Dermatología", null, () -> doctors)).isEmpty();
+    }
+
+    @Test
+    void dentroDelTtlNoSeVuelveACargar() {
+        directory.search(null, null, () -> doctors);
+
+        assertThat(ids(directory.search(null, null, List::of))).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void trasElTtlSeRecargaAunqueSeHayaParcheado() throws InterruptedException {
+        DoctorDirectory expiring = new DoctorDirectory(1);
+        expiring.search(null, null, () -> doctors);
+        expiring.update(doctor(4L, "Dermatología", "Cartago"));
+
+        Thread.sleep(1100);
+
+        assertThat(ids(expiring.search(null, null, () -> List.of(doctor(5L, "Pediatría", "Heredia")))))
+                .containsExactly(5L);
+    }
+
+    private static List<Long> ids(List<DoctorDTO> result) {
+        return result.stream().map(DoctorDTO::getId).toList();
+    }
+
+    private static DoctorDTO doctor(Long id, String specialty, String location) {
+        return DoctorDTO.builder().id(id).specialty(specialty).location(location).status("APPROVED").build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import com.example.proyectocitas.dto.SlotGenerationJobDTO;
+import com.example.proyectocitas.dto.SlotGenerationResult;
+import com.example.proyectocitas.repositories.DoctorRepository;
+import com.example.proyectocitas.utils.Constants;
+
+class SlotGenerationJobServiceTest {
+
+    private final DoctorRepository doctorRepository = mock(DoctorRepository.class);
+    private final AppointmentService appointmentService = mock(AppointmentService.class);
+
+    @Test
+    void unBloqueRechazadoCuentaComoFalloYElTrabajoTermina() {
+        doctors(1L, 2L, 3L, 4L, 5L);
+        List<Runnable> accepted = new ArrayList<>();
+        // Acepta el primer bloque y rechaza el resto, como con la cola llena
+        TaskExecutor executor = task -> {
+            if (!accepted.isEmpty()) {
+                throw new TaskRejectedException("cola llena");
+            }
+            accepted.add(task);
+        };
+        SlotGenerationJobService service = new SlotGenerationJobService(doctorRepository, appointmentService,
+                executor, 2);
+
+        SlotGenerationJobDTO started = service.startGenerateAll(4);
+        assertThat(started.getStatus()).isEqualTo("EN_PROCESO");
+        assertThat(started.getFailures()).isEqualTo(3);
+
+        accepted.get(0).run();
+        SlotGenerationJobDTO finished = service.getJob(started.getJobId()).orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo("COMPLETADO");
+        assertThat(finished.getDoctorsProcessed()).isEqualTo(5);
+        assertThat(finished.getFailures()).isEqualTo(3);
+        assertThat(finished.getErrors()).hasSize(2);
+    }
+
+    @Test
+    void todosLosBloquesRechazadosTerminanElTrabajo() {
+        doctors(1L, 2L, 3L);
+        SlotGenerationJobService service = new SlotGenerationJobService(doctorRepository, appointmentService,
+                task -> {
+                    throw new TaskRejectedException("deteniéndose");
+                }, 2);
+
+        SlotGenerationJobDTO job = service.startGenerateAll(4);
+
+        assertThat(job.getStatus()).isEqualTo("COMPLETADO");
+        assertThat(job.getFailures()).isEqualTo(3);
+        // Terminado: se puede lanzar otro
+        assertThat(service.startGenerateAll(4).getJobId()).isNotEqualTo(job.getJobId());
+    }
+
+    @Test
+    void noSeLanzaUnSegundoTrabajoMientrasHayUnoEnCurso() {
+        doctors(1L, 2L);
+        List<Runnable> accepted = new ArrayList<>();
+        SlotGenerationJobService service = new SlotGenerationJobService(doctorRepository, appointmentService,
+                accepted::add, 10);
+
+        service.startGenerateAll(4);
+        assertThatThrownBy(() -> service.startGenerateAll(4)).isInstanceOf(IllegalStateException.class);
+
+        accepted.forEach(Runnable::run);
+        assertThat(service.startGenerateAll(4).getStatus()).isEqualTo("EN_PROCESO");
+    }
+
+    private void doctors(Long... ids) {
+        when(doctorRepository.findIdsByStatus(Constants.DOCTOR_STATUS_APPROVED)).thenReturn(List.of(ids));
+        when(appointmentService.generateInitialAppointmentsForDoctor(anyLong(), anyInt()))
+                .thenReturn(SlotGenerationResult.builder().slotsInserted(10).build());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.proyectocitas.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.proyectocitas.MySqlContainerTest;
+import com.example.proyectocitas.TestData;
+import com.example.proyectocitas.dto.AppointmentDTO;
+import com.example.proyectocitas.dto.AppointmentPageDTO;
+
+/**
+ * Con slots virtuales, recorrer las páginas de disponibles devuelve los
+ * mismos slots, en el mismo orden, que el streaming, sin repetir ninguno.
+ */
+@SpringBootTest(properties = "app.slots.virtual.enabled=true")
+class VirtualSlotPageTest extends MySqlContainerTest {
+
+    @Autowired
+    private VirtualSlotService virtualSlotService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void lasPaginasRecorrenLosMismosSlotsQueElStreaming() {
+        TestData data = new TestData(jdbcTemplate);
+        String prefix = UUID.randomUUID().toString().substring(0, 8);
+        long roleId = data.role("test-" + prefix);
+        List<Long> doctorIds = new ArrayList<>();
+        for (int d = 0; d < 3; d++) {
+            long doctorId = data.doctor("medico-" + prefix + "-" + d, roleId);
+            doctorIds.add(doctorId);
+            for (DayOfWeek day : DayOfWeek.values()) {
+                data.horario(doctorId, day.name(), LocalTime.of(9, 0), LocalTime.of(11, 0), 30);
+            }
+        }
+        long patientId = data.patient("paciente-" + prefix, roleId);
+        LocalDate manana = LocalDate.now().plusDays(1);
+        data.cita(doctorIds.get(1), patientId, null, manana, LocalTime.of(9, 30), 30, "AGENDADA");
+
+        List<String> streamed = new ArrayList<>();
+        virtualSlotService.forEachAvailableSlot(slot -> streamed.add(key(slot)));
+
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            AppointmentPageDTO page = virtualSlotService.getAvailablePage(cursor, 7);
+            page.getItems().forEach(slot -> paged.add(key(slot)));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(paged).isEqualTo(streamed).doesNotHaveDuplicates();
+        assertThat(paged).contains(doctorIds.get(0) + " " + manana + " 09:30")
+                .doesNotContain(doctorIds.get(1) + " " + manana + " 09:30");
+    }
+
+    @Test
+    void unCursorMalFormadoSeRechaza() {
+        assertThatThrownBy(() -> virtualSlotService.getAvailablePage("no-es-un-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String key(AppointmentDTO slot) {
+        return slot.getDoctorId() + " " + slot.getDate() + " " + slot.getHoraInicio();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.proyectocitas.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.proyectocitas.models.Horario;
+
+class SlotCalculatorTest {
+
+    @Test
+    void elIntervaloSeSumaTrasCadaCitaYLaUltimaTerminaDentroDelTramo() {
+        List<SlotCalculator.Block> blocks = SlotCalculator.blocksOf(List.of(
+                horario(1L, DayOfWeek.MONDAY, "09:00", "10:40", 30, 10)));
+
+        // 09:00, 09:40, 10:20 no cabe (terminaría 10:50)
+        assertThat(slots(blocks, 0)).containsExactly("09:00-09:30", "09:40-10:10");
+    }
+
+    @Test
+    void sinIntervaloLosSlotsSonConsecutivos() {
+        List<SlotCalculator.Block> blocks = SlotCalculator.blocksOf(List.of(
+                horario(1L, DayOfWeek.MONDAY, "09:00", "10:00", 20, null)));
+
+        assertThat(slots(blocks, 0)).containsExactly("09:00-09:20", "09:20-09:40", "09:40-10:00");
+    }
+
+    @Test
+    void variosTramosDelMismoDiaSeRecorrenPorHoraDeInicio() {
+        List<SlotCalculator.Block> blocks = SlotCalculator.blocksOf(List.of(
+                horario(2L, DayOfWeek.MONDAY, "16:00", "17:00", 30, 0),
+                horario(1L, DayOfWeek.MONDAY, "09:00", "10:00", 30, 0)));
+
+        assertThat(slots(blocks, 0))
+                .containsExactly("09:00-09:30", "09:30-10:00", "16:00-16:30", "16:30-17:00");
+    }
+
+    @Test
+    void seDescartanLosSlotsQueSeSolapanConUnTramoAnterior() {
+        List<SlotCalculator.Block> blocks = SlotCalculator.blocksOf(List.of(
+                horario(1L, DayOfWeek.MONDAY, "09:00", "10:00", 30, 0),
+                horario(2L, DayOfWeek.MONDAY, "09:45", "11:00", 20, 0)));
+
+        // 09:45 se solapa con 09:30-10:00; el segundo tramo sigue en 10:05
+        assertThat(slots(blocks, 0))
+                .containsExactly("09:00-09:30", "09:30-10:00", "10:05-10:25", "10:25-10:45");
+    }
+
+    @Test
+    void notBeforeOmiteLosSlotsAnterioresSinAlterarLaRejilla() {
+        List<SlotCalculator.Block> blocks = SlotCalculator.blocksOf(List.of(
+                horario(1L, DayOfWeek.MONDAY, "09:00", "11:00", 30, 10)));
+
+        assertThat(slots(blocks, SlotCalculator.toMinute(LocalTime.of(9, 30))))
+                .containsExactly("09:40-10:10", "10:20-10:50");
+    }
+
+    @Test
+    void findSlotDevuelveElTramoSoloParaIniciosDeSlot() {
+        Horario manana = horario(1L, DayOfWeek.MONDAY, "09:00", "10:00", 30, 0);
+        Horario tarde = horario(2L, DayOfWeek.MONDAY, "16:00", "17:00", 30, 0);
+        List<SlotCalculator.Block> blocks = SlotCalculator.blocksOf(List.of(manana, tarde));
+
+        assertThat(SlotCalculator.findSlot(blocks, SlotCalculator.toMinute(LocalTime.of(16, 30))).horario())
+                .isSameAs(tarde);
+        assertThat(SlotCalculator.findSlot(blocks, SlotCalculator.toMinute(LocalTime.of(9, 15)))).isNull();
+        assertThat(SlotCalculator.findSlot(blocks, SlotCalculator.toMinute(LocalTime.of(10, 0)))).isNull();
+    }
+
+    @Test
+    void weekOfAgrupaPorDiaEIgnoraLosHorariosIncompletos() {
+        List<SlotCalculator.Block>[] week = SlotCalculator.weekOf(List.of(
+                horario(1L, DayOfWeek.MONDAY, "09:00", "10:00", 30, 0),
+                horario(2L, DayOfWeek.MONDAY, "12:00", "13:00", 30, 0),
+                horario(3L, DayOfWeek.FRIDAY, "09:00", "10:00", 0, 0),
+                horario(4L, null, "09:00", "10:00", 30, 0)));
+
+        assertThat(week).hasSize(7);
+        assertThat(week[DayOfWeek.MONDAY.ordinal()]).hasSize(2);
+        assertThat(week[DayOfWeek.FRIDAY.ordinal()]).isEmpty();
+    }
+
+    @Test
+    void notBeforeEsElMinutoActualSoloParaHoy() {
+        LocalDateTime now = LocalDateTime.of(2026, 3, 10, 11, 25);
+
+        assertThat(SlotCalculator.notBefore(now.toLocalDate(), now)).isEqualTo(11 * 60 + 25);
+        assertThat(SlotCalculator.notBefore(LocalDate.of(2026, 3, 11), now)).isZero();
+        assertThat(SlotCalculator.notBefore(LocalDate.of(2026, 3, 9), now)).isEqualTo(SlotCalculator.MINUTES_PER_DAY);
+    }
+
+    private static List<String> slots(List<SlotCalculator.Block> blocks, int notBefore) {
+        List<String> slots = new ArrayList<>();
+        SlotCalculator.forEachSlot(blocks, notBefore, (start, end, block) ->
+                slots.add(SlotCalculator.toTime(start) + "-" + SlotCalculator.toTime(end)));
+        return slots;
+    }
+
+    static Horario horario(Long id, DayOfWeek dia, String inicio, String fin, Integer duracion, Integer intervalo) {
+        return Horario.builder()
+                .id(id)
+                .diaSemana(dia)
+                .horaInicio(LocalTime.parse(inicio))
+                .horaFin(LocalTime.parse(fin))
+                .duracionCita(duracion)
+                .intervaloEntreCitas(intervalo)
+                .activo(true)
+                .build();
+    }
+}